@@ -0,0 +1,148 @@
+package com.sqlite.tutorial;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseConstants;
+import com.sqlite.tutorial.sqlite.model.Student;
+import com.sqlite.tutorial.sqlite.model.StudentTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Per row cost of mapping students with a getColumnIndex() lookup per column, as every read
+ * did before {@link StudentTable#MAPPER}, against the mapper. Timings are logged under
+ * the RowMapperBenchmark tag, run on an idle device and compare the ns/row lines.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RowMapperBenchmarkTest {
+
+    private static final String TAG = "RowMapperBenchmark";
+
+    private static final int ROW_COUNT = 5000;
+    private static final int WARM_UP_RUNS = 5;
+    private static final int MEASURED_RUNS = 20;
+
+    private SQLiteDatabase database;
+
+    @Before
+    public void setUp() {
+        database = SQLiteDatabase.create(null);
+        database.execSQL("CREATE TABLE " + SQLiteDatabaseConstants.TABLE_1 + " (" +
+                SQLiteDatabaseConstants.TABLE_1_COLUMN_1 + " INTEGER PRIMARY KEY, " +
+                SQLiteDatabaseConstants.TABLE_1_COLUMN_2 + " TEXT, " +
+                SQLiteDatabaseConstants.TABLE_1_COLUMN_3 + " TEXT, " +
+                SQLiteDatabaseConstants.TABLE_1_COLUMN_4 + " TEXT, " +
+                SQLiteDatabaseConstants.TABLE_1_COLUMN_5 + " TEXT)");
+
+        database.beginTransaction();
+        try {
+            for (int i = 1; i <= ROW_COUNT; i++) {
+                database.execSQL("INSERT INTO " + SQLiteDatabaseConstants.TABLE_1 + " VALUES (?, ?, ?, ?, ?)",
+                        new Object[]{i, "First" + i, "Last" + i, "roll-" + i, "hash-" + i});
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void mapperMatchesLookupPerRowAndReportsCost() {
+        ArrayList<Student> lookupStudents = mapWithLookupPerRow();
+        ArrayList<Student> mapperStudents = mapWithMapper();
+        assertEquals(ROW_COUNT, mapperStudents.size());
+        assertEquals(lookupStudents.toString(), mapperStudents.toString());
+
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            mapWithLookupPerRow();
+            mapWithMapper();
+        }
+
+        long lookupNanos = 0;
+        long mapperNanos = 0;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            /* Queried and filled before the clock starts, only the mapping is measured */
+            Cursor cursor = query();
+            try {
+                long startTime = System.nanoTime();
+                mapWithLookupPerRow(cursor);
+                lookupNanos += System.nanoTime() - startTime;
+            } finally {
+                cursor.close();
+            }
+
+            cursor = query();
+            try {
+                long startTime = System.nanoTime();
+                mapWithMapper(cursor);
+                mapperNanos += System.nanoTime() - startTime;
+            } finally {
+                cursor.close();
+            }
+        }
+
+        long rows = (long) ROW_COUNT * MEASURED_RUNS;
+        Log.i(TAG, "getColumnIndex per row : " + lookupNanos / rows + " ns/row");
+        Log.i(TAG, "StudentTable.MAPPER    : " + mapperNanos / rows + " ns/row");
+    }
+
+    /* The mapping code every read used to repeat */
+    private ArrayList<Student> mapWithLookupPerRow() {
+        Cursor cursor = query();
+        try {
+            return mapWithLookupPerRow(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private ArrayList<Student> mapWithLookupPerRow(Cursor cursor) {
+        ArrayList<Student> students = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            int idInt                 = cursor.getInt(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_1));
+            String firstNameString    = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_2));
+            String lastNameString     = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_3));
+            String rollNumberString   = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_4));
+            String pictureHashString  = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_5));
+
+            students.add(new Student(idInt, firstNameString, lastNameString, rollNumberString, pictureHashString));
+        }
+        return students;
+    }
+
+    private ArrayList<Student> mapWithMapper() {
+        Cursor cursor = query();
+        try {
+            return mapWithMapper(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private ArrayList<Student> mapWithMapper(Cursor cursor) {
+        return StudentTable.MAPPER.mapAll(cursor);
+    }
+
+    private Cursor query() {
+        Cursor cursor = database.rawQuery("SELECT * FROM " + SQLiteDatabaseConstants.TABLE_1 + " ORDER BY " + SQLiteDatabaseConstants.TABLE_1_COLUMN_1, null);
+        /* Fill the cursor window outside of the measured mapping */
+        cursor.getCount();
+        return cursor;
+    }
+}
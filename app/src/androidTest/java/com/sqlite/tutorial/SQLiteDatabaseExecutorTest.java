@@ -0,0 +1,168 @@
+package com.sqlite.tutorial;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.StrictMode;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.sqlite.tutorial.sqlite.AsyncSQLiteDatabaseOperation;
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseConstants;
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseExecutor;
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseOperation;
+import com.sqlite.tutorial.sqlite.model.Student;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Every database call of the async API must run off the main thread : the main thread runs under
+ * a StrictMode policy that kills the process on any disk read or write, so a query leaking onto
+ * it fails the run.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SQLiteDatabaseExecutorTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private AsyncSQLiteDatabaseOperation asyncOperation;
+    private StrictMode.ThreadPolicy previousPolicy;
+    private String rollNumber;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        SQLiteDatabaseOperation.setMainThreadQueriesAllowed(false);
+        asyncOperation = AsyncSQLiteDatabaseOperation.getInstance(context);
+        rollNumber = "executor-test-" + System.nanoTime();
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                previousPolicy = StrictMode.getThreadPolicy();
+                StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                        .detectDiskReads()
+                        .detectDiskWrites()
+                        .penaltyLog()
+                        .penaltyDeath()
+                        .build());
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                StrictMode.setThreadPolicy(previousPolicy);
+            }
+        });
+        asyncOperation.deleteSecondWay(rollNumber, null).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void asyncOperationsFromTheMainThreadPassStrictMode() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final List<String> failures = new ArrayList<>();
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                asyncOperation.insertFirstWay(new Student("First", "Last", rollNumber, new byte[]{1, 2, 3}), new ExpectMainThread<Boolean>(latch, failures));
+                asyncOperation.getSingleRowSecondWay(rollNumber, new ExpectMainThread<Student>(latch, failures));
+                asyncOperation.getNumberOfRowsFirstWay(SQLiteDatabaseConstants.TABLE_1, new ExpectMainThread<Integer>(latch, failures));
+            }
+        });
+
+        assertTrue("Callbacks not delivered", latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(failures.toString(), failures.isEmpty());
+    }
+
+    @Test
+    public void queryOnTheMainThreadIsRejected() {
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    asyncOperation.getOperation().getNumberOfRowsFirstWay(SQLiteDatabaseConstants.TABLE_1);
+                } catch (IllegalStateException illegalStateException) {
+                    failure.set(illegalStateException);
+                }
+            }
+        });
+
+        assertNotNull("Main thread query was not rejected", failure.get());
+    }
+
+    @Test
+    public void writesRunInOrderOnTheWriterThread() throws Exception {
+        final List<String> threadNames = new ArrayList<>();
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final int index = i;
+            futures.add(SQLiteDatabaseExecutor.getInstance().write(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    synchronized (threadNames) {
+                        threadNames.add(Thread.currentThread().getName());
+                    }
+                    return index;
+                }
+            }, null));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(Integer.valueOf(i), futures.get(i).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        for (String threadName : threadNames) {
+            assertEquals(threadNames.get(0), threadName);
+            assertTrue(threadName, threadName.startsWith("sqlite-writer"));
+        }
+    }
+
+    @Test
+    public void readerPoolIsSizedToCores() {
+        assertEquals(Math.max(2, Runtime.getRuntime().availableProcessors()), SQLiteDatabaseExecutor.getInstance().getReaderCount());
+    }
+
+    private static class ExpectMainThread<T> implements SQLiteDatabaseExecutor.Callback<T> {
+
+        private final CountDownLatch latch;
+        private final List<String> failures;
+
+        ExpectMainThread(CountDownLatch latch, List<String> failures) {
+            this.latch = latch;
+            this.failures = failures;
+        }
+
+        @Override
+        public void onSuccess(T result) {
+            if (Looper.myLooper() != Looper.getMainLooper()) {
+                failures.add("Callback off the main thread");
+            }
+            latch.countDown();
+        }
+
+        @Override
+        public void onFailure(Exception exception) {
+            failures.add(exception.toString());
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.sqlite.tutorial;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseConstants;
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseHelper;
+import com.sqlite.tutorial.sqlite.SQLiteMigrations;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Open created and upgraded databases the way the app does. In debug builds onOpen() runs
+ * EXPLAIN QUERY PLAN on every indexed query, so a query it can not bind or that scans a table
+ * fails here instead of on the first launch.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SQLiteDatabaseHelperTest {
+
+    @Test
+    public void openVerifiesQueryPlansOfCreatedDatabase() {
+        assertTrue("Query plans are only verified in debug builds", BuildConfig.DEBUG);
+
+        SQLiteDatabaseHelper sqLiteDatabaseHelper = newHelper();
+        SQLiteDatabase sqLiteDatabase = SQLiteDatabase.create(null);
+        try {
+            sqLiteDatabaseHelper.onCreate(sqLiteDatabase);
+            sqLiteDatabaseHelper.onOpen(sqLiteDatabase);
+        } finally {
+            sqLiteDatabase.close();
+        }
+    }
+
+    @Test
+    public void openVerifiesQueryPlansOfUpgradedDatabase() {
+        SQLiteDatabaseHelper sqLiteDatabaseHelper = newHelper();
+        SQLiteDatabase sqLiteDatabase = SQLiteDatabase.create(null);
+        try {
+            /* Version 1 schema, the rest comes from the released migrations */
+            sqLiteDatabase.execSQL("CREATE TABLE IF NOT EXISTS student (_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, firstName TEXT, lastName TEXT, rollNumber TEXT, picture BLOB)");
+            sqLiteDatabase.execSQL("CREATE TABLE IF NOT EXISTS user (_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, username TEXT, email TEXT, password TEXT)");
+            SQLiteMigrations.migrate(sqLiteDatabase, 1, SQLiteDatabaseConstants.DATABASE_VERSION);
+
+            sqLiteDatabaseHelper.onOpen(sqLiteDatabase);
+        } finally {
+            sqLiteDatabase.close();
+        }
+    }
+
+    private static SQLiteDatabaseHelper newHelper() {
+        return new SQLiteDatabaseHelper(InstrumentationRegistry.getInstrumentation().getTargetContext());
+    }
+}
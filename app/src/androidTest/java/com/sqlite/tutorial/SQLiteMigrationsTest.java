@@ -0,0 +1,157 @@
+package com.sqlite.tutorial;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseConstants;
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseHelper;
+import com.sqlite.tutorial.sqlite.SQLiteMigrations;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Upgrade fixture databases across every pair of versions and check that no row is lost and
+ * that the result has the same schema as a freshly created database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SQLiteMigrationsTest {
+
+    private static final int FIXTURE_ROWS = 25;
+
+    @Test
+    public void everyVersionPairHasAPath() {
+        for (int from = 1; from < SQLiteDatabaseConstants.DATABASE_VERSION; from++) {
+            for (int to = from + 1; to <= SQLiteDatabaseConstants.DATABASE_VERSION; to++) {
+                assertNotNull("No path " + from + " -> " + to, SQLiteMigrations.findPath(from, to));
+            }
+        }
+    }
+
+    @Test
+    public void upgradeKeepsRowsForEveryVersionPair() {
+        for (int from = 1; from < SQLiteDatabaseConstants.DATABASE_VERSION; from++) {
+            for (int to = from + 1; to <= SQLiteDatabaseConstants.DATABASE_VERSION; to++) {
+                SQLiteDatabase sqLiteDatabase = createFixture(from);
+                try {
+                    long students = DatabaseUtils.queryNumEntries(sqLiteDatabase, "student");
+                    long users = DatabaseUtils.queryNumEntries(sqLiteDatabase, "user");
+
+                    SQLiteMigrations.migrate(sqLiteDatabase, from, to);
+
+                    assertEquals(from + " -> " + to, students, DatabaseUtils.queryNumEntries(sqLiteDatabase, "student"));
+                    assertEquals(from + " -> " + to, users, DatabaseUtils.queryNumEntries(sqLiteDatabase, "user"));
+                } finally {
+                    sqLiteDatabase.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void upgradedSchemaMatchesCreatedSchema() {
+        SQLiteDatabase upgraded = createFixture(1);
+        SQLiteDatabase created = SQLiteDatabase.create(null);
+        try {
+            SQLiteMigrations.migrate(upgraded, 1, SQLiteDatabaseConstants.DATABASE_VERSION);
+            new SQLiteDatabaseHelper(InstrumentationRegistry.getInstrumentation().getTargetContext()).onCreate(created);
+
+            assertEquals(describeSchema(created), describeSchema(upgraded));
+        } finally {
+            upgraded.close();
+            created.close();
+        }
+    }
+
+    @Test
+    public void upgradeSeedsRowCountsAndTriggersKeepThem() {
+        SQLiteDatabase sqLiteDatabase = createFixture(1);
+        try {
+            SQLiteMigrations.migrate(sqLiteDatabase, 1, SQLiteDatabaseConstants.DATABASE_VERSION);
+            assertEquals(FIXTURE_ROWS, countOf(sqLiteDatabase, "student", ""));
+            assertEquals(FIXTURE_ROWS, countOf(sqLiteDatabase, "student", "F"));
+            assertEquals(FIXTURE_ROWS, countOf(sqLiteDatabase, "user", ""));
+
+            sqLiteDatabase.execSQL("UPDATE student SET firstName = 'john' WHERE _id = 1");
+            sqLiteDatabase.execSQL("DELETE FROM student WHERE _id = 2");
+            sqLiteDatabase.execSQL("DELETE FROM user WHERE _id = 1");
+
+            assertEquals(FIXTURE_ROWS - 1, countOf(sqLiteDatabase, "student", ""));
+            assertEquals(FIXTURE_ROWS - 2, countOf(sqLiteDatabase, "student", "F"));
+            assertEquals(1, countOf(sqLiteDatabase, "student", "J"));
+            assertEquals(FIXTURE_ROWS - 1, countOf(sqLiteDatabase, "user", ""));
+        } finally {
+            sqLiteDatabase.close();
+        }
+    }
+
+    private static long countOf(SQLiteDatabase sqLiteDatabase, String tableName, String prefix) {
+        return DatabaseUtils.longForQuery(sqLiteDatabase, "SELECT count FROM row_count WHERE table_name = ? AND prefix = ?", new String[]{tableName, prefix});
+    }
+
+    /**
+     * In memory database at the given version. The version 1 schema is frozen here on purpose,
+     * later versions are reached with the released migrations.
+     */
+    private static SQLiteDatabase createFixture(int version) {
+        SQLiteDatabase sqLiteDatabase = SQLiteDatabase.create(null);
+        sqLiteDatabase.execSQL("CREATE TABLE IF NOT EXISTS student (_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, firstName TEXT, lastName TEXT, rollNumber TEXT, picture BLOB)");
+        sqLiteDatabase.execSQL("CREATE TABLE IF NOT EXISTS user (_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, username TEXT, email TEXT, password TEXT)");
+
+        for (int i = 0; i < FIXTURE_ROWS; i++) {
+            ContentValues student = new ContentValues();
+            student.put("firstName", "First" + i);
+            student.put("lastName", "Last" + i);
+            student.put("rollNumber", "R" + i);
+            student.put("picture", new byte[]{(byte) i, 1, 2, 3});
+            sqLiteDatabase.insertOrThrow("student", null, student);
+
+            ContentValues user = new ContentValues();
+            user.put("username", "user" + i);
+            user.put("email", "user" + i + "@example.com");
+            user.put("password", "password" + i);
+            sqLiteDatabase.insertOrThrow("user", null, user);
+        }
+
+        if (version > 1) {
+            SQLiteMigrations.migrate(sqLiteDatabase, 1, version);
+        }
+        return sqLiteDatabase;
+    }
+
+    private static Set<String> describeSchema(SQLiteDatabase sqLiteDatabase) {
+        Set<String> schema = new TreeSet<>();
+        Cursor master = sqLiteDatabase.rawQuery("SELECT type, name, tbl_name FROM sqlite_master WHERE name NOT LIKE 'sqlite_%' AND name != 'android_metadata'", null);
+        try {
+            while (master.moveToNext()) {
+                String type = master.getString(0);
+                String name = master.getString(1);
+                schema.add(type + ":" + name + ":" + master.getString(2));
+
+                if ("table".equals(type)) {
+                    Cursor columns = sqLiteDatabase.rawQuery("PRAGMA table_info(" + name + ")", null);
+                    try {
+                        while (columns.moveToNext()) {
+                            schema.add("column:" + name + "." + columns.getString(columns.getColumnIndexOrThrow("name")) + ":" + columns.getString(columns.getColumnIndexOrThrow("type")));
+                        }
+                    } finally {
+                        columns.close();
+                    }
+                }
+            }
+        } finally {
+            master.close();
+        }
+        return schema;
+    }
+}
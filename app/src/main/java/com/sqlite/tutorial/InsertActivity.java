@@ -21,7 +21,8 @@ import com.sqlite.tutorial.constants.RequestCodeConstants;
 import com.sqlite.tutorial.customimageview.CircleImageView;
 import com.sqlite.tutorial.permission.PermissionGroups;
 import com.sqlite.tutorial.permission.helper.ActivityPermissionHelper;
-import com.sqlite.tutorial.sqlite.SQLiteDatabaseOperation;
+import com.sqlite.tutorial.sqlite.AsyncSQLiteDatabaseOperation;
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseExecutor;
 import com.sqlite.tutorial.sqlite.model.Student;
 import com.sqlite.tutorial.utilities.ActivityUtils;
 import com.sqlite.tutorial.utilities.BitmapUtils;
@@ -46,9 +47,10 @@ public class InsertActivity extends AppCompatActivity {
     private String lastNameString;
     private String rollNumberString;
     private byte[] pictureByteArray;
+    private byte[] thumbnailByteArray;
 
     private ActivityPermissionHelper activityPermissionHelper;
-    private SQLiteDatabaseOperation sqLiteDatabaseOperation;
+    private AsyncSQLiteDatabaseOperation asyncSQLiteDatabaseOperation;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -78,7 +80,7 @@ public class InsertActivity extends AppCompatActivity {
 
     protected void initializeObject() {
         activityPermissionHelper = new ActivityPermissionHelper(this,getApplicationContext());
-        sqLiteDatabaseOperation = SQLiteDatabaseOperation.getInstance(getApplicationContext());
+        asyncSQLiteDatabaseOperation = AsyncSQLiteDatabaseOperation.getInstance(getApplicationContext());
     }
 
     protected void onTextChangedListener() {
@@ -253,6 +255,7 @@ public class InsertActivity extends AppCompatActivity {
                             bitmap = BitmapUtils.handleSamplingAndRotationBitmap(InsertActivity.this, uri, 0, 0);
                             circleImageView.setImageBitmap(bitmap);
                             pictureByteArray = BitmapUtils.getByteArrayFromBitmap(bitmap);
+                            thumbnailByteArray = BitmapUtils.getThumbnailByteArrayFromBitmap(bitmap, BitmapUtils.THUMBNAIL_SIZE);
                         } catch (IOException iOException) {
                             Toast.makeText(getApplicationContext(), iOException.getMessage().toString(), Toast.LENGTH_SHORT).show();
                             iOException.printStackTrace();
@@ -318,21 +321,41 @@ public class InsertActivity extends AppCompatActivity {
 
     private void insertFirstWay(String firstName, String lastName, String rollNumber, byte[] pictureByteArray) {
         Student student = new Student(firstName, lastName, rollNumber, pictureByteArray);
-        boolean isInsert = sqLiteDatabaseOperation.insertFirstWay(student);
-        if(isInsert)
-        {
-            ActivityUtils.launchActivity(InsertActivity.this, SQLiteActivity.class);
-        }
-        else
-        {
-            Toast.makeText(getApplicationContext(),"Not insert",Toast.LENGTH_LONG).show();
-        }
+        student.setThumbnail(thumbnailByteArray);
+        asyncSQLiteDatabaseOperation.insertFirstWay(student, new SQLiteDatabaseExecutor.Callback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean isInsert) {
+                if(isInsert)
+                {
+                    ActivityUtils.launchActivity(InsertActivity.this, SQLiteActivity.class);
+                }
+                else
+                {
+                    Toast.makeText(getApplicationContext(),"Not insert",Toast.LENGTH_LONG).show();
+                }
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                Toast.makeText(getApplicationContext(),"Not insert",Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     private void insertSecondWay(String firstName, String lastName, String rollNumber, byte[] pictureByteArray) {
         Student student = new Student(firstName, lastName, rollNumber, pictureByteArray);
-        sqLiteDatabaseOperation.insertSecondWay(student);
-        ActivityUtils.launchActivity(InsertActivity.this, SQLiteActivity.class);
+        student.setThumbnail(thumbnailByteArray);
+        asyncSQLiteDatabaseOperation.insertSecondWay(student, new SQLiteDatabaseExecutor.Callback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                ActivityUtils.launchActivity(InsertActivity.this, SQLiteActivity.class);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                Toast.makeText(getApplicationContext(),"Not insert",Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     public void openFileManager(Activity currentActivity,
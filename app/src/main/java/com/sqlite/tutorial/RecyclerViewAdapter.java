@@ -1,16 +1,111 @@
 package com.sqlite.tutorial;
 
+import android.content.Context;
+import android.widget.ImageView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
 import com.sqlite.tutorial.baseadapter.adapter.BaseSingleItemAdapter;
 import com.sqlite.tutorial.baseadapter.adapter.BaseViewHolder;
+import com.sqlite.tutorial.imageloader.ImageLoader;
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseOperation;
+import com.sqlite.tutorial.sqlite.StudentPagedList;
 import com.sqlite.tutorial.sqlite.model.Student;
-import com.sqlite.tutorial.utilities.BitmapUtils;
+import com.sqlite.tutorial.utilities.string.StringUtils;
 
 public class RecyclerViewAdapter extends BaseSingleItemAdapter<Student, BaseViewHolder> {
 
+    /* When set, rows are pulled page by page from the paged list instead of the data list */
+    private StudentPagedList studentPagedList;
+
     public RecyclerViewAdapter() {
         addChildClickViewIds(R.id.updateButtonTextView);
         addChildClickViewIds(R.id.deleteButtonTextView);
+        setDiffCallback(STUDENT_DIFF_CALLBACK);
+        setItemIdProvider(STUDENT_ID_PROVIDER);
+    }
+
+    /* Row id of the student, lookups by id are O(1) and a moved row keeps its view holder */
+    private static final ItemIdProvider<Student> STUDENT_ID_PROVIDER = new ItemIdProvider<Student>() {
+        @Override
+        public long getItemId(Student student) {
+            return student.getId();
+        }
+    };
+
+    /* Rows are the same student when they have the same id, only what a row shows is compared */
+    private static final DiffUtil.ItemCallback<Student> STUDENT_DIFF_CALLBACK = new DiffUtil.ItemCallback<Student>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Student oldItem, @NonNull Student newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Student oldItem, @NonNull Student newItem) {
+            return StringUtils.isEquals(oldItem.getFirstName(), newItem.getFirstName())
+                    && StringUtils.isEquals(oldItem.getLastName(), newItem.getLastName())
+                    && StringUtils.isEquals(oldItem.getRollNumber(), newItem.getRollNumber())
+                    && StringUtils.isEquals(oldItem.getPictureHash(), newItem.getPictureHash());
+        }
+    };
+
+    /**
+     * Switch to paged mode, or back to the data list with null.
+     */
+    public void setPagedList(StudentPagedList studentPagedList) {
+        if (this.studentPagedList != null) {
+            this.studentPagedList.setCallback(null);
+        }
+        this.studentPagedList = studentPagedList;
+        if (studentPagedList != null) {
+            studentPagedList.setCallback(new StudentPagedList.Callback() {
+                @Override
+                public void onItemRangeInserted(int positionStart, int itemCount) {
+                    notifyItemRangeInserted(positionStart, itemCount);
+                }
+
+                @Override
+                public void onItemRangeChanged(int positionStart, int itemCount) {
+                    notifyItemRangeChanged(positionStart, itemCount);
+                }
+
+                @Override
+                public void onItemRangeRemoved(int positionStart, int itemCount) {
+                    notifyItemRangeRemoved(positionStart, itemCount);
+                }
+
+                @Override
+                public void onInvalidated() {
+                    notifyDataSetChanged();
+                }
+            });
+        }
+        notifyDataSetChanged();
+    }
+
+    public StudentPagedList getPagedList() {
+        return studentPagedList;
+    }
+
+    @Override
+    protected boolean isDataShown() {
+        return studentPagedList == null;
+    }
+
+    @Override
+    public int getItemCount() {
+        if (studentPagedList != null) {
+            return studentPagedList.size();
+        }
+        return super.getItemCount();
+    }
+
+    @Override
+    protected Student getDataByPosition(int position) {
+        if (studentPagedList != null) {
+            return position != RecyclerView.NO_POSITION ? studentPagedList.get(position) : null;
+        }
+        return super.getDataByPosition(position);
     }
 
     @Override
@@ -20,9 +115,47 @@ public class RecyclerViewAdapter extends BaseSingleItemAdapter<Student, BaseView
 
     @Override
     protected void convert(@NonNull BaseViewHolder viewHolder, Student student, int position) {
-        viewHolder.setImageBitmap(R.id.circleImageView, BitmapUtils.getBitmapFromByteArray(student.getPicture()));
+        ImageView imageView = viewHolder.getViewOrNull(R.id.circleImageView);
+        if (student == null) {
+            /* Placeholder while the page of this row is loading */
+            ImageLoader.getInstance(imageView.getContext()).cancel(imageView);
+            imageView.setImageBitmap(null);
+            viewHolder.setText(R.id.firstNameTextView, "");
+            viewHolder.setText(R.id.lastNameTextView, "");
+            viewHolder.setText(R.id.rollNumberTextView, "");
+            return;
+        }
+        loadPicture(imageView, student);
         viewHolder.setText(R.id.firstNameTextView, student.getFirstName());
         viewHolder.setText(R.id.lastNameTextView, student.getLastName());
         viewHolder.setText(R.id.rollNumberTextView, student.getRollNumber());
     }
+
+    @Override
+    public void onViewRecycled(@NonNull BaseViewHolder viewHolder) {
+        super.onViewRecycled(viewHolder);
+        ImageView imageView = viewHolder.getViewOrNull(R.id.circleImageView);
+        ImageLoader.getInstance(imageView.getContext()).cancel(imageView);
+    }
+
+    /**
+     * Bind the thumbnail of the student, read and decoded off the main thread. The picture hash
+     * is the version of the picture, an updated picture never hits the bitmap of the old one.
+     */
+    private void loadPicture(ImageView imageView, final Student student) {
+        final Context context = imageView.getContext().getApplicationContext();
+        String key = student.getPictureHash() != null ? student.getId() + ":" + student.getPictureHash() : null;
+
+        ImageLoader.getInstance(context).load(imageView, key, new ImageLoader.Source() {
+            @Override
+            public byte[] load() {
+                byte[] picture = student.getThumbnail();
+                if (picture == null) {
+                    /* List and search rows only carry the hash of the picture, the row only needs its thumbnail */
+                    picture = SQLiteDatabaseOperation.getInstance(context).getThumbnail(student.getPictureHash());
+                }
+                return picture != null ? picture : student.getPicture();
+            }
+        });
+    }
 }
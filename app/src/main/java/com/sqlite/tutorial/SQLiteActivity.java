@@ -25,26 +25,42 @@ import android.view.View;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.Toast;
+import com.google.android.material.snackbar.Snackbar;
 import com.sqlite.tutorial.baseadapter.listener.OnRecyclerViewItemChildClick;
 import com.sqlite.tutorial.baseadapter.listener.OnRecyclerViewItemClick;
 import com.sqlite.tutorial.constants.RequestCodeConstants;
 import com.sqlite.tutorial.permission.PermissionGroups;
 import com.sqlite.tutorial.permission.helper.ActivityPermissionHelper;
 import com.sqlite.tutorial.saf.SAFUtils;
+import com.sqlite.tutorial.sqlite.AsyncSQLiteDatabaseOperation;
+import com.sqlite.tutorial.sqlite.SQLiteChangeEvent;
 import com.sqlite.tutorial.sqlite.SQLiteDatabaseConstants;
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseExecutor;
 import com.sqlite.tutorial.sqlite.SQLiteDatabaseOperation;
+import com.sqlite.tutorial.sqlite.SQLiteFullTextSearch;
 import com.sqlite.tutorial.sqlite.SQLiteImporterExporter;
+import com.sqlite.tutorial.sqlite.SQLiteInvalidationTracker;
+import com.sqlite.tutorial.sqlite.StudentPagedList;
+import com.sqlite.tutorial.sqlite.StudentSearch;
+import com.sqlite.tutorial.sqlite.ThumbnailBackfillResult;
 import com.sqlite.tutorial.sqlite.model.Student;
 import com.sqlite.tutorial.utilities.ActivityUtils;
 import com.sqlite.tutorial.utilities.LayoutManagerUtils;
 import com.sqlite.tutorial.utilities.LogcatUtils;
 import com.sqlite.tutorial.utilities.file.FileUtils;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 public class SQLiteActivity extends AppCompatActivity {
 
     public static final String TAG = SQLiteActivity.class.getSimpleName();
 
+    /* The backfill only has work to do once per upgrade, run it at most once per process */
+    private static boolean thumbnailBackfillStarted;
+
     private Toolbar toolbar;
     private SearchView searchView;
 
@@ -54,10 +70,15 @@ public class SQLiteActivity extends AppCompatActivity {
 
     private RecyclerViewAdapter recyclerViewAdapter;
     private ArrayList<Student> studentArrayList;
+    private StudentPagedList studentPagedList;
+    private StudentSearch studentSearch;
+    /* Text of the search results shown, null when the paged list is shown */
+    private String searchQueryText;
 
     private ActivityPermissionHelper activityPermissionHelper;
 
     private SQLiteDatabaseOperation sqLiteDatabaseOperation;
+    private AsyncSQLiteDatabaseOperation asyncSQLiteDatabaseOperation;
     private SQLiteImporterExporter sqLiteImporterExporter;
 
     @Override
@@ -72,6 +93,13 @@ public class SQLiteActivity extends AppCompatActivity {
         initializeEvent();
     }
 
+    @Override
+    protected void onDestroy() {
+        studentSearch.cancel();
+        sqLiteDatabaseOperation.getInvalidationTracker().removeObserver(studentObserver);
+        super.onDestroy();
+    }
+
     protected void initializeView() {
         toolbar             = findViewById(R.id.toolbar);
         recyclerView        = findViewById(R.id.recyclerView);
@@ -83,8 +111,44 @@ public class SQLiteActivity extends AppCompatActivity {
         activityPermissionHelper    = new ActivityPermissionHelper(this,getApplicationContext());
 
         sqLiteDatabaseOperation     = SQLiteDatabaseOperation.getInstance(getApplicationContext());
+        asyncSQLiteDatabaseOperation = AsyncSQLiteDatabaseOperation.getInstance(getApplicationContext());
         sqLiteImporterExporter      = new SQLiteImporterExporter(getApplicationContext(), SQLiteDatabaseConstants.SQLite_DATABASE_NAME);
         studentArrayList            = new ArrayList<>();
+        studentPagedList            = new StudentPagedList(sqLiteDatabaseOperation);
+        studentPagedList.setLoadStateListener(new StudentPagedList.LoadStateListener() {
+            @Override
+            public void onFirstPageLoaded(int itemCount) {
+                showNotFound(itemCount == 0);
+            }
+
+            @Override
+            public void onPageLoadFailed(int pageIndex, Exception exception) {
+                Snackbar.make(recyclerView, "Students not loaded", Snackbar.LENGTH_INDEFINITE)
+                        .setAction("Retry", new View.OnClickListener() {
+                            @Override
+                            public void onClick(View view) {
+                                studentPagedList.retry();
+                            }
+                        })
+                        .show();
+            }
+        });
+
+        studentSearch               = new StudentSearch(sqLiteDatabaseOperation);
+        studentSearch.setListener(new StudentSearch.Listener() {
+            @Override
+            public void onSearchResult(String queryText, List<Student> students, long latencyMillis) {
+                searchQueryText = queryText;
+                showSearchResult(students);
+            }
+
+            @Override
+            public void onSearchFailed(String queryText, Exception exception) {
+                searchQueryText = queryText;
+                showSearchResult(Collections.<Student>emptyList());
+                Toast.makeText(getApplicationContext(), "Search failed", Toast.LENGTH_SHORT).show();
+            }
+        });
 
         recyclerView.setHasFixedSize(true);
         recyclerView.setLayoutManager(LayoutManagerUtils.getLinearLayoutManagerVertical(this));
@@ -94,7 +158,40 @@ public class SQLiteActivity extends AppCompatActivity {
         recyclerViewAdapter.addArrayList(studentArrayList);
         recyclerView.setAdapter(recyclerViewAdapter);
 
+        /* Rows written here or in InsertActivity / UpdateActivity */
+        sqLiteDatabaseOperation.getInvalidationTracker().addObserver(studentObserver, SQLiteDatabaseConstants.TABLE_1);
+
         readFirstWay();
+        startThumbnailBackfill();
+    }
+
+    private final SQLiteInvalidationTracker.Observer studentObserver = new SQLiteInvalidationTracker.Observer() {
+        @Override
+        public void onChanged(SQLiteChangeEvent event) {
+            applyStudentChange(event.getTableChange(SQLiteDatabaseConstants.TABLE_1));
+        }
+    };
+
+    private void startThumbnailBackfill() {
+        if (thumbnailBackfillStarted) {
+            return;
+        }
+        thumbnailBackfillStarted = true;
+
+        /* On the writer thread, it writes too and must be ordered with the other writes */
+        asyncSQLiteDatabaseOperation.backfillThumbnails(SQLiteDatabaseConstants.THUMBNAIL_BACKFILL_BATCH_SIZE, new SQLiteDatabaseExecutor.Callback<ThumbnailBackfillResult>() {
+            @Override
+            public void onSuccess(ThumbnailBackfillResult result) {
+                LogcatUtils.informationMessage(TAG, "Thumbnail backfill : " + result);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                /* Started again the next time the activity is created */
+                thumbnailBackfillStarted = false;
+                LogcatUtils.errorMessage(TAG, "Thumbnail backfill failed", exception);
+            }
+        });
     }
 
     protected void onTextChangedListener() {
@@ -113,13 +210,20 @@ public class SQLiteActivity extends AppCompatActivity {
         sqLiteImporterExporter.setOnExportListener(new SQLiteImporterExporter.ExportListener() {
             @Override
             public void onSuccess(String message) {
+                progressBar.setVisibility(View.GONE);
                 Toast.makeText(getApplicationContext(), message, Toast.LENGTH_SHORT).show();
             }
 
             @Override
             public void onFailure(Exception exception) {
+                progressBar.setVisibility(View.GONE);
                 Toast.makeText(getApplicationContext(), exception.getMessage(), Toast.LENGTH_SHORT).show();
             }
+
+            @Override
+            public void onProgress(long bytesWritten, long totalBytes) {
+                LogcatUtils.debuggingMessage(TAG, "Exported " + bytesWritten + " / " + totalBytes + " bytes");
+            }
         });
     }
 
@@ -133,6 +237,11 @@ public class SQLiteActivity extends AppCompatActivity {
         recyclerViewAdapter.setOnRecyclerViewItemChildClick(new OnRecyclerViewItemChildClick<Student>() {
             @Override
             public void OnItemChildClick(View viewChild, Student student, int position) {
+                if (student == null)
+                {
+                    /* Row of a page still loading */
+                    return;
+                }
                 switch (viewChild.getId()) {
                     case R.id.updateButtonTextView:
                         Bundle bundle = new Bundle();
@@ -145,20 +254,26 @@ public class SQLiteActivity extends AppCompatActivity {
                                 .setCancelable(false)
                                 .setPositiveButton("YES", new DialogInterface.OnClickListener() {
                                     public void onClick(DialogInterface dialog, int id) {
-
-                                        boolean isDelete = deleteFirstWay(student.getRollNumber());
-                                        if(isDelete)
-                                        {
-                                            recyclerViewAdapter.removeSingleItem(student);
-
-                                            Toast.makeText(getApplicationContext(), "Student detail deleted successfully", Toast.LENGTH_LONG).show();
-                                            dialog.cancel();
-                                        }
-                                        else
-                                        {
-                                            Toast.makeText(getApplicationContext(),"Student detail not deleted. Something wrong!",Toast.LENGTH_LONG).show();
-                                            dialog.cancel();
-                                        }
+                                        dialog.cancel();
+                                        deleteFirstWay(student.getRollNumber(), new SQLiteDatabaseExecutor.Callback<Boolean>() {
+                                            @Override
+                                            public void onSuccess(Boolean isDelete) {
+                                                if(isDelete)
+                                                {
+                                                    /* The row is removed by studentObserver */
+                                                    Toast.makeText(getApplicationContext(), "Student detail deleted successfully", Toast.LENGTH_LONG).show();
+                                                }
+                                                else
+                                                {
+                                                    Toast.makeText(getApplicationContext(),"Student detail not deleted. Something wrong!",Toast.LENGTH_LONG).show();
+                                                }
+                                            }
+
+                                            @Override
+                                            public void onFailure(Exception exception) {
+                                                Toast.makeText(getApplicationContext(),"Student detail not deleted. Something wrong!",Toast.LENGTH_LONG).show();
+                                            }
+                                        });
                                     }
                                 })
                                 .setNegativeButton("NO", new DialogInterface.OnClickListener() {
@@ -296,13 +411,13 @@ public class SQLiteActivity extends AppCompatActivity {
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
-                search(query);
+                search(query, true);
                 return false;
             }
 
             @Override
             public boolean onQueryTextChange(String query) {
-                search(query);
+                search(query, false);
                 return false;
             }
         });
@@ -390,12 +505,22 @@ public class SQLiteActivity extends AppCompatActivity {
      ********************************** CRUD OPERATION HELPER METHOD *******************************
      ***********************************************************************************************
      */
+    /**
+     * Rows are loaded page by page off the main thread as the user scrolls, see {@link StudentPagedList}
+     */
     private void readFirstWay() {
         studentArrayList.clear();
         recyclerViewAdapter.clearAllItem();
-        studentArrayList = sqLiteDatabaseOperation.getAllRowFirstWay();
 
-        if (studentArrayList.size() == 0)
+        if (recyclerViewAdapter.getPagedList() == null)
+        {
+            recyclerViewAdapter.setPagedList(studentPagedList);
+        }
+        studentPagedList.invalidate();
+    }
+
+    private void showNotFound(boolean isEmpty) {
+        if (isEmpty)
         {
             if (recyclerView.getVisibility() == View.VISIBLE) {
                 recyclerView.setVisibility(View.GONE);
@@ -415,17 +540,27 @@ public class SQLiteActivity extends AppCompatActivity {
                     notFoundImageView.setVisibility(View.GONE);
                 }
             }
-
-            recyclerViewAdapter.addArrayList(studentArrayList);
-            recyclerViewAdapter.notifyDataSetChanged();
         }
     }
 
     private void readSecondWhy() {
         studentArrayList.clear();
         recyclerViewAdapter.clearAllItem();
-        studentArrayList = sqLiteDatabaseOperation.getAllRowSecondWay();
+        asyncSQLiteDatabaseOperation.getAllRowSecondWay(new SQLiteDatabaseExecutor.Callback<ArrayList<Student>>() {
+            @Override
+            public void onSuccess(ArrayList<Student> students) {
+                studentArrayList = students;
+                showAllRows();
+            }
 
+            @Override
+            public void onFailure(Exception exception) {
+                showNotFound(true);
+            }
+        });
+    }
+
+    private void showAllRows() {
         if (studentArrayList.size() == 0)
         {
             if (recyclerView.getVisibility() == View.VISIBLE) {
@@ -453,97 +588,162 @@ public class SQLiteActivity extends AppCompatActivity {
     }
 
     private void readSingleFirstWhy(String rollNumber) {
-        Student student = sqLiteDatabaseOperation.getSingleRowFirstWay(rollNumber);
-        if(student == null)
-        {
-            System.out.println("Not Found");
-        }
-        else
-        {
-            System.out.println(""+student.toString());
-        }
+        asyncSQLiteDatabaseOperation.getSingleRowFirstWay(rollNumber, printStudentCallback);
     }
 
     private void readSingleSecondWhy(String rollNumber) {
-        Student student = sqLiteDatabaseOperation.getSingleRowSecondWay(rollNumber);
+        asyncSQLiteDatabaseOperation.getSingleRowSecondWay(rollNumber, printStudentCallback);
+    }
 
-        if(student == null)
-        {
-            System.out.println("Not Found");
+    private final SQLiteDatabaseExecutor.Callback<Student> printStudentCallback = new SQLiteDatabaseExecutor.Callback<Student>() {
+        @Override
+        public void onSuccess(Student student) {
+            if(student == null)
+            {
+                LogcatUtils.informationMessage(TAG, "Student not found");
+            }
+            else
+            {
+                LogcatUtils.informationMessage(TAG, student.toString());
+            }
         }
-        else
-        {
-            System.out.println(""+student.toString());
+
+        @Override
+        public void onFailure(Exception exception) {
+            LogcatUtils.errorMessage(TAG, "Student not read", exception);
+            Toast.makeText(getApplicationContext(), "Student not read. Something wrong!", Toast.LENGTH_SHORT).show();
         }
-    }
+    };
 
-    private boolean deleteFirstWay(String rollNumber) {
-        boolean isDelete = sqLiteDatabaseOperation.deleteFirstWay(rollNumber);
-        return isDelete;
+    private void deleteFirstWay(String rollNumber, SQLiteDatabaseExecutor.Callback<Boolean> callback) {
+        asyncSQLiteDatabaseOperation.deleteFirstWay(rollNumber, callback);
     }
 
     private void deleteSecondWay(String rollNumber) {
-        sqLiteDatabaseOperation.deleteSecondWay(rollNumber);
+        asyncSQLiteDatabaseOperation.deleteSecondWay(rollNumber, null);
     }
 
     private void delete(int id, String firstName) {
-        sqLiteDatabaseOperation.deleteWithMatchTwoField(id, firstName);
+        asyncSQLiteDatabaseOperation.deleteWithMatchTwoField(id, firstName, null);
     }
 
-    private boolean tableEmptyFirstWhy() {
-        boolean isDelete = sqLiteDatabaseOperation.setTableEmptyFirstWay(SQLiteDatabaseConstants.TABLE_1);
-        return isDelete;
+    private void tableEmptyFirstWhy(SQLiteDatabaseExecutor.Callback<Boolean> callback) {
+        asyncSQLiteDatabaseOperation.setTableEmptyFirstWay(SQLiteDatabaseConstants.TABLE_1, callback);
     }
 
     private void tableEmptySecondWhy() {
-        sqLiteDatabaseOperation.setTableEmptySecondWay(SQLiteDatabaseConstants.TABLE_1);
+        asyncSQLiteDatabaseOperation.setTableEmptySecondWay(SQLiteDatabaseConstants.TABLE_1, null);
     }
 
-    private void search(String firstName) {
-        studentArrayList.clear();
-        recyclerViewAdapter.clearAllItem();
+    private void search(String queryText, boolean isSubmit) {
+        if (queryText == null || queryText.trim().isEmpty())
+        {
+            /* Nothing to filter, back to the paged list */
+            studentSearch.cancel();
+            searchQueryText = null;
+            readFirstWay();
+            return;
+        }
 
-        studentArrayList = sqLiteDatabaseOperation.search(firstName);
+        if (isSubmit) {
+            studentSearch.submitNow(queryText);
+        } else {
+            studentSearch.submit(queryText);
+        }
+    }
 
-        if (studentArrayList.size() == 0)
-        {
-            if (recyclerView.getVisibility() == View.VISIBLE) {
-                recyclerView.setVisibility(View.GONE);
-            }
+    private void showSearchResult(List<Student> students) {
+        recyclerViewAdapter.setPagedList(null);
+        studentArrayList = new ArrayList<>(students);
+        recyclerViewAdapter.replaceArrayList(studentArrayList);
+        showNotFound(studentArrayList.isEmpty());
+    }
 
-            if (notFoundImageView.getVisibility() == View.GONE)
+    /**
+     * Apply committed writes to what is shown : the cached pages of the paged list and the search
+     * results are patched with the written rows only, keeping the scroll position.
+     */
+    private void applyStudentChange(final SQLiteChangeEvent.TableChange change) {
+        if (recyclerViewAdapter.getPagedList() != null)
+        {
+            studentPagedList.applyChange(change);
+            if (studentPagedList.isEndReached())
             {
-                notFoundImageView.setVisibility(View.VISIBLE);
+                showNotFound(studentPagedList.size() == 0);
             }
+            return;
         }
-        else
+        if (searchQueryText == null)
         {
-            if (recyclerView.getVisibility() == View.GONE) {
-                recyclerView.setVisibility(View.VISIBLE);
-                if (notFoundImageView.getVisibility() == View.VISIBLE)
+            return;
+        }
+        if (change.isInvalidated())
+        {
+            studentSearch.submitNow(searchQueryText);
+            return;
+        }
+
+        LinkedHashSet<Long> writtenIds = new LinkedHashSet<>(change.getInsertedRowIds());
+        writtenIds.addAll(change.getUpdatedRowIds());
+
+        final String queryText = searchQueryText;
+        asyncSQLiteDatabaseOperation.getRowsById(writtenIds, new SQLiteDatabaseExecutor.Callback<ArrayList<Student>>() {
+            @Override
+            public void onSuccess(ArrayList<Student> writtenRows) {
+                /* Still showing the same search */
+                if (recyclerViewAdapter.getPagedList() == null && queryText.equals(searchQueryText))
                 {
-                    notFoundImageView.setVisibility(View.GONE);
+                    applyStudentChange(change, writtenRows);
                 }
             }
 
-            recyclerViewAdapter.addArrayList(studentArrayList);
-            recyclerViewAdapter.notifyDataSetChanged();
+            @Override
+            public void onFailure(Exception exception) {
+                studentSearch.submitNow(queryText);
+            }
+        });
+    }
+
+    private void applyStudentChange(SQLiteChangeEvent.TableChange change, List<Student> writtenRows) {
+        HashMap<Long, Integer> positions = new HashMap<>();
+        for (int i = 0; i < studentArrayList.size(); i++) {
+            positions.put((long) studentArrayList.get(i).getId(), i);
         }
+
+        /* null marks the rows to remove, the list is compacted once at the end */
+        for (Long id : change.getDeletedRowIds()) {
+            Integer i = positions.get(id);
+            if (i != null) {
+                studentArrayList.set(i, null);
+            }
+        }
+
+        List<String> queryTokens = SQLiteFullTextSearch.tokenize(searchQueryText);
+        for (Student student : writtenRows) {
+            Integer i = positions.get((long) student.getId());
+            boolean isMatch = SQLiteFullTextSearch.matches(student, queryTokens);
+            if (i != null) {
+                studentArrayList.set(i, isMatch ? student : null);
+            } else if (isMatch) {
+                studentArrayList.add(student);
+            }
+        }
+        studentArrayList.removeAll(Collections.singleton(null));
+
+        recyclerViewAdapter.replaceArrayList(new ArrayList<>(studentArrayList));
+        showNotFound(studentArrayList.isEmpty());
     }
 
-    private int numberOfRowFirstWhy() {
-        int numberOfRow = sqLiteDatabaseOperation.getNumberOfRowsFirstWay(SQLiteDatabaseConstants.TABLE_1);;
-        return numberOfRow;
+    private void numberOfRowFirstWhy(SQLiteDatabaseExecutor.Callback<Integer> callback) {
+        asyncSQLiteDatabaseOperation.getNumberOfRowsFirstWay(SQLiteDatabaseConstants.TABLE_1, callback);
     }
 
-    private int numberOfRowSecondWhy() {
-        int numberOfRow = sqLiteDatabaseOperation.getNumberOfRowsSecondWay(SQLiteDatabaseConstants.TABLE_1);;
-        return numberOfRow;
+    private void numberOfRowSecondWhy(SQLiteDatabaseExecutor.Callback<Integer> callback) {
+        asyncSQLiteDatabaseOperation.getNumberOfRowsSecondWay(SQLiteDatabaseConstants.TABLE_1, callback);
     }
 
-    private int getLastInsertedRowId() {
-        int id = sqLiteDatabaseOperation.findLastId();
-        return id;
+    private void getLastInsertedRowId(SQLiteDatabaseExecutor.Callback<Integer> callback) {
+        asyncSQLiteDatabaseOperation.findLastId(callback);
     }
 
     /*
@@ -569,14 +769,19 @@ public class SQLiteActivity extends AppCompatActivity {
 
         DocumentFile file = SAFUtils.createFile(childDirectory, mimeType, fileNameWithoutExtension);
         Uri SDCardRealPathWhereToStoreDBFile = SAFUtils.getUri(file);
-        export(SDCardRealPathWhereToStoreDBFile);
+
+        /* octet-stream, so that the provider does not append an extension of its own */
+        DocumentFile checksumFile = SAFUtils.createFile(childDirectory, "application/octet-stream", fileNameWithoutExtension + ".sha256");
+        Uri checksumUri = checksumFile == null ? null : SAFUtils.getUri(checksumFile);
+        export(SDCardRealPathWhereToStoreDBFile, checksumUri);
     }
 
-    private void export(Uri SDCardRealPathWhereToStoreDBFile) {
+    private void export(Uri SDCardRealPathWhereToStoreDBFile, Uri checksumUri) {
         if (sqLiteImporterExporter.isDataBaseExists())
         {
             try {
-                sqLiteImporterExporter.exportDataBase(SDCardRealPathWhereToStoreDBFile);
+                progressBar.setVisibility(View.VISIBLE);
+                sqLiteImporterExporter.exportDataBase(SDCardRealPathWhereToStoreDBFile, checksumUri);
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -21,7 +21,8 @@ import com.sqlite.tutorial.constants.RequestCodeConstants;
 import com.sqlite.tutorial.customimageview.CircleImageView;
 import com.sqlite.tutorial.permission.PermissionGroups;
 import com.sqlite.tutorial.permission.helper.ActivityPermissionHelper;
-import com.sqlite.tutorial.sqlite.SQLiteDatabaseOperation;
+import com.sqlite.tutorial.sqlite.AsyncSQLiteDatabaseOperation;
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseExecutor;
 import com.sqlite.tutorial.sqlite.model.Student;
 import com.sqlite.tutorial.utilities.ActivityUtils;
 import com.sqlite.tutorial.utilities.BitmapUtils;
@@ -45,9 +46,10 @@ public class UpdateActivity extends AppCompatActivity {
     private String lastNameString;
     private String rollNumberString;
     private byte[] pictureByteArray;
+    private byte[] thumbnailByteArray;
 
     private ActivityPermissionHelper activityPermissionHelper;
-    private SQLiteDatabaseOperation sqLiteDatabaseOperation;
+    private AsyncSQLiteDatabaseOperation asyncSQLiteDatabaseOperation;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -76,7 +78,7 @@ public class UpdateActivity extends AppCompatActivity {
 
     protected void initializeObject() {
         activityPermissionHelper = new ActivityPermissionHelper(this,getApplicationContext());
-        sqLiteDatabaseOperation = SQLiteDatabaseOperation.getInstance(getApplicationContext());
+        asyncSQLiteDatabaseOperation = AsyncSQLiteDatabaseOperation.getInstance(getApplicationContext());
     }
 
     protected void onTextChangedListener() {
@@ -228,6 +230,7 @@ public class UpdateActivity extends AppCompatActivity {
                                 bitmap = BitmapUtils.handleSamplingAndRotationBitmap(UpdateActivity.this, uri, 0, 0);
                                 circleImageView.setImageBitmap(bitmap);
                                 pictureByteArray = BitmapUtils.getByteArrayFromBitmap(bitmap);
+                                thumbnailByteArray = BitmapUtils.getThumbnailByteArrayFromBitmap(bitmap, BitmapUtils.THUMBNAIL_SIZE);
                             } catch (IOException iOException) {
                                 Toast.makeText(getApplicationContext(), iOException.getMessage().toString(), Toast.LENGTH_SHORT).show();
                                 iOException.printStackTrace();
@@ -288,21 +291,41 @@ public class UpdateActivity extends AppCompatActivity {
 
     private void updateFirstWay(String firstName, String lastName, String rollNumber, byte[] pictureByteArray) {
         Student student = new Student(firstName, lastName, rollNumber, pictureByteArray);
-        boolean isUpdate = sqLiteDatabaseOperation.updateFirstWay(student);
-        if(isUpdate)
-        {
-            ActivityUtils.launchActivity(UpdateActivity.this, SQLiteActivity.class);
-        }
-        else
-        {
-            Toast.makeText(getApplicationContext(),"Not insert",Toast.LENGTH_LONG).show();
-        }
+        student.setThumbnail(thumbnailByteArray);
+        asyncSQLiteDatabaseOperation.updateFirstWay(student, new SQLiteDatabaseExecutor.Callback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean isUpdate) {
+                if(isUpdate)
+                {
+                    ActivityUtils.launchActivity(UpdateActivity.this, SQLiteActivity.class);
+                }
+                else
+                {
+                    Toast.makeText(getApplicationContext(),"Not insert",Toast.LENGTH_LONG).show();
+                }
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                Toast.makeText(getApplicationContext(),"Not insert",Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     private void updateSecondWay(String firstName, String lastName, String rollNumber, byte[] pictureByteArray) {
         Student student = new Student(firstName, lastName, rollNumber, pictureByteArray);
-        sqLiteDatabaseOperation.updateSecondWay(student);
-        ActivityUtils.launchActivity(UpdateActivity.this, SQLiteActivity.class);
+        student.setThumbnail(thumbnailByteArray);
+        asyncSQLiteDatabaseOperation.updateSecondWay(student, new SQLiteDatabaseExecutor.Callback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                ActivityUtils.launchActivity(UpdateActivity.this, SQLiteActivity.class);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                Toast.makeText(getApplicationContext(),"Not insert",Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     public void openFileManager(Activity currentActivity,
@@ -6,6 +6,10 @@ import android.view.ViewGroup;
 import androidx.annotation.IdRes;
 import androidx.annotation.LayoutRes;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 import com.sqlite.tutorial.baseadapter.listener.OnRecyclerViewItemChildClick;
 import com.sqlite.tutorial.baseadapter.listener.OnRecyclerViewItemChildLongClick;
@@ -13,11 +17,13 @@ import com.sqlite.tutorial.baseadapter.listener.OnRecyclerViewItemClick;
 import com.sqlite.tutorial.baseadapter.listener.OnRecyclerViewItemLongClick;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 
 public abstract class BaseAdapter<T, VH extends BaseViewHolder> extends RecyclerView.Adapter<VH> {
 
+    /* Rows shown, read only once a list has been submitted, change it through the methods below */
     protected List<T> data = new ArrayList<T>();
 
     /*
@@ -38,59 +44,82 @@ public abstract class BaseAdapter<T, VH extends BaseViewHolder> extends Recycler
      ************************************** CRUD Operation Methods *********************************
      ***********************************************************************************************
      */
+
+    /*
+     * Every method below builds the new list and hands it to submitList(), only the rows that
+     * differ from what is shown are notified. They work on the last submitted list, so several
+     * calls in a row are not lost while a diff is still being computed.
+     */
     public void addSingleItem(T item) {
         if (item != null) {
-            data.add(item);
-            notifyItemInserted(data.size() - 1);
+            List<T> items = getLatestList();
+            items.add(item);
+            submitList(items);
         }
     }
 
     public void addSingleItemAtSpecificPosition(T item, int position) {
         if (item != null) {
-            data.add(position, item);
-            notifyItemInserted(position);
+            List<T> items = getLatestList();
+            items.add(position, item);
+            submitList(items);
         }
     }
 
     public void addArrayList(List<T> items) {
         if (items != null) {
-            data.addAll(items);
-            notifyDataSetChanged();
+            List<T> newItems = getLatestList();
+            newItems.addAll(items);
+            submitList(newItems);
         }
     }
 
     public void replaceArrayList(List<T> items) {
         if (items != null) {
-            data.clear();
-            addArrayList(items);
+            submitList(items);
         }
     }
 
     public void addArray(T[] items) {
         if (items != null) {
             addArrayList(Arrays.asList(items));
-            notifyDataSetChanged();
         }
     }
 
     public void addOrUpdateSingleItem(T item) {
         if (item != null) {
-            int i = data.indexOf(item);
+            List<T> items = getLatestList();
+            int i = indexOfLatest(item);
             if (i >= 0) {
-                data.set(i, item);
-                notifyItemChanged(i);
+                items.set(i, item);
             } else {
-                addSingleItem(item);
+                items.add(item);
             }
+            submitList(items);
         }
     }
 
     public void addOrUpdateArrayList(List<T> items) {
         if (items != null) {
+            List<T> newItems = getLatestList();
+
+            /* Position of every item, one pass instead of an indexOf() per item */
+            HashMap<Object, Integer> positions = new HashMap<Object, Integer>();
+            for (int i = newItems.size() - 1; i >= 0; i--) {
+                positions.put(getIdentity(newItems.get(i)), i);
+            }
+
             for (T item : items) {
-                addOrUpdateSingleItem(item);
+                Object identity = getIdentity(item);
+                Integer i = positions.get(identity);
+                if (i != null) {
+                    newItems.set(i, item);
+                } else {
+                    positions.put(identity, newItems.size());
+                    newItems.add(item);
+                }
             }
-            notifyDataSetChanged();
+            submitList(newItems);
         }
     }
 
@@ -99,25 +128,254 @@ public abstract class BaseAdapter<T, VH extends BaseViewHolder> extends Recycler
     }
 
     public void removeSingleItemUsingPosition(int position) {
-        if (position >= 0 && position < data.size()) {
-            data.remove(position);
-            notifyItemRemoved(position);
+        List<T> items = getLatestList();
+        if (position >= 0 && position < items.size()) {
+            items.remove(position);
+            submitList(items);
         }
     }
 
     public void removeSingleItem(T item) {
         if (item != null) {
-            int position = data.indexOf(item);
+            removeSingleItemUsingPosition(indexOfLatest(item));
+        }
+    }
+
+    /**
+     * Only with an {@link ItemIdProvider}, O(1) lookup of the row.
+     */
+    public void removeSingleItemById(long id) {
+        Integer position = getIdIndex(latestIndex, submittedList != null ? submittedList : data).get(id);
+        if (position != null) {
             removeSingleItemUsingPosition(position);
         }
     }
 
+    /**
+     * Only with an {@link ItemIdProvider}, O(1) lookup of the row.
+     *
+     * @return position of the row shown for id, RecyclerView.NO_POSITION when there is none
+     */
+    public int getPositionById(long id) {
+        Integer position = getIdIndex(displayedIndex, data).get(id);
+        return position != null ? position : RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Only with an {@link ItemIdProvider}, O(1) lookup of the row.
+     */
+    public T getSingleItemById(long id) {
+        int position = getPositionById(id);
+        return position != RecyclerView.NO_POSITION ? data.get(position) : null;
+    }
+
+    /**
+     * Unlike the methods above the rows are removed right away, any diff still being computed is
+     * dropped, so the adapter can switch to another source of rows just after.
+     */
     public void clearAllItem() {
-        data.clear();
-        notifyDataSetChanged();
+        submittedList = new ArrayList<T>();
+        getDiffer().submitList(null);
+    }
+
+    /*
+     ***********************************************************************************************
+     ****************************************** Stable IDs *****************************************
+     ***********************************************************************************************
+     */
+    public interface ItemIdProvider<T> {
+        /**
+         * @return id of the item, unique in the list and never changing, e.g., a database row id
+         */
+        long getItemId(T item);
+    }
+
+    private ItemIdProvider<T> itemIdProvider;
+
+    /* id -> position of data and of the last submitted list, rebuilt once per list */
+    private final IdIndex<T> displayedIndex = new IdIndex<T>();
+    private final IdIndex<T> latestIndex = new IdIndex<T>();
+
+    /**
+     * Identify rows by id instead of equals() : lookups by id are O(1) and RecyclerView gets
+     * stable ids, so it can keep a row's view holder instead of rebinding it. Must be set before
+     * the adapter is attached to its RecyclerView.
+     */
+    public void setItemIdProvider(ItemIdProvider<T> itemIdProvider) {
+        this.itemIdProvider = itemIdProvider;
+        this.displayedIndex.list = null;
+        this.latestIndex.list = null;
+        setHasStableIds(itemIdProvider != null);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        if (itemIdProvider == null) {
+            return RecyclerView.NO_ID;
+        }
+        T t = getDataByPosition(position);
+        /* Rows without an item yet (placeholders) still need an id of their own */
+        return t != null ? itemIdProvider.getItemId(t) : Long.MIN_VALUE + position;
+    }
+
+    /**
+     * @return the id of item with an {@link ItemIdProvider}, item itself otherwise
+     */
+    private Object getIdentity(T item) {
+        return itemIdProvider != null ? (Object) itemIdProvider.getItemId(item) : item;
+    }
+
+    private int indexOfLatest(T item) {
+        List<T> items = submittedList != null ? submittedList : data;
+        if (itemIdProvider == null) {
+            return items.indexOf(item);
+        }
+        Integer position = getIdIndex(latestIndex, items).get(itemIdProvider.getItemId(item));
+        return position != null ? position : -1;
+    }
+
+    private HashMap<Long, Integer> getIdIndex(IdIndex<T> index, List<T> list) {
+        if (itemIdProvider == null) {
+            throw new IllegalStateException("No ItemIdProvider, see setItemIdProvider()");
+        }
+        /* Lists are never modified once shown or submitted, a new list means a new index */
+        if (index.list != list) {
+            index.positions.clear();
+            for (int i = 0; i < list.size(); i++) {
+                index.positions.put(itemIdProvider.getItemId(list.get(i)), i);
+            }
+            index.list = list;
+        }
+        return index.positions;
+    }
+
+    private static class IdIndex<T> {
+        private List<T> list;
+        private final HashMap<Long, Integer> positions = new HashMap<Long, Integer>();
+    }
+
+    /*
+     ***********************************************************************************************
+     ****************************************** Diff ***********************************************
+     ***********************************************************************************************
+     */
+
+    /* Same item when same id (or equals() without ids), same content when equals(), override with setDiffCallback() */
+    private DiffUtil.ItemCallback<T> diffCallback = new DiffUtil.ItemCallback<T>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull T oldItem, @NonNull T newItem) {
+            return getIdentity(oldItem).equals(getIdentity(newItem));
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull T oldItem, @NonNull T newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    private AsyncListDiffer<T> differ;
+
+    /* Last list given to the differ, what data becomes once the pending diff is dispatched */
+    private List<T> submittedList;
+    private boolean seedingDiffer;
+
+    /**
+     * Identity (areItemsTheSame) and content equality (areContentsTheSame) of the items, must be
+     * set before the first list is submitted.
+     */
+    public void setDiffCallback(@NonNull DiffUtil.ItemCallback<T> diffCallback) {
+        if (differ != null) {
+            throw new IllegalStateException("setDiffCallback() must be called before the first list is submitted");
+        }
+        this.diffCallback = diffCallback;
+    }
+
+    /**
+     * Show items. The diff with the current list is computed on a background thread and only the
+     * inserted, removed, moved and changed rows are notified. The list is copied.
+     */
+    public void submitList(List<T> items) {
+        submitList(items, null);
+    }
+
+    /**
+     * @param commitCallback run once items are shown, or dropped if a newer list is submitted first
+     */
+    public void submitList(List<T> items, Runnable commitCallback) {
+        List<T> newItems = items != null ? new ArrayList<T>(items) : new ArrayList<T>();
+        submittedList = newItems;
+        getDiffer().submitList(newItems, commitCallback);
+    }
+
+    /**
+     * @return copy of the last submitted list
+     */
+    protected List<T> getLatestList() {
+        return new ArrayList<T>(submittedList != null ? submittedList : data);
+    }
+
+    private AsyncListDiffer<T> getDiffer() {
+        if (differ == null) {
+            differ = new AsyncListDiffer<T>(new ListUpdateCallback() {
+                @Override
+                public void onInserted(int position, int count) {
+                    data = differ.getCurrentList();
+                    if (!seedingDiffer && isDataShown()) {
+                        notifyItemRangeInserted(position, count);
+                    }
+                }
+
+                @Override
+                public void onRemoved(int position, int count) {
+                    data = differ.getCurrentList();
+                    if (isDataShown()) {
+                        notifyItemRangeRemoved(position, count);
+                    }
+                }
+
+                @Override
+                public void onMoved(int fromPosition, int toPosition) {
+                    data = differ.getCurrentList();
+                    if (isDataShown()) {
+                        notifyItemMoved(fromPosition, toPosition);
+                    }
+                }
+
+                @Override
+                public void onChanged(int position, int count, Object payload) {
+                    data = differ.getCurrentList();
+                    if (isDataShown()) {
+                        notifyItemRangeChanged(position, count, payload);
+                    }
+                }
+            }, new AsyncDifferConfig.Builder<T>(diffCallback).build());
+
+            differ.addListListener(new AsyncListDiffer.ListListener<T>() {
+                @Override
+                public void onCurrentListChanged(@NonNull List<T> previousList, @NonNull List<T> currentList) {
+                    data = currentList;
+                }
+            });
+
+            /* The rows shown before the first submit are already bound, the differ starts from them */
+            if (data != null && !data.isEmpty()) {
+                seedingDiffer = true;
+                differ.submitList(new ArrayList<T>(data));
+                seedingDiffer = false;
+            }
+        }
+        return differ;
+    }
+
+    /**
+     * @return false while the rows come from somewhere else than data, diffs dispatched meanwhile
+     * update data without notifying the RecyclerView
+     */
+    protected boolean isDataShown() {
+        return true;
     }
 
-    private T getDataByPosition(int position) {
+    protected T getDataByPosition(int position) {
         T t = null;
         if (position != RecyclerView.NO_POSITION) {
             t = data.get(position);
@@ -152,7 +410,7 @@ public abstract class BaseAdapter<T, VH extends BaseViewHolder> extends Recycler
 
     @Override
     public void onBindViewHolder(@NonNull VH viewHolder, int position) {
-        T t = data.get(position);
+        T t = getDataByPosition(position);
         convert(viewHolder, t, position);
     }
     /*
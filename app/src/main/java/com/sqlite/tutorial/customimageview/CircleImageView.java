@@ -29,6 +29,7 @@ import androidx.annotation.ColorRes;
 import androidx.annotation.DrawableRes;
 import androidx.annotation.RequiresApi;
 import com.sqlite.tutorial.R;
+import com.sqlite.tutorial.utilities.BitmapPool;
 
 @SuppressLint("AppCompatCustomView")
 public class CircleImageView extends ImageView {
@@ -56,6 +57,12 @@ public class CircleImageView extends ImageView {
     private int mCircleBackgroundColor = DEFAULT_CIRCLE_BACKGROUND_COLOR;
 
     private Bitmap mBitmap;
+    /* Bitmap given to setImageBitmap(), returned to the BitmapPool when it is replaced or the view detached */
+    private Bitmap mPooledBitmap;
+    /* A BitmapPool reference on mPooledBitmap is held, only while attached */
+    private boolean mPooledBitmapHeld;
+    /* Generation of mPooledBitmap when it was released, a different one on attach means it was reused */
+    private int mPooledBitmapGenerationId;
     private BitmapShader mBitmapShader;
     private int mBitmapWidth;
     private int mBitmapHeight;
@@ -159,6 +166,31 @@ public class CircleImageView extends ImageView {
         setup();
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mPooledBitmap != null && !mPooledBitmapHeld) {
+            if (BitmapPool.getInstance().reacquire(mPooledBitmap, mPooledBitmapGenerationId)) {
+                mPooledBitmapHeld = true;
+            } else {
+                /* Given to another decode while detached, its pixels are no longer ours to draw */
+                mPooledBitmap = null;
+                setImageDrawable(null);
+            }
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        /* A detached view may never come back, it must not keep the bitmap from the pool */
+        if (mPooledBitmap != null && mPooledBitmapHeld) {
+            mPooledBitmapGenerationId = mPooledBitmap.getGenerationId();
+            mPooledBitmapHeld = false;
+            BitmapPool.getInstance().release(mPooledBitmap);
+        }
+        super.onDetachedFromWindow();
+    }
+
     @Override
     public void setPadding(int left, int top, int right, int bottom) {
         super.setPadding(left, top, right, bottom);
@@ -288,27 +320,59 @@ public class CircleImageView extends ImageView {
     @Override
     public void setImageBitmap(Bitmap bm) {
         super.setImageBitmap(bm);
+        replacePooledBitmap(bm);
         initializeBitmap();
     }
 
     @Override
     public void setImageDrawable(Drawable drawable) {
         super.setImageDrawable(drawable);
+        replacePooledBitmap(null);
         initializeBitmap();
     }
 
     @Override
     public void setImageResource(@DrawableRes int resId) {
         super.setImageResource(resId);
+        replacePooledBitmap(null);
         initializeBitmap();
     }
 
     @Override
     public void setImageURI(Uri uri) {
         super.setImageURI(uri);
+        replacePooledBitmap(null);
         initializeBitmap();
     }
 
+    /**
+     * Release the previous bitmap to the pool, it is no longer drawn, and hold the new one while
+     * attached. setImageBitmap() goes through setImageDrawable() so the bitmap being set must be kept.
+     */
+    private void replacePooledBitmap(Bitmap bitmap) {
+        Drawable drawable = getDrawable();
+        if (bitmap == null && drawable instanceof BitmapDrawable && ((BitmapDrawable) drawable).getBitmap() == mPooledBitmap) {
+            return;
+        }
+        if (bitmap == mPooledBitmap) {
+            return;
+        }
+        if (mPooledBitmap != null && mPooledBitmapHeld) {
+            BitmapPool.getInstance().release(mPooledBitmap);
+        }
+        mPooledBitmap = bitmap;
+        mPooledBitmapHeld = false;
+        if (bitmap != null) {
+            if (isAttachedToWindow()) {
+                BitmapPool.getInstance().acquire(bitmap);
+                mPooledBitmapHeld = true;
+            } else {
+                /* Bound before being attached, e.g., by a RecyclerView, taken on attach */
+                mPooledBitmapGenerationId = bitmap.getGenerationId();
+            }
+        }
+    }
+
     @Override
     public void setColorFilter(ColorFilter cf) {
         if (cf == mColorFilter) {
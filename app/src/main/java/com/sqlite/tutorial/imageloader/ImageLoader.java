@@ -0,0 +1,213 @@
+package com.sqlite.tutorial.imageloader;
+
+import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.widget.ImageView;
+import androidx.annotation.NonNull;
+import com.sqlite.tutorial.utilities.BitmapPool;
+import com.sqlite.tutorial.utilities.BitmapUtils;
+import com.sqlite.tutorial.utilities.LogcatUtils;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads encoded images into {@link ImageView}s without decoding on the main thread.
+ *
+ * Decoded bitmaps are kept in an {@link LruCache} bounded in bytes, so a rebind of a row that was
+ * shown recently is served synchronously. A miss is read and decoded on a small fixed pool, a
+ * request is dropped when its ImageView is bound to something else or recycled before it ends.
+ *
+ * Cached bitmaps come from the {@link BitmapPool}. The cache holds one reference and a bitmap on its
+ * way to a view holds another until the view has taken its own, so an eviction in between can not
+ * give the bitmap back to the pool while it is about to be shown.
+ *
+ * {@link #load} and {@link #cancel} must be called on the main thread.
+ */
+public class ImageLoader implements ComponentCallbacks2 {
+
+    private static final String TAG = ImageLoader.class.getSimpleName();
+
+    /* Share of the heap given to decoded bitmaps */
+    private static final int MEMORY_CACHE_DIVIDER   = 8;
+    private static final int DECODE_THREAD_COUNT    = 2;
+
+    @SuppressLint("StaticFieldLeak")
+    private static ImageLoader instance;
+
+    public static ImageLoader getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ImageLoader.class) {
+                if (instance == null) {
+                    instance = new ImageLoader(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /* Request currently bound to every ImageView, main thread only */
+    private final Map<ImageView, Request> requests = new WeakHashMap<ImageView, Request>();
+
+    private ImageLoader(Context context) {
+        int maxSize = (int) (Runtime.getRuntime().maxMemory() / MEMORY_CACHE_DIVIDER);
+        this.memoryCache = new LruCache<String, Bitmap>(maxSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return BitmapUtils.byteSizeOfBitmap(bitmap);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                /* The bitmap goes back to the pool once no view shows it anymore */
+                BitmapPool.getInstance().release(oldValue);
+            }
+        };
+        this.executor = new ThreadPoolExecutor(DECODE_THREAD_COUNT, DECODE_THREAD_COUNT,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+        context.registerComponentCallbacks(this);
+    }
+
+    /**
+     * Show the image identified by key in imageView, loading and decoding it in the background
+     * when it is not in memory. Any request previously made for imageView is cancelled.
+     *
+     * @param key identity and version of the image, e.g., row id and picture hash
+     * @param source reads the encoded bytes, called on a background thread
+     */
+    public void load(final ImageView imageView, final String key, final Source source) {
+        cancel(imageView);
+
+        Bitmap bitmap = key != null ? acquireCachedBitmap(key) : null;
+        if (bitmap != null)
+        {
+            imageView.setImageBitmap(bitmap);
+            BitmapPool.getInstance().release(bitmap);
+            return;
+        }
+        imageView.setImageBitmap(null);
+        if (key == null)
+        {
+            return;
+        }
+
+        final Request request = new Request();
+        requests.put(imageView, request);
+        request.future = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (request.cancelled)
+                {
+                    return;
+                }
+
+                final Bitmap decoded = BitmapUtils.getBitmapFromByteArray(source.load());
+                if (decoded == null)
+                {
+                    return;
+                }
+                /* One reference for the cache, one for the view until it is delivered */
+                BitmapPool.getInstance().acquire(decoded);
+                BitmapPool.getInstance().acquire(decoded);
+                memoryCache.put(key, decoded);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!request.cancelled && requests.get(imageView) == request)
+                        {
+                            requests.remove(imageView);
+                            imageView.setImageBitmap(decoded);
+                        }
+                        /* Delivered, cancelled or replaced, the view holds its own reference while attached */
+                        BitmapPool.getInstance().release(decoded);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drop the pending request of imageView, e.g., when its view holder is recycled.
+     */
+    public void cancel(ImageView imageView) {
+        Request request = requests.remove(imageView);
+        if (request != null)
+        {
+            request.cancelled = true;
+            if (request.future != null)
+            {
+                request.future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Cache lookup and {@link BitmapPool#acquire(Bitmap)} under the cache lock. An eviction removes
+     * the entry under that lock and releases it after, so it can not release the cached reference
+     * before this one is taken. The caller must release the returned bitmap.
+     */
+    private Bitmap acquireCachedBitmap(String key) {
+        synchronized (memoryCache) {
+            Bitmap bitmap = memoryCache.get(key);
+            BitmapPool.getInstance().acquire(bitmap);
+            return bitmap;
+        }
+    }
+
+    public Bitmap getCachedBitmap(String key) {
+        return memoryCache.get(key);
+    }
+
+    public void clearMemoryCache() {
+        memoryCache.evictAll();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+        {
+            LogcatUtils.informationMessage(TAG, "onTrimMemory(" + level + ") : evicting " + memoryCache.size() + " bytes");
+            memoryCache.evictAll();
+        }
+        else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+        {
+            memoryCache.trimToSize(memoryCache.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    private static class Request {
+
+        private volatile boolean cancelled;
+        private Future<?> future;
+    }
+
+    public interface Source {
+        /**
+         * @return encoded image, null when there is none
+         */
+        byte[] load();
+    }
+}
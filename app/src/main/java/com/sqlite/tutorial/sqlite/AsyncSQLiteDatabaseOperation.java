@@ -0,0 +1,402 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.os.CancellationSignal;
+import com.sqlite.tutorial.sqlite.SQLiteDatabaseExecutor.Callback;
+import com.sqlite.tutorial.sqlite.model.Student;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * {@link SQLiteDatabaseOperation} off the main thread : every operation runs on the
+ * {@link SQLiteDatabaseExecutor}, writes on the writer thread and reads on the reader pool.
+ *
+ * Each method returns a {@link Future} of the result and tells the optional {@link Callback} on
+ * the main thread, so activities never block on the disk.
+ */
+public class AsyncSQLiteDatabaseOperation {
+
+    @SuppressLint("StaticFieldLeak")
+    private static AsyncSQLiteDatabaseOperation instance;
+
+    public static AsyncSQLiteDatabaseOperation getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AsyncSQLiteDatabaseOperation.class) {
+                if (instance == null) {
+                    instance = new AsyncSQLiteDatabaseOperation(SQLiteDatabaseOperation.getInstance(context), SQLiteDatabaseExecutor.getInstance());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final SQLiteDatabaseOperation operation;
+    private final SQLiteDatabaseExecutor executor;
+
+    public AsyncSQLiteDatabaseOperation(SQLiteDatabaseOperation operation, SQLiteDatabaseExecutor executor) {
+        this.operation  = operation;
+        this.executor   = executor;
+    }
+
+    /**
+     * Blocking operations, for code already running on a database thread.
+     */
+    public SQLiteDatabaseOperation getOperation() {
+        return operation;
+    }
+
+    /*
+     ***********************************************************************************************
+     ****************************************** INSERT OPERATION ***********************************
+     ***********************************************************************************************
+     */
+    public Future<Boolean> insertFirstWay(final Student object, Callback<Boolean> callback) {
+        return executor.write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return operation.insertFirstWay(object);
+            }
+        }, callback);
+    }
+
+    public Future<Long> insertAndGetId(final Student object, Callback<Long> callback) {
+        return executor.write(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return operation.insertAndGetId(object);
+            }
+        }, callback);
+    }
+
+    public Future<Void> insertSecondWay(final Student object, Callback<Void> callback) {
+        return executor.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operation.insertSecondWay(object);
+                return null;
+            }
+        }, callback);
+    }
+
+    public Future<BulkInsertResult> insertAll(final Collection<Student> objects, Callback<BulkInsertResult> callback) {
+        return executor.write(new Callable<BulkInsertResult>() {
+            @Override
+            public BulkInsertResult call() {
+                return operation.insertAll(objects);
+            }
+        }, callback);
+    }
+
+    public Future<BulkInsertResult> insertAll(final Collection<Student> objects, final IdRange ids, Callback<BulkInsertResult> callback) {
+        return executor.write(new Callable<BulkInsertResult>() {
+            @Override
+            public BulkInsertResult call() {
+                return operation.insertAll(objects, ids);
+            }
+        }, callback);
+    }
+
+    public Future<IdRange> reserveIds(final String tableName, final int count, Callback<IdRange> callback) {
+        return executor.write(new Callable<IdRange>() {
+            @Override
+            public IdRange call() {
+                return operation.reserveIds(tableName, count);
+            }
+        }, callback);
+    }
+
+    public Future<BulkInsertResult> insertAll(final Iterator<Student> iterator, Callback<BulkInsertResult> callback) {
+        return executor.write(new Callable<BulkInsertResult>() {
+            @Override
+            public BulkInsertResult call() {
+                return operation.insertAll(iterator);
+            }
+        }, callback);
+    }
+
+    /*
+     ***********************************************************************************************
+     ****************************************** READ OPERATION *************************************
+     ***********************************************************************************************
+     */
+    public Future<Integer> getNumberOfRowsFirstWay(final String tableName, Callback<Integer> callback) {
+        return executor.read(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return operation.getNumberOfRowsFirstWay(tableName);
+            }
+        }, callback);
+    }
+
+    public Future<Integer> getNumberOfRowsSecondWay(final String tableName, Callback<Integer> callback) {
+        return executor.read(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return operation.getNumberOfRowsSecondWay(tableName);
+            }
+        }, callback);
+    }
+
+    public Future<Long> getRowCount(final String tableName, Callback<Long> callback) {
+        return executor.read(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return operation.getRowCount(tableName);
+            }
+        }, callback);
+    }
+
+    public Future<Long> getRowCountWithPrefix(final String prefix, Callback<Long> callback) {
+        return executor.read(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return operation.getRowCountWithPrefix(prefix);
+            }
+        }, callback);
+    }
+
+    public Future<LinkedHashMap<String, Long>> getPrefixCounts(Callback<LinkedHashMap<String, Long>> callback) {
+        return executor.read(new Callable<LinkedHashMap<String, Long>>() {
+            @Override
+            public LinkedHashMap<String, Long> call() {
+                return operation.getPrefixCounts();
+            }
+        }, callback);
+    }
+
+    public Future<ArrayList<Student>> getAllRowFirstWay(Callback<ArrayList<Student>> callback) {
+        return executor.read(new Callable<ArrayList<Student>>() {
+            @Override
+            public ArrayList<Student> call() {
+                return operation.getAllRowFirstWay();
+            }
+        }, callback);
+    }
+
+    public Future<ArrayList<Student>> getAllRowSecondWay(Callback<ArrayList<Student>> callback) {
+        return executor.read(new Callable<ArrayList<Student>>() {
+            @Override
+            public ArrayList<Student> call() {
+                return operation.getAllRowSecondWay();
+            }
+        }, callback);
+    }
+
+    public Future<ArrayList<Student>> loadPage(final int afterId, final int limit, Callback<ArrayList<Student>> callback) {
+        return executor.read(new Callable<ArrayList<Student>>() {
+            @Override
+            public ArrayList<Student> call() {
+                return operation.loadPage(afterId, limit);
+            }
+        }, callback);
+    }
+
+    public Future<byte[]> getPicture(final String pictureHash, Callback<byte[]> callback) {
+        return executor.read(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return operation.getPicture(pictureHash);
+            }
+        }, callback);
+    }
+
+    public Future<byte[]> getThumbnail(final String pictureHash, Callback<byte[]> callback) {
+        return executor.read(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return operation.getThumbnail(pictureHash);
+            }
+        }, callback);
+    }
+
+    public Future<Student> getSingleRowFirstWay(final String rollNumber, Callback<Student> callback) {
+        return executor.read(new Callable<Student>() {
+            @Override
+            public Student call() {
+                return operation.getSingleRowFirstWay(rollNumber);
+            }
+        }, callback);
+    }
+
+    public Future<Student> getSingleRowSecondWay(final String rollNumber, Callback<Student> callback) {
+        return executor.read(new Callable<Student>() {
+            @Override
+            public Student call() {
+                return operation.getSingleRowSecondWay(rollNumber);
+            }
+        }, callback);
+    }
+
+    public Future<Student> getTableInfoById(final int id, Callback<Student> callback) {
+        return executor.read(new Callable<Student>() {
+            @Override
+            public Student call() {
+                return operation.getTableInfoById(id);
+            }
+        }, callback);
+    }
+
+    public Future<ArrayList<Student>> getRowsById(final Collection<Long> ids, Callback<ArrayList<Student>> callback) {
+        return executor.read(new Callable<ArrayList<Student>>() {
+            @Override
+            public ArrayList<Student> call() {
+                return operation.getRowsById(ids);
+            }
+        }, callback);
+    }
+
+    public Future<Boolean> isEmailExit(final String email, Callback<Boolean> callback) {
+        return executor.read(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return operation.isEmailExit(email);
+            }
+        }, callback);
+    }
+
+    public Future<Long> getLastId(final String tableName, Callback<Long> callback) {
+        return executor.read(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return operation.getLastId(tableName);
+            }
+        }, callback);
+    }
+
+    public Future<Integer> findLastId(Callback<Integer> callback) {
+        return executor.read(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return operation.findLastId();
+            }
+        }, callback);
+    }
+
+    /*
+     ***********************************************************************************************
+     ****************************************** UPDATE OPERATION ***********************************
+     ***********************************************************************************************
+     */
+    public Future<Boolean> updateFirstWay(final Student object, Callback<Boolean> callback) {
+        return executor.write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return operation.updateFirstWay(object);
+            }
+        }, callback);
+    }
+
+    public Future<Void> updateSecondWay(final Student object, Callback<Void> callback) {
+        return executor.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operation.updateSecondWay(object);
+                return null;
+            }
+        }, callback);
+    }
+
+    public Future<ThumbnailBackfillResult> backfillThumbnails(final int batchSize, Callback<ThumbnailBackfillResult> callback) {
+        return executor.write(new Callable<ThumbnailBackfillResult>() {
+            @Override
+            public ThumbnailBackfillResult call() {
+                return operation.backfillThumbnails(batchSize);
+            }
+        }, callback);
+    }
+
+    /*
+     ***********************************************************************************************
+     ****************************************** UPSERT OPERATION ***********************************
+     ***********************************************************************************************
+     */
+    public Future<UpsertResult> upsert(final Student object, final UpsertPolicy policy, Callback<UpsertResult> callback) {
+        return executor.write(new Callable<UpsertResult>() {
+            @Override
+            public UpsertResult call() {
+                return operation.upsert(object, policy);
+            }
+        }, callback);
+    }
+
+    public Future<UpsertResult> upsertAll(final Collection<Student> objects, final UpsertPolicy policy, Callback<UpsertResult> callback) {
+        return executor.write(new Callable<UpsertResult>() {
+            @Override
+            public UpsertResult call() {
+                return operation.upsertAll(objects, policy);
+            }
+        }, callback);
+    }
+
+    /*
+     ***********************************************************************************************
+     ****************************************** DELETE OPERATION ***********************************
+     ***********************************************************************************************
+     */
+    public Future<Boolean> deleteFirstWay(final String rollNumber, Callback<Boolean> callback) {
+        return executor.write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return operation.deleteFirstWay(rollNumber);
+            }
+        }, callback);
+    }
+
+    public Future<Void> deleteSecondWay(final String rollNumber, Callback<Void> callback) {
+        return executor.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operation.deleteSecondWay(rollNumber);
+                return null;
+            }
+        }, callback);
+    }
+
+    public Future<Void> deleteWithMatchTwoField(final int id, final String firstName, Callback<Void> callback) {
+        return executor.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operation.deleteWithMatchTwoField(id, firstName);
+                return null;
+            }
+        }, callback);
+    }
+
+    public Future<Boolean> setTableEmptyFirstWay(final String tableName, Callback<Boolean> callback) {
+        return executor.write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return operation.setTableEmptyFirstWay(tableName);
+            }
+        }, callback);
+    }
+
+    public Future<Void> setTableEmptySecondWay(final String tableName, Callback<Void> callback) {
+        return executor.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operation.setTableEmptySecondWay(tableName);
+                return null;
+            }
+        }, callback);
+    }
+
+    /*
+     ***********************************************************************************************
+     ****************************************** SEARCH OPERATION ***********************************
+     ***********************************************************************************************
+     */
+    public Future<ArrayList<Student>> search(final String queryText, final CancellationSignal cancellationSignal, Callback<ArrayList<Student>> callback) {
+        return executor.read(new Callable<ArrayList<Student>>() {
+            @Override
+            public ArrayList<Student> call() {
+                return operation.search(queryText, cancellationSignal);
+            }
+        }, callback);
+    }
+}
@@ -0,0 +1,88 @@
+package com.sqlite.tutorial.sqlite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of {@link SQLiteDatabaseOperation#insertAll(java.util.Iterator)}, one {@link Batch}
+ * per committed transaction.
+ */
+public class BulkInsertResult {
+
+    private final List<Batch> batches = new ArrayList<Batch>();
+
+    void addBatch(long[] rowIds, long durationMillis) {
+        batches.add(new Batch(rowIds, durationMillis));
+    }
+
+    public List<Batch> getBatches() {
+        return Collections.unmodifiableList(batches);
+    }
+
+    public int getInsertedCount() {
+        int count = 0;
+        for (Batch batch : batches) {
+            count += batch.getInsertedCount();
+        }
+        return count;
+    }
+
+    public int getFailedCount() {
+        int count = 0;
+        for (Batch batch : batches) {
+            count += batch.getRowIds().length - batch.getInsertedCount();
+        }
+        return count;
+    }
+
+    public long getTotalDurationMillis() {
+        long duration = 0;
+        for (Batch batch : batches) {
+            duration += batch.getDurationMillis();
+        }
+        return duration;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkInsertResult{" +
+                "batches=" + batches.size() +
+                ", inserted=" + getInsertedCount() +
+                ", failed=" + getFailedCount() +
+                ", durationMillis=" + getTotalDurationMillis() +
+                '}';
+    }
+
+    public static class Batch {
+
+        private final long[] rowIds;
+        private final long durationMillis;
+
+        Batch(long[] rowIds, long durationMillis) {
+            this.rowIds         = rowIds;
+            this.durationMillis = durationMillis;
+        }
+
+        /**
+         * @return the row ID of every row of the batch in input order, -1 where the row was rejected
+         */
+        public long[] getRowIds() {
+            return rowIds;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public int getInsertedCount() {
+            int count = 0;
+            for (long rowId : rowIds) {
+                if (rowId != -1) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.sqlite.tutorial.sqlite;
+
+/**
+ * Consecutive row ids reserved by {@link SQLiteDatabaseOperation#reserveIds(String, int)}, which
+ * SQLite will not hand out to any other insert.
+ */
+public class IdRange {
+
+    private final long first;
+    private final int size;
+
+    IdRange(long first, int size) {
+        this.first  = first;
+        this.size   = size;
+    }
+
+    public long getFirst() {
+        return first;
+    }
+
+    public long getLast() {
+        return first + size - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the id at the given position, 0 for the first one
+     */
+    public long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " of " + this);
+        }
+        return first + index;
+    }
+
+    public boolean contains(long id) {
+        return id >= first && id <= getLast();
+    }
+
+    @Override
+    public String toString() {
+        return "IdRange{" +
+                "first=" + first +
+                ", last=" + getLast() +
+                '}';
+    }
+}
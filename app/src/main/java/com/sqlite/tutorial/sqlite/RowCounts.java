@@ -0,0 +1,128 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * Row counts of {@link SQLiteDatabaseConstants#TABLE_1} and {@link SQLiteDatabaseConstants#TABLE_2}
+ * kept in the row_count table by insert and delete triggers, so that counting is a primary key
+ * lookup instead of a scan of the table.
+ *
+ * Students are also counted per prefix, the first letter of firstName upper cased ('#' when there
+ * is none), which gives the sections of the fast scroller without reading a single student.
+ * The total of a table is stored under the empty prefix.
+ */
+public class RowCounts {
+
+    /* Stands for every firstName without a first letter */
+    public static final String NO_PREFIX = "#";
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS row_count (table_name TEXT NOT NULL, prefix TEXT NOT NULL, count INTEGER NOT NULL," +
+            " PRIMARY KEY (table_name, prefix)) WITHOUT ROWID";
+
+    private static String prefixExpression(String row) {
+        return "CASE WHEN " + row + ".firstName IS NULL OR " + row + ".firstName = '' THEN '" + NO_PREFIX + "'" +
+                " ELSE UPPER(SUBSTR(" + row + ".firstName, 1, 1)) END";
+    }
+
+    private static String increment(String table, String prefix) {
+        return " INSERT OR IGNORE INTO row_count (table_name, prefix, count) VALUES ('" + table + "', " + prefix + ", 0);" +
+                " UPDATE row_count SET count = count + 1 WHERE table_name = '" + table + "' AND prefix = " + prefix + ";";
+    }
+
+    private static String decrement(String table, String prefix) {
+        return " UPDATE row_count SET count = count - 1 WHERE table_name = '" + table + "' AND prefix = " + prefix + ";";
+    }
+
+    private static final String[] TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS trigger_row_count_on_student_insert AFTER INSERT ON student BEGIN" +
+                    increment("student", "''") + increment("student", prefixExpression("NEW")) + " END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_row_count_on_student_delete AFTER DELETE ON student BEGIN" +
+                    decrement("student", "''") + decrement("student", prefixExpression("OLD")) + " END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_row_count_on_student_update AFTER UPDATE OF firstName ON student" +
+                    " WHEN " + prefixExpression("OLD") + " IS NOT " + prefixExpression("NEW") + " BEGIN" +
+                    decrement("student", prefixExpression("OLD")) + increment("student", prefixExpression("NEW")) + " END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_row_count_on_user_insert AFTER INSERT ON user BEGIN" +
+                    increment("user", "''") + " END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_row_count_on_user_delete AFTER DELETE ON user BEGIN" +
+                    decrement("user", "''") + " END"
+    };
+
+    /* Counts of the tables as they are now, the triggers keep them from there */
+    private static final String[] REBUILD = {
+            "DELETE FROM row_count",
+            "INSERT INTO row_count (table_name, prefix, count) SELECT 'student', '', COUNT(*) FROM student",
+            "INSERT INTO row_count (table_name, prefix, count) SELECT 'student', " + prefixExpression("student") + ", COUNT(*) FROM student GROUP BY 2",
+            "INSERT INTO row_count (table_name, prefix, count) SELECT 'user', '', COUNT(*) FROM user"
+    };
+
+    /* Binds the table name and the prefix, the empty prefix for the total */
+    static final String SELECT_COUNT = "SELECT IFNULL((SELECT count FROM row_count WHERE table_name = ? AND prefix = ?), 0)";
+
+    private static final String SELECT_PREFIX_COUNTS = "SELECT prefix, count FROM row_count WHERE table_name = ? AND prefix != '' AND count > 0 ORDER BY prefix";
+
+    private RowCounts() {
+        throw new UnsupportedOperationException("You can't create instance of Util class. Please use as static..");
+    }
+
+    static void create(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(CREATE_TABLE);
+        for (String trigger : TRIGGERS)
+        {
+            sqLiteDatabase.execSQL(trigger);
+        }
+        rebuild(sqLiteDatabase);
+    }
+
+    /**
+     * Count every table again, run inside a transaction.
+     */
+    static void rebuild(SQLiteDatabase sqLiteDatabase) {
+        for (String statement : REBUILD)
+        {
+            sqLiteDatabase.execSQL(statement);
+        }
+    }
+
+    /**
+     * @return true when the rows of the table are counted by the triggers
+     */
+    public static boolean isCounted(String tableName) {
+        return SQLiteDatabaseConstants.TABLE_1.equals(tableName) || SQLiteDatabaseConstants.TABLE_2.equals(tableName);
+    }
+
+    /**
+     * @return key of the name in row_count, e.g., "J" for "john"
+     */
+    public static String prefixOf(CharSequence firstName) {
+        if (firstName == null || firstName.length() == 0)
+        {
+            return NO_PREFIX;
+        }
+        /* SQLite UPPER() only folds ASCII letters */
+        char first = firstName.charAt(0);
+        return first < 128 ? String.valueOf(first).toUpperCase(Locale.US) : String.valueOf(first);
+    }
+
+    /**
+     * @return student count of every prefix that has students, in prefix order
+     */
+    static LinkedHashMap<String, Long> getPrefixCounts(SQLiteDatabase sqLiteDatabase) {
+        LinkedHashMap<String, Long> prefixCounts = new LinkedHashMap<String, Long>();
+        Cursor cursor = sqLiteDatabase.rawQuery(SELECT_PREFIX_COUNTS, new String[]{SQLiteDatabaseConstants.TABLE_1});
+        try
+        {
+            while (cursor.moveToNext())
+            {
+                prefixCounts.put(cursor.getString(0), cursor.getLong(1));
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+        return prefixCounts;
+    }
+}
@@ -0,0 +1,71 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.database.Cursor;
+import java.util.ArrayList;
+
+/**
+ * Turns cursor rows into objects.
+ *
+ * Column names are looked up once per cursor by {@link #resolve(Cursor)}, rows are then read by
+ * index only. Mappers keep no per cursor state, one instance is shared by every query and thread.
+ *
+ * The mappers of the {@code @Table} models are generated, e.g., {@code StudentTable.MAPPER}.
+ */
+public abstract class RowMapper<T> {
+
+    private final String[] columns;
+
+    /**
+     * @param columns columns read by {@link #mapRow(Cursor, int[])}, in the order of its indexes
+     */
+    protected RowMapper(String... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Map the current row.
+     *
+     * @param columnIndexes index in the cursor of every column given to the constructor, from {@link #resolve(Cursor)}
+     */
+    public abstract T mapRow(Cursor cursor, int[] columnIndexes);
+
+    /**
+     * @return index in the cursor of every column given to the constructor
+     * @throws IllegalArgumentException when the cursor lacks one of them
+     */
+    public int[] resolve(Cursor cursor) {
+        int[] columnIndexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columnIndexes[i] = cursor.getColumnIndexOrThrow(columns[i]);
+        }
+        return columnIndexes;
+    }
+
+    /**
+     * Map the rows after the current position, e.g., every row of a new cursor. Does not close it.
+     */
+    public ArrayList<T> mapAll(Cursor cursor) {
+        ArrayList<T> objectArrayList = new ArrayList<T>(Math.max(cursor.getCount(), 0));
+        mapAll(cursor, objectArrayList);
+        return objectArrayList;
+    }
+
+    public void mapAll(Cursor cursor, ArrayList<T> objectArrayList) {
+        int[] columnIndexes = resolve(cursor);
+        while (cursor.moveToNext())
+        {
+            objectArrayList.add(mapRow(cursor, columnIndexes));
+        }
+    }
+
+    /**
+     * @return the next row, null when there is none. Does not close the cursor.
+     */
+    public T mapFirst(Cursor cursor) {
+        if (!cursor.moveToNext())
+        {
+            return null;
+        }
+        return mapRow(cursor, resolve(cursor));
+    }
+}
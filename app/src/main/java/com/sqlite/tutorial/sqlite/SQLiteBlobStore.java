@@ -0,0 +1,145 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content addressed storage of pictures in {@link SQLiteDatabaseConstants#TABLE_3}.
+ *
+ * A picture is stored once under the SHA-256 of its bytes and rows only keep that hash, so
+ * identical photos are deduplicated and list queries never read image bytes. Unreferenced
+ * pictures are removed by {@link SQLiteDatabaseConstants#TRIGGERS}.
+ */
+public class SQLiteBlobStore {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private SQLiteBlobStore() {
+        throw new UnsupportedOperationException("You can't create instance of Util class. Please use as static..");
+    }
+
+    /**
+     * @return lower case hex SHA-256 of the bytes, null for null
+     */
+    public static String hash(byte[] bytes) {
+        if (bytes == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        }
+        catch (NoSuchAlgorithmException noSuchAlgorithmException)
+        {
+            /* SHA-256 is guaranteed on every Android version */
+            throw new IllegalStateException(noSuchAlgorithmException);
+        }
+    }
+
+    /**
+     * @return lower case hex of the digest
+     */
+    static String toHex(byte[] digest) {
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2]      = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+            hex[i * 2 + 1]  = HEX_DIGITS[digest[i] & 0x0F];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Store the bytes unless an identical picture is already stored.
+     *
+     * @param insertStatement compiled INSERT OR IGNORE INTO picture (hash, data) VALUES (?, ?)
+     * @return hash to keep in the referencing row, null for null bytes
+     */
+    public static String put(SQLiteStatement insertStatement, byte[] bytes) {
+        String hash = hash(bytes);
+        if (hash != null)
+        {
+            synchronized (insertStatement) {
+                insertStatement.clearBindings();
+                insertStatement.bindString(1, hash);
+                insertStatement.bindBlob(2, bytes);
+                insertStatement.executeInsert();
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Store the bytes together with their thumbnail unless an identical picture is already stored.
+     *
+     * @param insertStatement compiled {@link SQLiteDatabaseConstants#INSERT_OR_IGNORE_TABLE_3}
+     * @param thumbnail small copy read by list rows, may be null
+     * @return hash to keep in the referencing row, null for null bytes
+     */
+    public static String put(SQLiteStatement insertStatement, byte[] bytes, byte[] thumbnail) {
+        String hash = hash(bytes);
+        if (hash != null)
+        {
+            insert(insertStatement, hash, bytes, thumbnail);
+        }
+        return hash;
+    }
+
+    /**
+     * @return true when the picture was stored, false when one with the same hash already was
+     */
+    static boolean insert(SQLiteStatement insertStatement, String hash, byte[] bytes, byte[] thumbnail) {
+        synchronized (insertStatement) {
+            insertStatement.clearBindings();
+            insertStatement.bindString(1, hash);
+            insertStatement.bindBlob(2, bytes);
+            if (thumbnail == null) {
+                insertStatement.bindNull(3);
+            } else {
+                insertStatement.bindBlob(3, thumbnail);
+            }
+            /* -1 when the OR IGNORE kept the existing row */
+            return insertStatement.executeInsert() != -1;
+        }
+    }
+
+    /**
+     * @return bytes stored under the hash, null when hash is null or unknown
+     */
+    public static byte[] get(SQLiteDatabase sqLiteDatabase, String hash) {
+        return query(sqLiteDatabase, SQLiteDatabaseConstants.SELECT_TABLE_3_BY_HASH, hash);
+    }
+
+    /**
+     * @return thumbnail stored under the hash, the full bytes when it has no thumbnail yet
+     */
+    public static byte[] getThumbnail(SQLiteDatabase sqLiteDatabase, String hash) {
+        return query(sqLiteDatabase, SQLiteDatabaseConstants.SELECT_TABLE_3_THUMBNAIL_BY_HASH, hash);
+    }
+
+    private static byte[] query(SQLiteDatabase sqLiteDatabase, String query, String hash) {
+        if (hash == null)
+        {
+            return null;
+        }
+
+        byte[] bytes = null;
+        Cursor cursor = sqLiteDatabase.rawQuery(query, new String[]{hash});
+        try
+        {
+            if (cursor.moveToFirst())
+            {
+                bytes = cursor.getBlob(0);
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+        return bytes;
+    }
+}
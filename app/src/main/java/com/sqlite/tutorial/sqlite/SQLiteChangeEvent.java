@@ -0,0 +1,159 @@
+package com.sqlite.tutorial.sqlite;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rows written since the previous event, published by {@link SQLiteInvalidationTracker}.
+ *
+ * Changes are coalesced per table : a row inserted then updated is only inserted, a row inserted
+ * then deleted is dropped, and a table emptied or rewritten as a whole is {@link TableChange#isInvalidated()}
+ * with no row ids at all.
+ */
+public class SQLiteChangeEvent {
+
+    private final Map<String, TableChange> tableChanges = new LinkedHashMap<String, TableChange>();
+
+    /**
+     * @return tables written since the previous event
+     */
+    public Set<String> getTables() {
+        return Collections.unmodifiableSet(tableChanges.keySet());
+    }
+
+    public boolean contains(String table) {
+        return tableChanges.containsKey(table);
+    }
+
+    /**
+     * @return changes of the table, null when it was not written
+     */
+    public TableChange getTableChange(String table) {
+        return tableChanges.get(table);
+    }
+
+    boolean isEmpty() {
+        return tableChanges.isEmpty();
+    }
+
+    void recordInsert(String table, long rowId) {
+        getOrCreate(table).recordInsert(rowId);
+    }
+
+    void recordUpdate(String table, long rowId) {
+        getOrCreate(table).recordUpdate(rowId);
+    }
+
+    void recordDelete(String table, long rowId) {
+        getOrCreate(table).recordDelete(rowId);
+    }
+
+    void recordInvalidate(String table) {
+        getOrCreate(table).recordInvalidate();
+    }
+
+    private TableChange getOrCreate(String table) {
+        TableChange tableChange = tableChanges.get(table);
+        if (tableChange == null)
+        {
+            tableChange = new TableChange(table);
+            tableChanges.put(table, tableChange);
+        }
+        return tableChange;
+    }
+
+    @Override
+    public String toString() {
+        return "SQLiteChangeEvent{" + tableChanges.values() + '}';
+    }
+
+    public static class TableChange {
+
+        private final String table;
+        private final Set<Long> insertedRowIds = new LinkedHashSet<Long>();
+        private final Set<Long> updatedRowIds = new LinkedHashSet<Long>();
+        private final Set<Long> deletedRowIds = new LinkedHashSet<Long>();
+        private boolean invalidated;
+
+        TableChange(String table) {
+            this.table = table;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * @return true when rows changed without ids (e.g., the table was emptied), re-read it whole
+         */
+        public boolean isInvalidated() {
+            return invalidated;
+        }
+
+        public Set<Long> getInsertedRowIds() {
+            return Collections.unmodifiableSet(insertedRowIds);
+        }
+
+        public Set<Long> getUpdatedRowIds() {
+            return Collections.unmodifiableSet(updatedRowIds);
+        }
+
+        public Set<Long> getDeletedRowIds() {
+            return Collections.unmodifiableSet(deletedRowIds);
+        }
+
+        void recordInsert(long rowId) {
+            if (invalidated)
+            {
+                return;
+            }
+            /* Row id reused after a delete, subscribers still hold the old row */
+            if (deletedRowIds.remove(rowId)) {
+                updatedRowIds.add(rowId);
+            } else {
+                insertedRowIds.add(rowId);
+            }
+        }
+
+        void recordUpdate(long rowId) {
+            if (!invalidated && !insertedRowIds.contains(rowId))
+            {
+                updatedRowIds.add(rowId);
+            }
+        }
+
+        void recordDelete(long rowId) {
+            if (invalidated)
+            {
+                return;
+            }
+            /* Never seen by subscribers, nothing to remove */
+            if (!insertedRowIds.remove(rowId))
+            {
+                updatedRowIds.remove(rowId);
+                deletedRowIds.add(rowId);
+            }
+        }
+
+        void recordInvalidate() {
+            invalidated = true;
+            insertedRowIds.clear();
+            updatedRowIds.clear();
+            deletedRowIds.clear();
+        }
+
+        @Override
+        public String toString() {
+            return "TableChange{" +
+                    "table='" + table + '\'' +
+                    ", invalidated=" + invalidated +
+                    ", inserted=" + insertedRowIds.size() +
+                    ", updated=" + updatedRowIds.size() +
+                    ", deleted=" + deletedRowIds.size() +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import com.sqlite.tutorial.utilities.LogcatUtils;
+import java.io.File;
+
+/**
+ * Process scoped owner of the single {@link SQLiteDatabase}.
+ *
+ * The database is opened once on the first {@link #acquireDatabase()} and is kept open for the
+ * lifetime of the app. {@link #releaseDatabase()} only decrements the reference count, the
+ * connection is really closed on {@link #shutdown()} or when the system asks us to trim memory
+ * while nobody holds a reference. To replace the database file, {@link #quiesce(long)} holds back
+ * new references, waits for the outstanding ones and closes the connection, {@link #resume()}
+ * lets callers in again.
+ *
+ * The database is in WAL mode : Android keeps a pool of read connections next to the primary
+ * one, so reads on the reader threads of {@link SQLiteDatabaseExecutor} run while a write is in
+ * progress. Commits run passive checkpoints, and once nobody has held a reference for
+ * {@link SQLiteDatabaseConstants#IDLE_CHECKPOINT_DELAY_MILLIS} an idle checkpoint
+ * (TRUNCATE by default) folds the WAL back into the database file.
+ */
+public class SQLiteConnectionManager implements ComponentCallbacks2 {
+
+    private static final String TAG = SQLiteConnectionManager.class.getSimpleName();
+
+    @SuppressLint("StaticFieldLeak")
+    private static SQLiteConnectionManager instance;
+
+    public static SQLiteConnectionManager getInstance(Context context) {
+        if (instance == null) {
+            synchronized (SQLiteConnectionManager.class) {
+                if (instance == null) {
+                    instance = new SQLiteConnectionManager(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final Context context;
+    private final SQLiteDatabaseHelper sqLiteDatabaseHelper;
+    private SQLiteDatabase sqLiteDatabase;
+    private SQLiteStatementCache sqLiteStatementCache;
+    /* Module of the full text index, read once per connection, null until asked */
+    private Boolean fts5;
+    /* INSERT ... ON CONFLICT usable on student, read once per connection, null until asked */
+    private Boolean nativeUpsert;
+
+    private int referenceCount;
+    /* References held by the current thread, a thread holding one is never held back by quiesce() */
+    private final ThreadLocal<int[]> threadReferenceCount = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+    private boolean quiescing;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private CheckpointMode idleCheckpointMode = CheckpointMode.TRUNCATE;
+    private WalCheckpointResult lastCheckpointResult;
+    private int openCount;
+    private long lastOpenDurationMillis;
+    private long totalOpenDurationMillis;
+
+    private SQLiteConnectionManager(Context context) {
+        this.context                = context;
+        this.sqLiteDatabaseHelper   = new SQLiteDatabaseHelper(context);
+        this.context.registerComponentCallbacks(this);
+    }
+
+    public SQLiteDatabaseHelper getSQLiteDatabaseHelper() {
+        return sqLiteDatabaseHelper;
+    }
+
+    /**
+     * Return the shared connection, opening it if it is not open yet.
+     * Every call must be balanced with a call to {@link #releaseDatabase()}.
+     *
+     * @return writable database
+     */
+    public synchronized SQLiteDatabase acquireDatabase() {
+        int[] threadReferences = threadReferenceCount.get();
+        if (threadReferences[0] == 0)
+        {
+            awaitResume();
+        }
+
+        if (sqLiteDatabase == null || !sqLiteDatabase.isOpen())
+        {
+            long startTime = System.nanoTime();
+            sqLiteDatabase = sqLiteDatabaseHelper.getWritableDatabase();
+            sqLiteStatementCache = new SQLiteStatementCache(sqLiteDatabase, SQLiteDatabaseConstants.STATEMENT_CACHE_SIZE);
+            lastOpenDurationMillis  = (System.nanoTime() - startTime) / 1000000L;
+            totalOpenDurationMillis += lastOpenDurationMillis;
+            openCount++;
+
+            LogcatUtils.informationMessage(TAG, "Database opened in " + lastOpenDurationMillis + " ms (open count : " + openCount + ")");
+        }
+        referenceCount++;
+        threadReferences[0]++;
+        return sqLiteDatabase;
+    }
+
+    /**
+     * Compiled statements of the current connection, only valid between
+     * {@link #acquireDatabase()} and {@link #releaseDatabase()}.
+     */
+    public synchronized SQLiteStatementCache getStatementCache() {
+        if (sqLiteStatementCache == null)
+        {
+            throw new IllegalStateException("Database is not open, call acquireDatabase() first");
+        }
+        return sqLiteStatementCache;
+    }
+
+    /**
+     * @return true when the full text index is FTS5, FTS4 otherwise. Read on the first call after
+     * the connection is opened, only valid between {@link #acquireDatabase()} and {@link #releaseDatabase()}.
+     */
+    public synchronized boolean isFts5() {
+        if (fts5 == null)
+        {
+            if (sqLiteDatabase == null)
+            {
+                throw new IllegalStateException("Database is not open, call acquireDatabase() first");
+            }
+            fts5 = SQLiteFullTextSearch.isFts5(sqLiteDatabase);
+        }
+        return fts5;
+    }
+
+    /**
+     * INSERT ... ON CONFLICT came with SQLite 3.24 (API 30), and needs the unique rollNumber
+     * index, which is created non unique when older rows share a roll number. Read on the first
+     * call after the connection is opened, like {@link #isFts5()}.
+     */
+    public synchronized boolean isNativeUpsertAvailable() {
+        if (nativeUpsert == null)
+        {
+            if (sqLiteDatabase == null)
+            {
+                throw new IllegalStateException("Database is not open, call acquireDatabase() first");
+            }
+            String[] version = DatabaseUtils.stringForQuery(sqLiteDatabase, "SELECT sqlite_version()", null).split("\\.");
+            int major = Integer.parseInt(version[0]);
+            int minor = Integer.parseInt(version[1]);
+            nativeUpsert = (major > 3 || major == 3 && minor >= 24)
+                    && SQLiteDatabaseHelper.isUniqueIndex(sqLiteDatabase, SQLiteDatabaseConstants.INDEX_TABLE_1_ROLL_NUMBER);
+        }
+        return nativeUpsert;
+    }
+
+    /**
+     * Give back a connection taken with {@link #acquireDatabase()}. The connection stays open.
+     */
+    public synchronized void releaseDatabase() {
+        if (referenceCount > 0)
+        {
+            decrementReferenceCount();
+            if (referenceCount == 0)
+            {
+                scheduleIdleCheckpoint();
+            }
+        }
+        else
+        {
+            LogcatUtils.warningMessage(TAG, "releaseDatabase() called without matching acquireDatabase()");
+        }
+    }
+
+    /**
+     * Close the connection when nobody holds a reference. The next {@link #acquireDatabase()}
+     * opens it again.
+     *
+     * @return false when references are outstanding, the connection is left open
+     */
+    public synchronized boolean shutdown() {
+        if (referenceCount > 0)
+        {
+            LogcatUtils.warningMessage(TAG, "shutdown() : " + referenceCount + " outstanding references, database left open");
+            return false;
+        }
+        close();
+        return true;
+    }
+
+    /**
+     * Hold back new {@link #acquireDatabase()} calls, wait for the outstanding references to be
+     * released and close the connection, e.g., before the database file is replaced. Must be
+     * followed by {@link #resume()}, and must not be called while holding a reference.
+     *
+     * @return false when references were still held after timeoutMillis, nothing is closed and
+     * acquireDatabase() is not held back anymore
+     */
+    public synchronized boolean quiesce(long timeoutMillis) throws InterruptedException {
+        /* One quiesce at a time */
+        awaitResume();
+        quiescing = true;
+
+        long deadline = SystemClock.uptimeMillis() + timeoutMillis;
+        try
+        {
+            while (referenceCount > 0)
+            {
+                long remainingMillis = deadline - SystemClock.uptimeMillis();
+                if (remainingMillis <= 0)
+                {
+                    LogcatUtils.warningMessage(TAG, "quiesce() : " + referenceCount + " references still held after " + timeoutMillis + " ms");
+                    resume();
+                    return false;
+                }
+                wait(remainingMillis);
+            }
+        }
+        catch (InterruptedException interruptedException)
+        {
+            resume();
+            throw interruptedException;
+        }
+        close();
+        return true;
+    }
+
+    /**
+     * Let {@link #acquireDatabase()} callers held back by {@link #quiesce(long)} in again.
+     */
+    public synchronized void resume() {
+        quiescing = false;
+        notifyAll();
+    }
+
+    /* Caller holds the lock */
+    private void close() {
+        handler.removeCallbacks(idleCheckpointRunnable);
+        if (sqLiteStatementCache != null)
+        {
+            sqLiteStatementCache.clear();
+            sqLiteStatementCache = null;
+        }
+        /* The file may be replaced before the next open */
+        fts5 = null;
+        nativeUpsert = null;
+        if (sqLiteDatabase != null && sqLiteDatabase.isOpen())
+        {
+            sqLiteDatabaseHelper.close();
+            LogcatUtils.informationMessage(TAG, "Database closed");
+        }
+        sqLiteDatabase = null;
+    }
+
+    /* Caller holds the lock */
+    private void awaitResume() {
+        boolean interrupted = false;
+        while (quiescing)
+        {
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException interruptedException)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* Caller holds the lock */
+    private void decrementReferenceCount() {
+        referenceCount--;
+        int[] threadReferences = threadReferenceCount.get();
+        if (threadReferences[0] > 0)
+        {
+            threadReferences[0]--;
+        }
+        if (referenceCount == 0)
+        {
+            /* Wakes up quiesce() */
+            notifyAll();
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return sqLiteDatabase != null && sqLiteDatabase.isOpen();
+    }
+
+    public synchronized int getReferenceCount() {
+        return referenceCount;
+    }
+
+    public synchronized int getOpenCount() {
+        return openCount;
+    }
+
+    public synchronized long getLastOpenDurationMillis() {
+        return lastOpenDurationMillis;
+    }
+
+    public synchronized long getTotalOpenDurationMillis() {
+        return totalOpenDurationMillis;
+    }
+
+    /*
+     ***********************************************************************************************
+     ********************************************* WAL *********************************************
+     ***********************************************************************************************
+     */
+    public enum CheckpointMode {
+        /* Copy what can be copied without waiting for readers or writers */
+        PASSIVE,
+        /* Wait for writers, then copy every frame, readers keep the WAL from being reset */
+        FULL,
+        /* FULL, then wait for readers so that the next writer starts the WAL from the beginning */
+        RESTART,
+        /* RESTART, then truncate the WAL file to zero bytes (SQLite 3.8.8+, PASSIVE before) */
+        TRUNCATE
+    }
+
+    /**
+     * Mode of the checkpoint run once the database has been idle, TRUNCATE by default.
+     */
+    public synchronized void setIdleCheckpointMode(CheckpointMode idleCheckpointMode) {
+        this.idleCheckpointMode = idleCheckpointMode;
+    }
+
+    /**
+     * Copy the WAL back into the database file. Blocks on the disk, never call it on the main thread.
+     */
+    public WalCheckpointResult checkpoint(CheckpointMode mode) {
+        SQLiteDatabase database = acquireDatabase();
+        try
+        {
+            return checkpoint(database, mode);
+        }
+        finally
+        {
+            synchronized (this) {
+                /* Not releaseDatabase(), the checkpoint must not schedule another one */
+                decrementReferenceCount();
+            }
+        }
+    }
+
+    private WalCheckpointResult checkpoint(SQLiteDatabase database, CheckpointMode mode) {
+        long startTime = System.nanoTime();
+        boolean busy = false;
+        int logFrameCount = -1;
+        int checkpointedFrameCount = -1;
+
+        Cursor cursor = database.rawQuery("PRAGMA wal_checkpoint(" + mode.name() + ")", null);
+        try
+        {
+            if (cursor.moveToFirst())
+            {
+                busy                    = cursor.getInt(0) != 0;
+                logFrameCount           = cursor.getInt(1);
+                checkpointedFrameCount  = cursor.getInt(2);
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+
+        WalCheckpointResult result = new WalCheckpointResult(mode, busy, logFrameCount, checkpointedFrameCount,
+                getWalFileSize(), (System.nanoTime() - startTime) / 1000000L);
+        synchronized (this) {
+            lastCheckpointResult = result;
+        }
+        LogcatUtils.informationMessage(TAG, "checkpoint() : " + result);
+        return result;
+    }
+
+    public synchronized WalCheckpointResult getLastCheckpointResult() {
+        return lastCheckpointResult;
+    }
+
+    public File getDatabaseFile() {
+        return context.getDatabasePath(SQLiteDatabaseConstants.SQLite_DATABASE_NAME);
+    }
+
+    /**
+     * @return size in bytes of the WAL file, 0 when there is none. Reads the file system.
+     */
+    public long getWalFileSize() {
+        return new File(getDatabaseFile().getPath() + "-wal").length();
+    }
+
+    /* Caller holds the lock */
+    private void scheduleIdleCheckpoint() {
+        handler.removeCallbacks(idleCheckpointRunnable);
+        handler.postDelayed(idleCheckpointRunnable, SQLiteDatabaseConstants.IDLE_CHECKPOINT_DELAY_MILLIS);
+    }
+
+    private final Runnable idleCheckpointRunnable = new Runnable() {
+        @Override
+        public void run() {
+            /* After every write already submitted, and off the main thread */
+            SQLiteDatabaseExecutor.getInstance().getWriteExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    CheckpointMode mode;
+                    synchronized (SQLiteConnectionManager.this) {
+                        if (referenceCount > 0 || !isOpen() || !sqLiteDatabase.isWriteAheadLoggingEnabled())
+                        {
+                            return;
+                        }
+                        mode = idleCheckpointMode;
+                    }
+                    if (getWalFileSize() > 0)
+                    {
+                        checkpoint(mode);
+                    }
+                }
+            });
+        }
+    };
+
+    /*
+     ***********************************************************************************************
+     *************************************** ComponentCallbacks2 ***********************************
+     ***********************************************************************************************
+     */
+    @Override
+    public synchronized void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND && referenceCount == 0 && isOpen())
+        {
+            LogcatUtils.informationMessage(TAG, "onTrimMemory(" + level + ") : closing idle database");
+            shutdown();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+}
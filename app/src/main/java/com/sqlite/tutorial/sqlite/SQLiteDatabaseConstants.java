@@ -1,6 +1,8 @@
 package com.sqlite.tutorial.sqlite;
 
 import com.sqlite.tutorial.constants.AppConstants;
+import com.sqlite.tutorial.sqlite.model.StudentTable;
+import com.sqlite.tutorial.sqlite.model.UserTable;
 
 public class SQLiteDatabaseConstants {
 
@@ -38,50 +40,202 @@ public class SQLiteDatabaseConstants {
      * "application/vnd.sqlite3";
      */
     public static final String SQLite_DATABASE_NAME             = AppConstants.APP_NAME + "LocalDB";
-    public static final int DATABASE_VERSION                    = 1;
+    public static final int DATABASE_VERSION                    = 7;
 
     /*
      ***********************************************************************************************
      *************************************** Here define table one *********************************
      ***********************************************************************************************
      */
-    public static final String TABLE_1                          = "student";
+    /* Generated from the annotations of Student, see StudentTable */
+    public static final String TABLE_1                          = StudentTable.TABLE_NAME;
     public static final String DROP_TABLE_1                     = DROP_TABLE_IF_EXISTS + TABLE_1;
 
-    public static final String TABLE_1_COLUMN_1                 = "_id";
-    public static final String TABLE_1_COLUMN_2                 = "firstName";
-    public static final String TABLE_1_COLUMN_3                 = "lastName";
-    public static final String TABLE_1_COLUMN_4                 = "rollNumber";
-    public static final String TABLE_1_COLUMN_5                 = "picture";
+    public static final String TABLE_1_COLUMN_1                 = StudentTable.COLUMN_ID;
+    public static final String TABLE_1_COLUMN_2                 = StudentTable.COLUMN_FIRST_NAME;
+    public static final String TABLE_1_COLUMN_3                 = StudentTable.COLUMN_LAST_NAME;
+    public static final String TABLE_1_COLUMN_4                 = StudentTable.COLUMN_ROLL_NUMBER;
+    /* SHA-256 of the picture, the bytes are stored once in TABLE_3 */
+    public static final String TABLE_1_COLUMN_5                 = StudentTable.COLUMN_PICTURE_HASH;
 
-    public static final String[] TABLE_1_COLUMNS = {TABLE_1_COLUMN_1, TABLE_1_COLUMN_2, TABLE_1_COLUMN_3, TABLE_1_COLUMN_4, TABLE_1_COLUMN_5};
+    public static final String[] TABLE_1_COLUMNS = StudentTable.COLUMNS;
 
-    public static final String CREATE_TABLE_1 = CREATE_TABLE_IF_NOT_EXISTS + TABLE_1 + " ("+
-            TABLE_1_COLUMN_1 + INTEGER_PRIMARY_KEY_AUTOINCREMENT+
-            TABLE_1_COLUMN_2 + TEXT_TYPE +", "+
-            TABLE_1_COLUMN_3 + TEXT_TYPE +", "+
-            TABLE_1_COLUMN_4 + TEXT_TYPE +", "+
-            TABLE_1_COLUMN_5 + BLOB_TYPE +
-            ")";
+    public static final String CREATE_TABLE_1 = StudentTable.CREATE_TABLE;
+
+    public static final String INSERT_TABLE_1 = StudentTable.INSERT;
+
+    /* With the _id, for rows whose id was reserved beforehand */
+    public static final String INSERT_WITH_ID_TABLE_1 = StudentTable.INSERT_WITH_KEY;
+
+    public static final String SELECT_TABLE_1_BY_ROLL_NUMBER = SELECT_FROM + TABLE_1 + WHERE + TABLE_1_COLUMN_4 + " = ?";
+
+    /* Rows a write by roll number is about to touch, for the change notifications */
+    public static final String SELECT_TABLE_1_ID_BY_ROLL_NUMBER = "SELECT " + TABLE_1_COLUMN_1 + " FROM " + TABLE_1 + WHERE + TABLE_1_COLUMN_4 + " = ?";
+
+    /* -1 when no student has the roll number, one of them when the index is not unique */
+    public static final String SELECT_TABLE_1_FIRST_ID_BY_ROLL_NUMBER = "SELECT IFNULL((SELECT " + TABLE_1_COLUMN_1 + " FROM " + TABLE_1 + WHERE + TABLE_1_COLUMN_4 + " = ? LIMIT 1), -1)";
+
+    /* Row id of the last insert of the connection, only meaningful inside a transaction which pins the connection */
+    public static final String SELECT_LAST_INSERT_ROWID = "SELECT last_insert_rowid()";
+
+    public static final String UPDATE_TABLE_1_BY_ROLL_NUMBER = "UPDATE " + TABLE_1 + SET +
+            TABLE_1_COLUMN_2 + " = ?, "+
+            TABLE_1_COLUMN_3 + " = ?, "+
+            TABLE_1_COLUMN_5 + " = ?"+
+            WHERE + TABLE_1_COLUMN_4 + " = ?";
+
+    public static final String DELETE_TABLE_1_BY_ROLL_NUMBER = DELETE_FROM + TABLE_1 + WHERE + TABLE_1_COLUMN_4 + " = ?";
+
+    public static final String DELETE_TABLE_1_BY_ID_AND_FIRST_NAME = DELETE_FROM + TABLE_1 + WHERE +
+            TABLE_1_COLUMN_1 + " = ?" + AND +
+            TABLE_1_COLUMN_2 + " = ?";
+
+    /* Number of rows committed per transaction by the bulk insert API */
+    public static final int DEFAULT_BULK_INSERT_BATCH_SIZE      = 500;
     /*
      ***********************************************************************************************
      *************************************** Here define table two *********************************
      ***********************************************************************************************
      */
-    public static final String TABLE_2                          = "user";
+    /* Generated from the annotations of User, see UserTable */
+    public static final String TABLE_2                          = UserTable.TABLE_NAME;
     public static final String DROP_TABLE_2                     = DROP_TABLE_IF_EXISTS + TABLE_2;
 
-    public static final String TABLE_2_COLUMN_1                 = "_id";
-    public static final String TABLE_2_COLUMN_2                 = "username";
-    public static final String TABLE_2_COLUMN_3                 = "email";
-    public static final String TABLE_2_COLUMN_4                 = "password";
+    public static final String TABLE_2_COLUMN_1                 = UserTable.COLUMN_ID;
+    public static final String TABLE_2_COLUMN_2                 = UserTable.COLUMN_USERNAME;
+    public static final String TABLE_2_COLUMN_3                 = UserTable.COLUMN_EMAIL;
+    public static final String TABLE_2_COLUMN_4                 = UserTable.COLUMN_PASSWORD;
+
+    public static final String[] TABLE_2_COLUMNS = UserTable.COLUMNS;
+
+    public static final String CREATE_TABLE_2 = UserTable.CREATE_TABLE;
+
+    public static final String EXISTS_TABLE_2_BY_EMAIL = "SELECT EXISTS(SELECT 1 FROM " + TABLE_2 + WHERE + TABLE_2_COLUMN_3 + " = ?)";
 
-    public static final String[] TABLE_2_COLUMNS = {TABLE_2_COLUMN_1, TABLE_2_COLUMN_2, TABLE_2_COLUMN_3, TABLE_2_COLUMN_4};
+    /*
+     ***********************************************************************************************
+     ************************************** Here define table three ********************************
+     ***********************************************************************************************
+     */
+    public static final String TABLE_3                          = "picture";
+    public static final String DROP_TABLE_3                     = DROP_TABLE_IF_EXISTS + TABLE_3;
 
-    public static final String CREATE_TABLE_2 = CREATE_TABLE_IF_NOT_EXISTS + TABLE_2 + " ("+
-            TABLE_2_COLUMN_1 + INTEGER_PRIMARY_KEY_AUTOINCREMENT+
-            TABLE_2_COLUMN_2 + TEXT_TYPE +", "+
-            TABLE_2_COLUMN_3 + TEXT_TYPE +", "+
-            TABLE_2_COLUMN_4 + TEXT_TYPE +
+    public static final String TABLE_3_COLUMN_1                 = "hash";
+    public static final String TABLE_3_COLUMN_2                 = "data";
+    /* Small lossy copy of data read by list rows, NULL until generated by the backfill for old rows */
+    public static final String TABLE_3_COLUMN_3                 = "thumbnail";
+
+    public static final String[] TABLE_3_COLUMNS = {TABLE_3_COLUMN_1, TABLE_3_COLUMN_2, TABLE_3_COLUMN_3};
+
+    public static final String CREATE_TABLE_3 = CREATE_TABLE_IF_NOT_EXISTS + TABLE_3 + " ("+
+            TABLE_3_COLUMN_1 + TEXT_TYPE + " PRIMARY KEY NOT NULL, "+
+            TABLE_3_COLUMN_2 + BLOB_TYPE + NOT_NULL + ", "+
+            TABLE_3_COLUMN_3 + BLOB_TYPE +
             ")";
+
+    public static final String INSERT_OR_IGNORE_TABLE_3 = "INSERT OR IGNORE INTO " + TABLE_3 + " ("+
+            TABLE_3_COLUMN_1 + ", "+
+            TABLE_3_COLUMN_2 + ", "+
+            TABLE_3_COLUMN_3 +
+            ") VALUES (?, ?, ?)";
+
+    public static final String SELECT_TABLE_3_BY_HASH = "SELECT " + TABLE_3_COLUMN_2 + " FROM " + TABLE_3 + WHERE + TABLE_3_COLUMN_1 + " = ?";
+
+    /* Falls back to the full picture while the thumbnail has not been generated */
+    public static final String SELECT_TABLE_3_THUMBNAIL_BY_HASH = "SELECT IFNULL(" + TABLE_3_COLUMN_3 + ", " + TABLE_3_COLUMN_2 + ") FROM " + TABLE_3 + WHERE + TABLE_3_COLUMN_1 + " = ?";
+
+    public static final String SELECT_TABLE_3_WITHOUT_THUMBNAIL = "SELECT " + TABLE_3_COLUMN_1 + ", " + TABLE_3_COLUMN_2 + " FROM " + TABLE_3 + WHERE +
+            TABLE_3_COLUMN_3 + " IS NULL" + AND + TABLE_3_COLUMN_1 + " > ? ORDER BY " + TABLE_3_COLUMN_1 + " LIMIT ?";
+
+    /* Pictures decoded per round trip by SQLiteDatabaseOperation.backfillThumbnails(), each one is held in memory */
+    public static final int THUMBNAIL_BACKFILL_BATCH_SIZE = 20;
+
+    public static final String UPDATE_TABLE_3_THUMBNAIL_BY_HASH = "UPDATE " + TABLE_3 + SET + TABLE_3_COLUMN_3 + " = ?" + WHERE + TABLE_3_COLUMN_1 + " = ?";
+
+    public static final String DELETE_UNREFERENCED_TABLE_3 = DELETE_FROM + TABLE_3 + WHERE + TABLE_3_COLUMN_1 +
+            " NOT IN (SELECT " + TABLE_1_COLUMN_5 + " FROM " + TABLE_1 + WHERE + TABLE_1_COLUMN_5 + " IS NOT NULL)";
+
+    /* Binds the hash, the picture is kept while a student references it */
+    public static final String DELETE_TABLE_3_IF_UNREFERENCED = DELETE_FROM + TABLE_3 + WHERE + TABLE_3_COLUMN_1 + " = ?1" +
+            AND + "NOT EXISTS (SELECT 1 FROM " + TABLE_1 + WHERE + TABLE_1_COLUMN_5 + " = ?1)";
+
+    /* A picture is deleted as soon as no student references it anymore */
+    public static final String CREATE_TRIGGER_TABLE_3_DELETE_UNREFERENCED_ON_DELETE = "CREATE TRIGGER IF NOT EXISTS trigger_" + TABLE_3 + "_on_" + TABLE_1 + "_delete" +
+            " AFTER DELETE ON " + TABLE_1 +
+            " WHEN OLD." + TABLE_1_COLUMN_5 + " IS NOT NULL" +
+            " AND NOT EXISTS (SELECT 1 FROM " + TABLE_1 + WHERE + TABLE_1_COLUMN_5 + " = OLD." + TABLE_1_COLUMN_5 + ")" +
+            " BEGIN " + DELETE_FROM + TABLE_3 + WHERE + TABLE_3_COLUMN_1 + " = OLD." + TABLE_1_COLUMN_5 + "; END";
+
+    public static final String CREATE_TRIGGER_TABLE_3_DELETE_UNREFERENCED_ON_UPDATE = "CREATE TRIGGER IF NOT EXISTS trigger_" + TABLE_3 + "_on_" + TABLE_1 + "_update" +
+            " AFTER UPDATE OF " + TABLE_1_COLUMN_5 + " ON " + TABLE_1 +
+            " WHEN OLD." + TABLE_1_COLUMN_5 + " IS NOT NULL" +
+            " AND OLD." + TABLE_1_COLUMN_5 + " IS NOT NEW." + TABLE_1_COLUMN_5 +
+            " AND NOT EXISTS (SELECT 1 FROM " + TABLE_1 + WHERE + TABLE_1_COLUMN_5 + " = OLD." + TABLE_1_COLUMN_5 + ")" +
+            " BEGIN " + DELETE_FROM + TABLE_3 + WHERE + TABLE_3_COLUMN_1 + " = OLD." + TABLE_1_COLUMN_5 + "; END";
+
+    public static final String[] TRIGGERS = {
+            CREATE_TRIGGER_TABLE_3_DELETE_UNREFERENCED_ON_DELETE,
+            CREATE_TRIGGER_TABLE_3_DELETE_UNREFERENCED_ON_UPDATE
+    };
+
+    /*
+     ***********************************************************************************************
+     *************************************** Full text search **************************************
+     ***********************************************************************************************
+     */
+    /* FTS5 / FTS4 index of TABLE_1, see SQLiteFullTextSearch */
+    public static final String TABLE_1_FTS                      = TABLE_1 + "_fts";
+
+    /* Search results are ranked, only the best ones are read */
+    public static final int SEARCH_RESULT_LIMIT                 = 100;
+
+    /* Queries whose results are kept by SearchResultCache */
+    public static final int SEARCH_RESULT_CACHE_SIZE            = 32;
+
+    /*
+     ***********************************************************************************************
+     *************************************** Common statements *************************************
+     ***********************************************************************************************
+     */
+    public static final String SELECT_COUNT_FROM                = "SELECT COUNT(*) FROM ";
+
+    /*
+     ***********************************************************************************************
+     *************************************** Here define indexes ***********************************
+     ***********************************************************************************************
+     */
+    public static final SQLiteIndex INDEX_TABLE_1_ROLL_NUMBER   = new SQLiteIndex("index_" + TABLE_1 + "_" + TABLE_1_COLUMN_4, TABLE_1, true, TABLE_1_COLUMN_4);
+    public static final SQLiteIndex INDEX_TABLE_1_PICTURE_HASH  = new SQLiteIndex("index_" + TABLE_1 + "_" + TABLE_1_COLUMN_5, TABLE_1, false, TABLE_1_COLUMN_5);
+    public static final SQLiteIndex INDEX_TABLE_2_EMAIL         = new SQLiteIndex("index_" + TABLE_2 + "_" + TABLE_2_COLUMN_3, TABLE_2, true, TABLE_2_COLUMN_3);
+
+    public static final SQLiteIndex[] INDEXES = {INDEX_TABLE_1_ROLL_NUMBER, INDEX_TABLE_1_PICTURE_HASH, INDEX_TABLE_2_EMAIL};
+
+    /* Hot queries whose plan is checked with EXPLAIN QUERY PLAN when the database is opened in debug builds */
+    public static final String[] INDEXED_QUERIES = {
+            SELECT_TABLE_1_BY_ROLL_NUMBER,
+            SELECT_TABLE_1_ID_BY_ROLL_NUMBER,
+            SELECT_TABLE_1_FIRST_ID_BY_ROLL_NUMBER,
+            UPDATE_TABLE_1_BY_ROLL_NUMBER,
+            DELETE_TABLE_1_BY_ROLL_NUMBER,
+            EXISTS_TABLE_2_BY_EMAIL,
+            SELECT_TABLE_3_BY_HASH,
+            SELECT_TABLE_3_THUMBNAIL_BY_HASH,
+            DELETE_TABLE_3_IF_UNREFERENCED,
+            RowCounts.SELECT_COUNT
+    };
+
+    /* Maximum number of compiled statements kept per connection by SQLiteStatementCache, more than normal use compiles */
+    public static final int STATEMENT_CACHE_SIZE                = 64;
+
+    /*
+     ***********************************************************************************************
+     ********************************************* WAL *********************************************
+     ***********************************************************************************************
+     */
+    /* WAL pages written before a commit runs a passive checkpoint, SQLite's default is 1000 */
+    public static final int WAL_AUTOCHECKPOINT_PAGES            = 1000;
+    /* Time without any database reference before the idle checkpoint runs */
+    public static final long IDLE_CHECKPOINT_DELAY_MILLIS       = 5000;
+    /* Longest wait for the outstanding references before the database file is replaced */
+    public static final long QUIESCE_TIMEOUT_MILLIS             = 10000;
 }
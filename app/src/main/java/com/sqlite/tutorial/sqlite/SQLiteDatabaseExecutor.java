@@ -0,0 +1,183 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import com.sqlite.tutorial.utilities.LogcatUtils;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads every database call runs on, so that the main thread never waits for the disk.
+ *
+ * Writes run one at a time on a single writer thread, in submission order, which is what SQLite
+ * allows anyway and keeps writers from failing with SQLITE_BUSY. Reads run on a pool sized to
+ * the number of cores, see {@link #setReaderCount(int)}, and with WAL they do not wait for the
+ * writer. Callbacks are posted to the main looper.
+ */
+public class SQLiteDatabaseExecutor {
+
+    private static final String TAG = SQLiteDatabaseExecutor.class.getSimpleName();
+
+    /* Idle reader threads are stopped after this delay */
+    private static final long READER_KEEP_ALIVE_SECONDS = 30;
+
+    private static SQLiteDatabaseExecutor instance;
+
+    public static SQLiteDatabaseExecutor getInstance() {
+        if (instance == null) {
+            synchronized (SQLiteDatabaseExecutor.class) {
+                if (instance == null) {
+                    instance = new SQLiteDatabaseExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final ThreadPoolExecutor writeExecutor;
+    private final ThreadPoolExecutor readExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private SQLiteDatabaseExecutor(int readerCount) {
+        this.writeExecutor = new ThreadPoolExecutor(1, 1,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new DatabaseThreadFactory("sqlite-writer"));
+        this.readExecutor = new ThreadPoolExecutor(readerCount, readerCount,
+                READER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DatabaseThreadFactory("sqlite-reader"));
+        this.readExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run a query on a reader thread.
+     *
+     * @param callback told on the main thread, may be null
+     * @return the result, {@link Future#get()} must not be called on the main thread
+     */
+    public <T> Future<T> read(Callable<T> callable, Callback<T> callback) {
+        return submit(readExecutor, callable, callback);
+    }
+
+    /**
+     * Run a write on the writer thread, after every write submitted before it.
+     *
+     * @param callback told on the main thread, may be null
+     * @return the result, {@link Future#get()} must not be called on the main thread
+     */
+    public <T> Future<T> write(Callable<T> callable, Callback<T> callback) {
+        return submit(writeExecutor, callable, callback);
+    }
+
+    /**
+     * Executor of the reader threads, for components that schedule their own queries.
+     */
+    public ExecutorService getReadExecutor() {
+        return readExecutor;
+    }
+
+    public ExecutorService getWriteExecutor() {
+        return writeExecutor;
+    }
+
+    public int getReaderCount() {
+        return readExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * Number of reads run at the same time. Android sizes the WAL read connection pool itself,
+     * reads beyond it wait for a connection, so more readers than connections buys nothing.
+     */
+    public void setReaderCount(int readerCount) {
+        if (readerCount <= 0) {
+            throw new IllegalArgumentException("readerCount must be > 0");
+        }
+        /* The core size can never exceed the maximum size */
+        if (readerCount > readExecutor.getMaximumPoolSize()) {
+            readExecutor.setMaximumPoolSize(readerCount);
+            readExecutor.setCorePoolSize(readerCount);
+        } else {
+            readExecutor.setCorePoolSize(readerCount);
+            readExecutor.setMaximumPoolSize(readerCount);
+        }
+    }
+
+    private <T> Future<T> submit(ExecutorService executorService, final Callable<T> callable, final Callback<T> callback) {
+        FutureTask<T> futureTask = new FutureTask<T>(callable) {
+            @Override
+            protected void done() {
+                if (callback == null || isCancelled())
+                {
+                    return;
+                }
+
+                T result = null;
+                Exception failure = null;
+                try
+                {
+                    result = get();
+                }
+                catch (Exception exception)
+                {
+                    failure = exception.getCause() instanceof Exception ? (Exception) exception.getCause() : exception;
+                    LogcatUtils.errorMessage(TAG, "Database call failed", failure);
+                }
+                postResult(callback, result, failure);
+            }
+        };
+        executorService.execute(futureTask);
+        return futureTask;
+    }
+
+    private <T> void postResult(final Callback<T> callback, final T result, final Exception failure) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (failure == null) {
+                    callback.onSuccess(result);
+                } else {
+                    callback.onFailure(failure);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return true on the main thread, where database calls are not allowed
+     */
+    public static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private static class DatabaseThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        DatabaseThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, name + "-" + threadCount.incrementAndGet());
+        }
+    }
+
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        void onFailure(Exception exception);
+    }
+}
@@ -1,16 +1,25 @@
 package com.sqlite.tutorial.sqlite;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import com.sqlite.tutorial.BuildConfig;
 import com.sqlite.tutorial.utilities.LogcatUtils;
+import java.util.Collections;
+import java.util.List;
 
 public class SQLiteDatabaseHelper extends SQLiteOpenHelper {
 
     private static final String TAG = SQLiteDatabaseHelper.class.getSimpleName();
 
+    private List<SQLiteMigrations.StepTiming> lastMigrationTimings = Collections.emptyList();
+
     public SQLiteDatabaseHelper(Context context) {
         super(context, SQLiteDatabaseConstants.SQLite_DATABASE_NAME, null, SQLiteDatabaseConstants.DATABASE_VERSION);
+        /* Readers see the last commit while a write is in progress, and writers don't wait for readers */
+        setWriteAheadLoggingEnabled(true);
         LogcatUtils.informationMessage(TAG, "Database created / opened.....");
     }
 
@@ -19,28 +28,192 @@ public class SQLiteDatabaseHelper extends SQLiteOpenHelper {
         try {
             sqLiteDatabase.execSQL(SQLiteDatabaseConstants.CREATE_TABLE_1);
             sqLiteDatabase.execSQL(SQLiteDatabaseConstants.CREATE_TABLE_2);
+            sqLiteDatabase.execSQL(SQLiteDatabaseConstants.CREATE_TABLE_3);
+            createIndexes(sqLiteDatabase);
+            createTriggers(sqLiteDatabase);
+            SQLiteFullTextSearch.create(sqLiteDatabase);
+            RowCounts.create(sqLiteDatabase);
             LogcatUtils.informationMessage(TAG, "Table create...");
         } catch (Exception exception) {
             LogcatUtils.informationMessage(TAG, "onCreate(SQLiteDatabase sqLiteDatabase) : " + exception);
         }
     }
 
+    @Override
+    public void onOpen(SQLiteDatabase sqLiteDatabase) {
+        super.onOpen(sqLiteDatabase);
+        setWalAutoCheckpoint(sqLiteDatabase, SQLiteDatabaseConstants.WAL_AUTOCHECKPOINT_PAGES);
+        if (BuildConfig.DEBUG) {
+            verifyQueryPlans(sqLiteDatabase);
+        }
+    }
+
     @Override
     public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         super.onDowngrade(db, oldVersion, newVersion);
     }
 
+    /**
+     * Bring the schema from oldVersion to newVersion step by step with {@link SQLiteMigrations},
+     * keeping every row. An exception aborts the upgrade and the database stays at oldVersion.
+     */
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        LogcatUtils.informationMessage(TAG, "Upgrading database from version " + oldVersion + " to " + newVersion + ", which will destroy all old data");
-        try {
-            sqLiteDatabase.execSQL(SQLiteDatabaseConstants.DROP_TABLE_1);
-            sqLiteDatabase.execSQL(SQLiteDatabaseConstants.DROP_TABLE_2);
-            /* Create tables again */
-            onCreate(sqLiteDatabase);
-        } catch (Exception exception) {
-            LogcatUtils.informationMessage(TAG, "onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) : " + exception);
+        LogcatUtils.informationMessage(TAG, "Upgrading database from version " + oldVersion + " to " + newVersion);
+        lastMigrationTimings = SQLiteMigrations.migrate(sqLiteDatabase, oldVersion, newVersion);
+    }
+
+    /**
+     * @return timing of every step run by the last {@link #onUpgrade}, empty if none ran
+     */
+    public List<SQLiteMigrations.StepTiming> getLastMigrationTimings() {
+        return lastMigrationTimings;
+    }
+
+    /**
+     * Commits that grow the WAL past pages run a passive checkpoint, larger values mean fewer
+     * checkpoints and a larger WAL file. Writes go through the primary connection, where this is set.
+     */
+    static void setWalAutoCheckpoint(SQLiteDatabase sqLiteDatabase, int pages) {
+        if (!sqLiteDatabase.isWriteAheadLoggingEnabled())
+        {
+            return;
+        }
+        /* PRAGMA returns a row, execSQL() would reject it on some versions */
+        Cursor cursor = sqLiteDatabase.rawQuery("PRAGMA wal_autocheckpoint = " + pages, null);
+        try
+        {
+            cursor.moveToFirst();
+        }
+        finally
+        {
+            cursor.close();
         }
     }
-}
 
+    /*
+     ***********************************************************************************************
+     ********************************************* Indexes *****************************************
+     ***********************************************************************************************
+     */
+
+    /**
+     * Create every index of {@link SQLiteDatabaseConstants#INDEXES}. When existing rows already
+     * violate a unique index, the index is created without UNIQUE so that no row has to be dropped.
+     */
+    static void createIndexes(SQLiteDatabase sqLiteDatabase) {
+        for (SQLiteIndex index : SQLiteDatabaseConstants.INDEXES)
+        {
+            createIndex(sqLiteDatabase, index);
+        }
+    }
+
+    static void createIndex(SQLiteDatabase sqLiteDatabase, SQLiteIndex index) {
+        try
+        {
+            sqLiteDatabase.execSQL(index.getCreateStatement());
+        }
+        catch (SQLiteConstraintException sqLiteConstraintException)
+        {
+            LogcatUtils.warningMessage(TAG, "Duplicate values, creating non unique " + index, sqLiteConstraintException);
+            sqLiteDatabase.execSQL(index.getCreateStatement(false));
+        }
+    }
+
+    /**
+     * @return true when the index exists and is unique, see {@link #createIndex(SQLiteDatabase, SQLiteIndex)}
+     */
+    static boolean isUniqueIndex(SQLiteDatabase sqLiteDatabase, SQLiteIndex index) {
+        Cursor cursor = sqLiteDatabase.rawQuery("PRAGMA index_list(" + index.getTableName() + ")", null);
+        try
+        {
+            int nameColumnIndex = cursor.getColumnIndexOrThrow("name");
+            int uniqueColumnIndex = cursor.getColumnIndexOrThrow("unique");
+            while (cursor.moveToNext())
+            {
+                if (index.getName().equals(cursor.getString(nameColumnIndex)))
+                {
+                    return cursor.getInt(uniqueColumnIndex) == 1;
+                }
+            }
+            return false;
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+    static void createTriggers(SQLiteDatabase sqLiteDatabase) {
+        for (String trigger : SQLiteDatabaseConstants.TRIGGERS)
+        {
+            sqLiteDatabase.execSQL(trigger);
+        }
+    }
+
+    /**
+     * Run EXPLAIN QUERY PLAN on every {@link SQLiteDatabaseConstants#INDEXED_QUERIES} and fail
+     * fast if one of them falls back to a full table scan.
+     */
+    static void verifyQueryPlans(SQLiteDatabase sqLiteDatabase) {
+        for (String query : SQLiteDatabaseConstants.INDEXED_QUERIES)
+        {
+            String[] args = new String[countParameters(query)];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = "";
+            }
+
+            boolean usesIndex = false;
+            StringBuilder plan = new StringBuilder();
+
+            Cursor cursor = sqLiteDatabase.rawQuery("EXPLAIN QUERY PLAN " + query, args);
+            try
+            {
+                int detailColumnIndex = cursor.getColumnIndexOrThrow("detail");
+                while (cursor.moveToNext())
+                {
+                    String detail = cursor.getString(detailColumnIndex);
+                    plan.append(detail).append("; ");
+
+                    if (detail.contains("USING") && (detail.contains("INDEX") || detail.contains("PRIMARY KEY")))
+                    {
+                        usesIndex = true;
+                    }
+                    else if (detail.startsWith("SCAN") && !detail.contains("CONSTANT ROW"))
+                    {
+                        throw new IllegalStateException("Full table scan for \"" + query + "\" : " + detail);
+                    }
+                }
+            }
+            finally
+            {
+                cursor.close();
+            }
+
+            if (!usesIndex)
+            {
+                throw new IllegalStateException("No index used for \"" + query + "\" : " + plan);
+            }
+            LogcatUtils.debuggingMessage(TAG, "Query plan \"" + query + "\" : " + plan);
+        }
+    }
+
+    /**
+     * Number of bind arguments the query takes, the largest parameter number : a ?NNN used twice
+     * is one parameter, and a plain ? takes the number after the largest one so far, as in SQLite.
+     */
+    static int countParameters(String query) {
+        int count = 0;
+        for (int i = 0; i < query.length(); i++) {
+            if (query.charAt(i) == '?') {
+                int end = i + 1;
+                while (end < query.length() && Character.isDigit(query.charAt(end))) {
+                    end++;
+                }
+                count = end == i + 1 ? count + 1 : Math.max(count, Integer.parseInt(query.substring(i + 1, end)));
+                i = end - 1;
+            }
+        }
+        return count;
+    }
+}
@@ -4,11 +4,22 @@ import android.annotation.SuppressLint;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
-import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
 import com.sqlite.tutorial.sqlite.model.Student;
+import com.sqlite.tutorial.sqlite.model.StudentTable;
+import com.sqlite.tutorial.utilities.BitmapUtils;
+import com.sqlite.tutorial.utilities.LogcatUtils;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 public class SQLiteDatabaseOperation {
 
@@ -29,18 +40,77 @@ public class SQLiteDatabaseOperation {
     }
 
     public SQLiteDatabaseHelper sqLiteDatabaseHelper;
+    private SQLiteConnectionManager sqLiteConnectionManager;
     private SQLiteDatabase sqLiteDatabase;
 
+    private int bulkInsertBatchSize = SQLiteDatabaseConstants.DEFAULT_BULK_INSERT_BATCH_SIZE;
+
+    private final SearchResultCache searchResultCache = new SearchResultCache(SQLiteDatabaseConstants.SEARCH_RESULT_CACHE_SIZE);
+    private final SQLiteInvalidationTracker invalidationTracker = new SQLiteInvalidationTracker();
+
     public SQLiteDatabaseOperation(Context context) {
-        this.sqLiteDatabaseHelper = new SQLiteDatabaseHelper(context);
+        this.sqLiteConnectionManager    = SQLiteConnectionManager.getInstance(context);
+        this.sqLiteDatabaseHelper       = sqLiteConnectionManager.getSQLiteDatabaseHelper();
     }
 
+    /* Tests and tools may opt in, the app goes through AsyncSQLiteDatabaseOperation */
+    private static volatile boolean mainThreadQueriesAllowed = false;
+
+    public static void setMainThreadQueriesAllowed(boolean allowed) {
+        mainThreadQueriesAllowed = allowed;
+    }
+
+    /**
+     * Statements taken by {@link #statement(String)} between an open() and its close(), which
+     * gives them back to the cache they came from.
+     */
+    private static final class StatementLease {
+
+        final SQLiteStatementCache statementCache;
+        final ArrayList<SQLiteStatement> statements = new ArrayList<SQLiteStatement>();
+
+        StatementLease(SQLiteStatementCache statementCache) {
+            this.statementCache = statementCache;
+        }
+    }
+
+    /* One lease per open() of the calling thread that is not closed yet, innermost last */
+    private final ThreadLocal<ArrayList<StatementLease>> statementLeases = new ThreadLocal<ArrayList<StatementLease>>() {
+        @Override
+        protected ArrayList<StatementLease> initialValue() {
+            return new ArrayList<StatementLease>();
+        }
+    };
+
+    /**
+     * Take a reference on the shared connection, the database is only opened the first time.
+     *
+     * @throws IllegalStateException on the main thread, unless main thread queries are allowed
+     */
     public void open(){
-        sqLiteDatabase = sqLiteDatabaseHelper.getWritableDatabase();
+        if (!mainThreadQueriesAllowed && SQLiteDatabaseExecutor.isMainThread())
+        {
+            throw new IllegalStateException("Cannot access the database on the main thread, use AsyncSQLiteDatabaseOperation");
+        }
+        sqLiteDatabase = sqLiteConnectionManager.acquireDatabase();
+        statementLeases.get().add(new StatementLease(sqLiteConnectionManager.getStatementCache()));
     }
 
+    /**
+     * Give back the reference and the statements taken since the matching open(), the shared
+     * connection stays open.
+     */
     public void close(){
-        sqLiteDatabase.close();
+        ArrayList<StatementLease> leases = statementLeases.get();
+        if (!leases.isEmpty())
+        {
+            StatementLease lease = leases.remove(leases.size() - 1);
+            for (SQLiteStatement statement : lease.statements)
+            {
+                lease.statementCache.release(statement);
+            }
+        }
+        sqLiteConnectionManager.releaseDatabase();
     }
 
     /*
@@ -49,221 +119,661 @@ public class SQLiteDatabaseOperation {
      ***********************************************************************************************
      */
     public boolean insertFirstWay(Student object) {
-        this.open();
-
-        ContentValues values = new ContentValues();
-        values.put(SQLiteDatabaseConstants.TABLE_1_COLUMN_2, object.getFirstName());
-        values.put(SQLiteDatabaseConstants.TABLE_1_COLUMN_3, object.getLastName());
-        values.put(SQLiteDatabaseConstants.TABLE_1_COLUMN_4, object.getRollNumber());
-        values.put(SQLiteDatabaseConstants.TABLE_1_COLUMN_5, object.getPicture());
+        return insertAndGetId(object) != -1;
+    }
 
-        long newInsertedRowId = sqLiteDatabase.insert(SQLiteDatabaseConstants.TABLE_1, null, values);
+    /**
+     * Insert the student and set its id.
+     *
+     * @return the row ID of the newly inserted row, or -1 if an error occurred
+     */
+    public long insertAndGetId(Student object) {
+        this.open();
+        try
+        {
+            long newInsertedRowId;
+            sqLiteDatabase.beginTransactionNonExclusive();
+            try
+            {
+                /* Sets the picture hash the values carry */
+                putPicture(object);
+                ContentValues values = StudentTable.toContentValues(object);
+
+                newInsertedRowId = sqLiteDatabase.insert(SQLiteDatabaseConstants.TABLE_1, null, values);
+                if (newInsertedRowId != -1)
+                {
+                    sqLiteDatabase.setTransactionSuccessful();
+                    object.setId((int) newInsertedRowId);
+                }
+            }
+            finally
+            {
+                sqLiteDatabase.endTransaction();
+            }
 
-        this.close();
+            invalidationTracker.onInserted(SQLiteDatabaseConstants.TABLE_1, newInsertedRowId);
+            onTableChanged();
 
-        /* @return the row ID of the newly inserted row, or -1 if an error occurred */
-        if(newInsertedRowId == -1)
-        {
-            return false;
+            return newInsertedRowId;
         }
-        else
+        finally
         {
-            return true;
+            this.close();
         }
     }
 
     public void insertSecondWay(Student object) {
         this.open();
+        try
+        {
+            long newInsertedRowId;
+            sqLiteDatabase.beginTransactionNonExclusive();
+            try
+            {
+                putPicture(object);
+                SQLiteStatement statement = statement(SQLiteDatabaseConstants.INSERT_TABLE_1);
+                synchronized (statement) {
+                    StudentTable.bindInsert(statement, object);
+                    newInsertedRowId = statement.executeInsert();
+                }
+                sqLiteDatabase.setTransactionSuccessful();
+                object.setId((int) newInsertedRowId);
+            }
+            finally
+            {
+                sqLiteDatabase.endTransaction();
+            }
 
-        String query = "INSERT INTO " + SQLiteDatabaseConstants.TABLE_1 + " ("
-                + SQLiteDatabaseConstants.TABLE_1_COLUMN_2 + ", "
-                + SQLiteDatabaseConstants.TABLE_1_COLUMN_3 + ", "
-                + SQLiteDatabaseConstants.TABLE_1_COLUMN_4 + ", "
-                + SQLiteDatabaseConstants.TABLE_1_COLUMN_5 + ") VALUES('"
-                + object.getFirstName() + "', '"
-                + object.getLastName() + "', '"
-                + object.getRollNumber() + "', '"
-                + object.getPicture() + "')";
+            invalidationTracker.onInserted(SQLiteDatabaseConstants.TABLE_1, newInsertedRowId);
+            onTableChanged();
+        }
+        finally
+        {
+            this.close();
+        }
+    }
 
-        System.out.println("******************************"+query);
-        sqLiteDatabase.execSQL(query);
+    /**
+     * Number of rows committed per transaction by {@link #insertAll(Iterator)}
+     */
+    public void setBulkInsertBatchSize(int bulkInsertBatchSize) {
+        if (bulkInsertBatchSize <= 0) {
+            throw new IllegalArgumentException("bulkInsertBatchSize must be > 0");
+        }
+        this.bulkInsertBatchSize = bulkInsertBatchSize;
+    }
 
-        this.close();
+    public BulkInsertResult insertAll(Collection<Student> objects) {
+        return insertAll(objects.iterator());
     }
-    /*
-     ***********************************************************************************************
-     ****************************************** READ OPERATION *************************************
-     ***********************************************************************************************
+
+    public BulkInsertResult insertAll(Collection<Student> objects, IdRange ids) {
+        return insertAll(objects.iterator(), ids);
+    }
+
+    /**
+     * Insert every student of the iterator, reusing one compiled statement and committing
+     * one transaction per {@link #setBulkInsertBatchSize(int)} rows. The iterator is consumed
+     * lazily so a roster can be streamed without materializing it. Inserted students get their id.
+     *
+     * @param iterator source of rows
+     * @return row IDs and timing of every committed batch
      */
-    public int getNumberOfRowsFirstWay(String tableName) {
+    public BulkInsertResult insertAll(Iterator<Student> iterator) {
+        return insertAll(iterator, null);
+    }
+
+    /**
+     * Same as {@link #insertAll(Iterator)}, the students taking the ids of the range in order.
+     *
+     * @param ids from {@link #reserveIds(String, int)} on {@link SQLiteDatabaseConstants#TABLE_1}
+     * @throws IndexOutOfBoundsException when the iterator has more students than ids, the
+     *         batches committed until then are kept
+     */
+    public BulkInsertResult insertAll(Iterator<Student> iterator, IdRange ids) {
+        BulkInsertResult result = new BulkInsertResult();
+        int position = 0;
+
         this.open();
+        try
+        {
+            while (iterator.hasNext())
+            {
+                /* Taken per batch, held by this open() until close() so an eviction can not close them mid batch */
+                SQLiteStatement statement = statement(ids == null ? SQLiteDatabaseConstants.INSERT_TABLE_1 : SQLiteDatabaseConstants.INSERT_WITH_ID_TABLE_1);
+                SQLiteStatement insertPicture = statement(SQLiteDatabaseConstants.INSERT_OR_IGNORE_TABLE_3);
+                synchronized (statement)
+                {
+                    long startTime = System.nanoTime();
+                    long[] rowIds = new long[bulkInsertBatchSize];
+                    int count = 0;
+                    boolean hasRejectedRow = false;
+
+                    sqLiteDatabase.beginTransactionNonExclusive();
+                    try
+                    {
+                        while (count < bulkInsertBatchSize && iterator.hasNext())
+                        {
+                            Student object = iterator.next();
+                            putPicture(object, insertPicture);
+                            if (ids == null)
+                            {
+                                StudentTable.bindInsert(statement, object);
+                            }
+                            else
+                            {
+                                object.setId((int) ids.get(position++));
+                                StudentTable.bindInsertWithKey(statement, object);
+                            }
+                            try {
+                                rowIds[count] = statement.executeInsert();
+                                if (rowIds[count] != -1)
+                                {
+                                    object.setId((int) rowIds[count]);
+                                }
+                            } catch (SQLException sqlException) {
+                                LogcatUtils.warningMessage(TAG, "insertAll() : row rejected " + object.getRollNumber(), sqlException);
+                                rowIds[count] = -1;
+                                hasRejectedRow = true;
+                            }
+                            count++;
+                        }
+                        if (hasRejectedRow)
+                        {
+                            /* Pictures of rejected rows were stored before the row failed */
+                            sqLiteDatabase.execSQL(SQLiteDatabaseConstants.DELETE_UNREFERENCED_TABLE_3);
+                        }
+                        sqLiteDatabase.setTransactionSuccessful();
+                    }
+                    finally
+                    {
+                        sqLiteDatabase.endTransaction();
+                    }
+
+                    long[] batchRowIds = Arrays.copyOf(rowIds, count);
+                    invalidationTracker.onInserted(SQLiteDatabaseConstants.TABLE_1, batchRowIds);
+                    result.addBatch(batchRowIds, (System.nanoTime() - startTime) / 1000000L);
+                }
+            }
+        }
+        finally
+        {
+            onTableChanged();
+            this.close();
+        }
 
-        long count = DatabaseUtils.queryNumEntries(sqLiteDatabase, tableName);
+        LogcatUtils.informationMessage(TAG, "insertAll() : " + result);
+        return result;
+    }
 
-        this.close();
-        return (int) count;
+    /**
+     * Called after every committed write to the student table, once the written rows have been
+     * recorded by the invalidation tracker.
+     */
+    private void onTableChanged() {
+        searchResultCache.invalidate();
     }
 
-    public int getNumberOfRowsSecondWay(String tableName) {
-        this.open();
+    /**
+     * Called once an import has swapped in another database file, every row and id read before
+     * is stale.
+     */
+    void onDatabaseReplaced() {
+        invalidationTracker.onInvalidated(SQLiteDatabaseConstants.TABLE_1);
+        invalidationTracker.onInvalidated(SQLiteDatabaseConstants.TABLE_2);
+        onTableChanged();
+    }
 
-        String query = "SELECT  * FROM " + tableName;
-        Cursor cursor = sqLiteDatabase.rawQuery(query, null);
-        int count = cursor.getCount();
-        cursor.close();
+    /**
+     * Tables and row ids changed by every committed write, coalesced, on the main thread.
+     */
+    public SQLiteInvalidationTracker getInvalidationTracker() {
+        return invalidationTracker;
+    }
 
-        this.close();
-        return count;
+    /**
+     * Ids of the rows with this roll number, read in the transaction of a write by roll number
+     * so that the write can be reported row by row. Must be called between open() and close().
+     */
+    private ArrayList<Long> findRowIds(String rollNumber) {
+        ArrayList<Long> rowIds = new ArrayList<Long>();
+        Cursor cursor = sqLiteDatabase.rawQuery(SQLiteDatabaseConstants.SELECT_TABLE_1_ID_BY_ROLL_NUMBER, new String[]{String.valueOf(rollNumber)});
+        try
+        {
+            while (cursor.moveToNext())
+            {
+                rowIds.add(cursor.getLong(0));
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+        return rowIds;
     }
 
-    public ArrayList<Student> getAllRowFirstWay() {
-        this.open();
+    /**
+     * Store the picture of the student in the blob store, must be called between open() and close()
+     *
+     * @return hash to keep in {@link SQLiteDatabaseConstants#TABLE_1_COLUMN_5}
+     */
+    private String putPicture(Student object) {
+        return putPicture(object, statement(SQLiteDatabaseConstants.INSERT_OR_IGNORE_TABLE_3));
+    }
 
-        ArrayList<Student> objectArrayList = new ArrayList<Student>();
+    /**
+     * @param insertPicture compiled {@link SQLiteDatabaseConstants#INSERT_OR_IGNORE_TABLE_3}, taken before
+     *                      any statement monitor is held
+     */
+    private String putPicture(Student object, SQLiteStatement insertPicture) {
+        storePicture(object, insertPicture);
+        return object.getPictureHash();
+    }
 
-        Cursor cursor = sqLiteDatabase.query(SQLiteDatabaseConstants.TABLE_1,
-                null,
-                null,
-                null,
-                null,
-                null,
-                null);
+    /**
+     * Same as {@link #putPicture(Student, SQLiteStatement)}.
+     *
+     * @return true when the picture was not stored yet, it stays unreferenced unless the row is written
+     */
+    private boolean storePicture(Student object, SQLiteStatement insertPicture) {
+        byte[] thumbnail = object.getThumbnail();
+        if (thumbnail == null && object.getPicture() != null) {
+            thumbnail = createThumbnail(object.getPicture());
+            object.setThumbnail(thumbnail);
+        }
 
-        if (cursor != null && cursor.getCount() > 0)
-        {
-            cursor.moveToFirst();
-            do {
-                int idInt                 = cursor.getInt(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_1));
-                String firstNameString    = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_2));
-                String lastNameString     = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_3));
-                String rollNumberString   = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_4));
-                byte[] pictureBlob        = cursor.getBlob(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_5));
+        String pictureHash = SQLiteBlobStore.hash(object.getPicture());
+        object.setPictureHash(pictureHash);
+        return pictureHash != null && SQLiteBlobStore.insert(insertPicture, pictureHash, object.getPicture(), thumbnail);
+    }
 
-                Student object = new Student(idInt, firstNameString, lastNameString, rollNumberString, pictureBlob);
-                objectArrayList.add(object);
-            }while (cursor.moveToNext());
+    /**
+     * @return thumbnail of the picture, null when it can not be decoded (the full picture is shown instead)
+     */
+    private static byte[] createThumbnail(byte[] picture) {
+        try {
+            return BitmapUtils.getThumbnailByteArrayFromByteArray(picture, BitmapUtils.THUMBNAIL_SIZE);
+        } catch (IOException ioException) {
+            LogcatUtils.warningMessage(TAG, "createThumbnail() : " + ioException, ioException);
+            return null;
+        }
+    }
 
-            cursor.close();
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
         }
+    }
 
-        this.close();
-        return objectArrayList;
+    /**
+     * Compiled statement from the connection scoped cache, must be called between open() and close(),
+     * which gives it back. Take every statement before entering any synchronized (statement) block.
+     */
+    private SQLiteStatement statement(String sql) {
+        ArrayList<StatementLease> leases = statementLeases.get();
+        if (leases.isEmpty())
+        {
+            throw new IllegalStateException("statement() called outside of open() and close()");
+        }
+
+        StatementLease lease = leases.get(leases.size() - 1);
+        SQLiteStatement statement = lease.statementCache.acquire(sql);
+        if (lease.statements.contains(statement))
+        {
+            /* Already held until close(), e.g., the picture statement of every row of a batch */
+            lease.statementCache.release(statement);
+        }
+        else
+        {
+            lease.statements.add(statement);
+        }
+        return statement;
+    }
+    /*
+     ***********************************************************************************************
+     ****************************************** READ OPERATION *************************************
+     ***********************************************************************************************
+     */
+    /**
+     * Constant time for the tables counted by {@link RowCounts}, a COUNT(*) scan for the others.
+     */
+    public int getNumberOfRowsFirstWay(String tableName) {
+        return (int) getRowCount(tableName);
     }
 
-    public ArrayList<Student> getAllRowSecondWay() {
-        this.open();
+    public int getNumberOfRowsSecondWay(String tableName) {
+        return (int) getRowCount(tableName);
+    }
 
-        ArrayList<Student> objectArrayList = new ArrayList<Student>();
+    /**
+     * Number of rows of the table, see {@link RowCounts}.
+     */
+    public long getRowCount(String tableName) {
+        if (!RowCounts.isCounted(tableName))
+        {
+            this.open();
+            try
+            {
+                SQLiteStatement statement = statement(SQLiteDatabaseConstants.SELECT_COUNT_FROM + tableName);
+                synchronized (statement) {
+                    return statement.simpleQueryForLong();
+                }
+            }
+            finally
+            {
+                this.close();
+            }
+        }
+        return queryRowCount(tableName, "");
+    }
 
-        String query = "SELECT  * FROM " + SQLiteDatabaseConstants.TABLE_1;
-        Cursor cursor = sqLiteDatabase.rawQuery(query, null);
+    /**
+     * Number of students whose firstName starts with the letter of prefix, e.g., the size of a
+     * fast scroller section.
+     *
+     * @param prefix first letter, case insensitive, or {@link RowCounts#NO_PREFIX}
+     */
+    public long getRowCountWithPrefix(String prefix) {
+        return queryRowCount(SQLiteDatabaseConstants.TABLE_1, RowCounts.prefixOf(prefix));
+    }
 
-        if (cursor != null && cursor.getCount() > 0)
+    /**
+     * @return number of students of every first letter that has some, in letter order
+     */
+    public LinkedHashMap<String, Long> getPrefixCounts() {
+        this.open();
+        try
+        {
+            return RowCounts.getPrefixCounts(sqLiteDatabase);
+        }
+        finally
         {
-            cursor.moveToFirst();
-            do {
-                int idInt                 = cursor.getInt(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_1));
-                String firstNameString    = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_2));
-                String lastNameString     = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_3));
-                String rollNumberString   = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_4));
-                byte[] pictureBlob        = cursor.getBlob(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_5));
+            this.close();
+        }
+    }
 
-                Student object = new Student(idInt, firstNameString, lastNameString, rollNumberString, pictureBlob);
-                objectArrayList.add(object);
-            }while (cursor.moveToNext());
+    private long queryRowCount(String tableName, String prefix) {
+        this.open();
+        try
+        {
+            long count;
+            SQLiteStatement statement = statement(RowCounts.SELECT_COUNT);
+            synchronized (statement) {
+                statement.clearBindings();
+                statement.bindString(1, tableName);
+                statement.bindString(2, prefix);
+                count = statement.simpleQueryForLong();
+            }
 
-            cursor.close();
+            return count;
+        }
+        finally
+        {
+            this.close();
         }
+    }
 
-        this.close();
-        return objectArrayList;
+    public ArrayList<Student> getAllRowFirstWay() {
+        this.open();
+        try
+        {
+            ArrayList<Student> objectArrayList = new ArrayList<Student>();
+
+            Cursor cursor = sqLiteDatabase.query(SQLiteDatabaseConstants.TABLE_1,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null);
+
+            if (cursor != null)
+            {
+                StudentTable.MAPPER.mapAll(cursor, objectArrayList);
+                cursor.close();
+            }
+
+            return objectArrayList;
+        }
+        finally
+        {
+            this.close();
+        }
     }
 
-    public Student getSingleRowFirstWay(String rollNumber) {
+    public ArrayList<Student> getAllRowSecondWay() {
         this.open();
+        try
+        {
+            ArrayList<Student> objectArrayList = new ArrayList<Student>();
 
-        Student object = null;
+            String query = "SELECT  * FROM " + SQLiteDatabaseConstants.TABLE_1;
+            Cursor cursor = sqLiteDatabase.rawQuery(query, null);
 
-        Cursor cursor = sqLiteDatabase.query(SQLiteDatabaseConstants.TABLE_1,
-                SQLiteDatabaseConstants.TABLE_1_COLUMNS,
-                SQLiteDatabaseConstants.TABLE_1_COLUMN_4+ "=?",
-                new String[]{String.valueOf(rollNumber)},
-                null,
-                null,
-                null,
-                null);
+            if (cursor != null)
+            {
+                StudentTable.MAPPER.mapAll(cursor, objectArrayList);
+                cursor.close();
+            }
 
-        if (cursor != null && cursor.getCount() > 0)
+            return objectArrayList;
+        }
+        finally
         {
-            cursor.moveToNext();
+            this.close();
+        }
+    }
 
-            int idInt                 = cursor.getInt(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_1));
-            String firstNameString    = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_2));
-            String lastNameString     = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_3));
-            String rollNumberString   = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_4));
-            byte[] pictureBlob        = cursor.getBlob(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_5));
+    /**
+     * Keyset pagination : rows whose id is greater than afterId, in id order.
+     *
+     * @param afterId id of the last row of the previous page, 0 for the first page
+     * @param limit maximum number of rows
+     */
+    public ArrayList<Student> loadPage(int afterId, int limit) {
+        return loadPage(afterId, Integer.MAX_VALUE, limit);
+    }
 
-            object = new Student(idInt, firstNameString, lastNameString, rollNumberString, pictureBlob);
+    /**
+     * Same as {@link #loadPage(int, int)} for the rows whose id is also at most untilId, so that a
+     * page loaded again does not take the rows of the next one once some of its own are deleted.
+     *
+     * @param untilId id of the last row of the page when it was first loaded
+     */
+    public ArrayList<Student> loadPage(int afterId, int untilId, int limit) {
+        this.open();
+        try
+        {
+            ArrayList<Student> objectArrayList = new ArrayList<Student>(limit);
+
+            Cursor cursor = sqLiteDatabase.query(SQLiteDatabaseConstants.TABLE_1,
+                    null,
+                    SQLiteDatabaseConstants.TABLE_1_COLUMN_1 + " > ?" + SQLiteDatabaseConstants.AND + SQLiteDatabaseConstants.TABLE_1_COLUMN_1 + " <= ?",
+                    new String[]{String.valueOf(afterId), String.valueOf(untilId)},
+                    null,
+                    null,
+                    SQLiteDatabaseConstants.TABLE_1_COLUMN_1 + " ASC",
+                    String.valueOf(limit));
+
+            if (cursor != null)
+            {
+                StudentTable.MAPPER.mapAll(cursor, objectArrayList);
+                cursor.close();
+            }
 
-            cursor.close();
+            return objectArrayList;
+        }
+        finally
+        {
+            this.close();
         }
+    }
 
-        this.close();
-        return object;
+    /**
+     * Picture bytes of a row returned by a list or search query, which only carry the hash.
+     */
+    public byte[] getPicture(String pictureHash) {
+        this.open();
+        try
+        {
+            return SQLiteBlobStore.get(sqLiteDatabase, pictureHash);
+        }
+        finally
+        {
+            this.close();
+        }
     }
 
-    public Student getSingleRowSecondWay(String rollNumber) {
+    /**
+     * Thumbnail of a row returned by a list or search query, what list rows should display.
+     * Falls back to the full picture until {@link #backfillThumbnails(int)} has reached it.
+     */
+    public byte[] getThumbnail(String pictureHash) {
         this.open();
+        try
+        {
+            return SQLiteBlobStore.getThumbnail(sqLiteDatabase, pictureHash);
+        }
+        finally
+        {
+            this.close();
+        }
+    }
 
-        Student object = null;
+    public Student getSingleRowFirstWay(String rollNumber) {
+        this.open();
+        try
+        {
+            Student object = null;
+
+            Cursor cursor = sqLiteDatabase.query(SQLiteDatabaseConstants.TABLE_1,
+                    SQLiteDatabaseConstants.TABLE_1_COLUMNS,
+                    SQLiteDatabaseConstants.TABLE_1_COLUMN_4+ "=?",
+                    new String[]{String.valueOf(rollNumber)},
+                    null,
+                    null,
+                    null,
+                    null);
+
+            if (cursor != null)
+            {
+                object = StudentTable.MAPPER.mapFirst(cursor);
+                if (object != null)
+                {
+                    object.setPicture(SQLiteBlobStore.get(sqLiteDatabase, object.getPictureHash()));
+                }
+                cursor.close();
+            }
 
-        String query = "SELECT * FROM "+SQLiteDatabaseConstants.TABLE_1+" WHERE "+SQLiteDatabaseConstants.TABLE_1_COLUMN_4+" = ? ";
-        Cursor cursor = sqLiteDatabase.rawQuery(query, new String[]{String.valueOf(rollNumber)});
+            return object;
+        }
+        finally
+        {
+            this.close();
+        }
+    }
 
-        if (cursor != null && cursor.getCount() > 0)
+    public Student getSingleRowSecondWay(String rollNumber) {
+        this.open();
+        try
         {
-            cursor.moveToNext();
+            Student object = null;
 
-            int idInt                 = cursor.getInt(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_1));
-            String firstNameString    = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_2));
-            String lastNameString     = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_3));
-            String rollNumberString   = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_4));
-            byte[] pictureBlob        = cursor.getBlob(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_5));
+            Cursor cursor = sqLiteDatabase.rawQuery(SQLiteDatabaseConstants.SELECT_TABLE_1_BY_ROLL_NUMBER, new String[]{String.valueOf(rollNumber)});
 
-            object = new Student(idInt, firstNameString, lastNameString, rollNumberString, pictureBlob);
+            if (cursor != null)
+            {
+                object = StudentTable.MAPPER.mapFirst(cursor);
+                if (object != null)
+                {
+                    object.setPicture(SQLiteBlobStore.get(sqLiteDatabase, object.getPictureHash()));
+                }
+                cursor.close();
+            }
 
-            cursor.close();
+            return object;
+        }
+        finally
+        {
+            this.close();
         }
-
-        this.close();
-        return object;
     }
 
     public Student getTableInfoById(int id) {
         this.open();
+        try
+        {
+            Student object = null;
 
-        Student object = null;
+            Cursor cursor = sqLiteDatabase.query(SQLiteDatabaseConstants.TABLE_1, null,
+                    SQLiteDatabaseConstants.TABLE_1_COLUMN_1 +" = " + id, null, null, null, null);
 
-        Cursor cursor = sqLiteDatabase.query(SQLiteDatabaseConstants.TABLE_1, null,
-                SQLiteDatabaseConstants.TABLE_1_COLUMN_1 +" = " + id, null, null, null, null);
+            if (cursor != null)
+            {
+                object = StudentTable.MAPPER.mapFirst(cursor);
+                if (object != null)
+                {
+                    object.setPicture(SQLiteBlobStore.get(sqLiteDatabase, object.getPictureHash()));
+                }
+                cursor.close();
+            }
 
-        if (cursor != null && cursor.getCount() > 0)
+            return object;
+        }
+        finally
+        {
+            this.close();
+        }
+    }
+    /**
+     * Rows with these ids, in id order, e.g., the rows of a {@link SQLiteChangeEvent}. Ids of rows
+     * deleted since are skipped. Like list queries, rows only carry the picture hash.
+     */
+    public ArrayList<Student> getRowsById(Collection<Long> ids) {
+        ArrayList<Student> objectArrayList = new ArrayList<Student>(ids.size());
+        if (ids.isEmpty())
         {
-            cursor.moveToNext();
+            return objectArrayList;
+        }
 
-            int idInt                 = cursor.getInt(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_1));
-            String firstNameString    = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_2));
-            String lastNameString     = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_3));
-            String rollNumberString   = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_4));
-            byte[] pictureBlob        = cursor.getBlob(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_5));
+        this.open();
+        try
+        {
+            /* Ids are numbers, inlined instead of one bind argument each (at most 999 per statement) */
+            StringBuilder inClause = new StringBuilder();
+            for (Long id : ids)
+            {
+                if (inClause.length() > 0)
+                {
+                    inClause.append(", ");
+                }
+                inClause.append(id.longValue());
+            }
 
-            object = new Student(idInt, firstNameString, lastNameString, rollNumberString, pictureBlob);
+            Cursor cursor = sqLiteDatabase.query(SQLiteDatabaseConstants.TABLE_1,
+                    SQLiteDatabaseConstants.TABLE_1_COLUMNS,
+                    SQLiteDatabaseConstants.TABLE_1_COLUMN_1 + " IN (" + inClause + ")",
+                    null,
+                    null,
+                    null,
+                    SQLiteDatabaseConstants.TABLE_1_COLUMN_1 + " ASC");
+            try
+            {
+                StudentTable.MAPPER.mapAll(cursor, objectArrayList);
+            }
+            finally
+            {
+                cursor.close();
+            }
 
-            cursor.close();
+            return objectArrayList;
+        }
+        finally
+        {
+            this.close();
         }
-
-        this.close();
-        return object;
     }
     /*
      ***********************************************************************************************
@@ -272,49 +782,318 @@ public class SQLiteDatabaseOperation {
      */
     public boolean updateFirstWay(Student object) {
         this.open();
+        try
+        {
+            long affectedRow;
+            ArrayList<Long> rowIds;
+            sqLiteDatabase.beginTransactionNonExclusive();
+            try
+            {
+                rowIds = findRowIds(object.getRollNumber());
+
+                ContentValues values = new ContentValues();
+                values.put(SQLiteDatabaseConstants.TABLE_1_COLUMN_2, object.getFirstName());
+                values.put(SQLiteDatabaseConstants.TABLE_1_COLUMN_3, object.getLastName());
+                values.put(SQLiteDatabaseConstants.TABLE_1_COLUMN_5, putPicture(object));
+
+                affectedRow = sqLiteDatabase.update(
+                        SQLiteDatabaseConstants.TABLE_1,
+                        values,
+                        SQLiteDatabaseConstants.TABLE_1_COLUMN_4 + " = ?",
+                        new String[]{String.valueOf(object.getRollNumber())});
+
+                /* Nothing references the picture when no row matched, keep the blob store clean */
+                if (affectedRow > 0)
+                {
+                    sqLiteDatabase.setTransactionSuccessful();
+                }
+            }
+            finally
+            {
+                sqLiteDatabase.endTransaction();
+            }
 
-        ContentValues values = new ContentValues();
-        values.put(SQLiteDatabaseConstants.TABLE_1_COLUMN_2, object.getFirstName());
-        values.put(SQLiteDatabaseConstants.TABLE_1_COLUMN_3, object.getLastName());
-        values.put(SQLiteDatabaseConstants.TABLE_1_COLUMN_5, object.getPicture());
-
-        long affectedRow = sqLiteDatabase.update(
-                SQLiteDatabaseConstants.TABLE_1,
-                values,
-                SQLiteDatabaseConstants.TABLE_1_COLUMN_4 + " = ?",
-                new String[]{String.valueOf(object.getRollNumber())});
+            /*long affectedRow = sqLiteDatabase.update(
+                    SQLiteDatabaseConstants.TABLE_1,
+                    values,
+                    SQLiteDatabaseConstants.TABLE_1_COLUMN_4 + " = "+object.getRollNumber(),
+                    null);*/
 
-        /*long affectedRow = sqLiteDatabase.update(
-                SQLiteDatabaseConstants.TABLE_1,
-                values,
-                SQLiteDatabaseConstants.TABLE_1_COLUMN_4 + " = "+object.getRollNumber(),
-                null);*/
+            if (affectedRow > 0)
+            {
+                invalidationTracker.onUpdated(SQLiteDatabaseConstants.TABLE_1, rowIds);
+            }
+            onTableChanged();
 
-        this.close();
+            /* @return the number of rows affected */
+            if(affectedRow > 0)
+            {
+                return true;
+            }
+            else
+            {
+                return false;
+            }
+        }
+        finally
+        {
+            this.close();
+        }
+    }
 
-        /* @return the number of rows affected */
-        if(affectedRow > 0)
+    public void updateSecondWay(Student object) {
+        this.open();
+        try
         {
-            return true;
+            ArrayList<Long> rowIds;
+            sqLiteDatabase.beginTransactionNonExclusive();
+            try
+            {
+                rowIds = findRowIds(object.getRollNumber());
+
+                String pictureHash = putPicture(object);
+                SQLiteStatement statement = statement(SQLiteDatabaseConstants.UPDATE_TABLE_1_BY_ROLL_NUMBER);
+                synchronized (statement) {
+                    statement.clearBindings();
+                    bindStringOrNull(statement, 1, object.getFirstName());
+                    bindStringOrNull(statement, 2, object.getLastName());
+                    bindStringOrNull(statement, 3, pictureHash);
+                    bindStringOrNull(statement, 4, object.getRollNumber());
+                    statement.executeUpdateDelete();
+                }
+                sqLiteDatabase.setTransactionSuccessful();
+            }
+            finally
+            {
+                sqLiteDatabase.endTransaction();
+            }
+
+            invalidationTracker.onUpdated(SQLiteDatabaseConstants.TABLE_1, rowIds);
+            onTableChanged();
         }
-        else
+        finally
         {
-            return false;
+            this.close();
         }
     }
 
-    public void updateSecondWay(Student object) {
+    /*
+     ***********************************************************************************************
+     ****************************************** UPSERT OPERATION ***********************************
+     ***********************************************************************************************
+     */
+    /**
+     * Insert the student, or update the student with its rollNumber, replacing every column.
+     */
+    public UpsertResult upsert(Student object) {
+        return upsert(object, new UpsertPolicy());
+    }
+
+    public UpsertResult upsert(Student object, UpsertPolicy policy) {
+        return upsertAll(Collections.singletonList(object).iterator(), policy);
+    }
+
+    public UpsertResult upsertAll(Collection<Student> objects, UpsertPolicy policy) {
+        return upsertAll(objects.iterator(), policy);
+    }
+
+    /**
+     * Insert every student of the iterator whose rollNumber is not in the table yet and update
+     * the others as the policy says, committing one transaction per
+     * {@link #setBulkInsertBatchSize(int)} rows. Rows are written with INSERT ... ON CONFLICT
+     * DO UPDATE when SQLite has it, with an UPDATE by _id otherwise. Either way a row is only
+     * written when one of its values changes. Inserted and updated students get their id.
+     *
+     * With ON CONFLICT, an insert is told apart from an update by last_insert_rowid(), which only
+     * an insert moves. Only updated rows read their id back, inserted and unchanged rows cost no
+     * lookup of the rollNumber index.
+     *
+     * @return number of students inserted, updated and left unchanged
+     */
+    public UpsertResult upsertAll(Iterator<Student> iterator, UpsertPolicy policy) {
+        long startTime = System.nanoTime();
+        UpsertResult result = new UpsertResult();
+        /* A picture stored for a row that keeps its own picture is not referenced by it */
+        boolean keepsPicture = policy.get(SQLiteDatabaseConstants.TABLE_1_COLUMN_5) != UpsertPolicy.Conflict.REPLACE;
+        boolean nativeUpsert;
+
         this.open();
+        try
+        {
+            nativeUpsert = sqLiteConnectionManager.isNativeUpsertAvailable();
+            String writeQuery = nativeUpsert ? policy.getUpsertStatement() : policy.getUpdateStatement();
+
+            while (iterator.hasNext())
+            {
+                /* Taken per batch, held by this open() until close() so an eviction can not close them mid batch */
+                SQLiteStatement selectId = statement(SQLiteDatabaseConstants.SELECT_TABLE_1_FIRST_ID_BY_ROLL_NUMBER);
+                SQLiteStatement insert = statement(nativeUpsert ? writeQuery : SQLiteDatabaseConstants.INSERT_TABLE_1);
+                SQLiteStatement update = writeQuery == null || nativeUpsert ? null : statement(writeQuery);
+                SQLiteStatement insertPicture = statement(SQLiteDatabaseConstants.INSERT_OR_IGNORE_TABLE_3);
+                SQLiteStatement deletePicture = statement(SQLiteDatabaseConstants.DELETE_TABLE_3_IF_UNREFERENCED);
+                SQLiteStatement selectLastInsertRowId = nativeUpsert ? statement(SQLiteDatabaseConstants.SELECT_LAST_INSERT_ROWID) : null;
+                SQLiteStatement selectLastId = nativeUpsert ? statement(SQLiteIds.selectLastId(SQLiteDatabaseConstants.TABLE_1)) : null;
+
+                ArrayList<Long> insertedRowIds = new ArrayList<Long>();
+                ArrayList<Long> updatedRowIds = new ArrayList<Long>();
+                ArrayList<String> unusedPictureHashes = new ArrayList<String>();
+                int count = 0;
+
+                sqLiteDatabase.beginTransactionNonExclusive();
+                try
+                {
+                    /* Every student already in the table has an id up to lastId, the transaction keeps other writers out */
+                    long lastId = 0;
+                    if (nativeUpsert)
+                    {
+                        synchronized (selectLastId) {
+                            lastId = selectLastId.simpleQueryForLong();
+                        }
+                    }
+
+                    while (count < bulkInsertBatchSize && iterator.hasNext())
+                    {
+                        Student object = iterator.next();
+                        count++;
+                        boolean pictureStored = storePicture(object, insertPicture);
+                        try
+                        {
+                            long rowId;
+                            boolean inserted;
+                            boolean written;
+                            if (nativeUpsert)
+                            {
+                                /* Read on the connection of the transaction, after the picture insert moved it */
+                                long lastInsertRowId;
+                                synchronized (selectLastInsertRowId) {
+                                    lastInsertRowId = selectLastInsertRowId.simpleQueryForLong();
+                                }
+                                synchronized (insert) {
+                                    StudentTable.bindInsert(insert, object);
+                                    /* last_insert_rowid() when a row was written, -1 when it was left unchanged */
+                                    rowId = insert.executeInsert();
+                                }
+                                written  = rowId != -1;
+                                inserted = written && rowId != lastInsertRowId;
+                                if (written && !inserted)
+                                {
+                                    /* Updated, or inserted under the id the previous insert happened to return */
+                                    synchronized (selectId) {
+                                        selectId.clearBindings();
+                                        bindStringOrNull(selectId, 1, object.getRollNumber());
+                                        rowId = selectId.simpleQueryForLong();
+                                    }
+                                    inserted = rowId > lastId;
+                                }
+                            }
+                            else
+                            {
+                                /* RETURNING needs SQLite 3.35, the id tells inserted from updated rows */
+                                synchronized (selectId) {
+                                    selectId.clearBindings();
+                                    bindStringOrNull(selectId, 1, object.getRollNumber());
+                                    rowId = selectId.simpleQueryForLong();
+                                }
+
+                                inserted = rowId == -1;
+                                if (inserted)
+                                {
+                                    synchronized (insert) {
+                                        StudentTable.bindInsert(insert, object);
+                                        rowId = insert.executeInsert();
+                                    }
+                                    written = true;
+                                }
+                                else
+                                {
+                                    int changes = 0;
+                                    if (update != null)
+                                    {
+                                        object.setId((int) rowId);
+                                        synchronized (update) {
+                                            StudentTable.bindUpdateByKey(update, object);
+                                            changes = update.executeUpdateDelete();
+                                        }
+                                    }
+                                    written = changes > 0;
+                                }
+                            }
+
+                            if (rowId != -1)
+                            {
+                                object.setId((int) rowId);
+                            }
+                            if (inserted)
+                            {
+                                lastId = Math.max(lastId, rowId);
+                                insertedRowIds.add(rowId);
+                                result.addInserted();
+                            }
+                            else if (written)
+                            {
+                                updatedRowIds.add(rowId);
+                                result.addUpdated();
+                            }
+                            else
+                            {
+                                result.addUnchanged();
+                            }
+
+                            if (pictureStored && (!written || !inserted && keepsPicture))
+                            {
+                                unusedPictureHashes.add(object.getPictureHash());
+                            }
+                        }
+                        catch (SQLException sqlException)
+                        {
+                            LogcatUtils.warningMessage(TAG, "upsertAll() : row rejected " + object.getRollNumber(), sqlException);
+                            if (pictureStored)
+                            {
+                                unusedPictureHashes.add(object.getPictureHash());
+                            }
+                            result.addFailed();
+                        }
+                    }
+
+                    /* Only the pictures this batch stored and did not reference, another row may have taken them */
+                    synchronized (deletePicture) {
+                        for (String pictureHash : unusedPictureHashes)
+                        {
+                            deletePicture.clearBindings();
+                            deletePicture.bindString(1, pictureHash);
+                            deletePicture.executeUpdateDelete();
+                        }
+                    }
+                    sqLiteDatabase.setTransactionSuccessful();
+                }
+                finally
+                {
+                    sqLiteDatabase.endTransaction();
+                }
 
-        sqLiteDatabase.execSQL("UPDATE " + SQLiteDatabaseConstants.TABLE_1
-                + " SET "
-                + SQLiteDatabaseConstants.TABLE_1_COLUMN_2 + "='" + object.getFirstName() + "',"
-                + SQLiteDatabaseConstants.TABLE_1_COLUMN_3 + "='" + object.getLastName() + "',"
-                + SQLiteDatabaseConstants.TABLE_1_COLUMN_5 + "='" + object.getPicture() +
-                "' WHERE "
-                + SQLiteDatabaseConstants.TABLE_1_COLUMN_4 + "='" + object.getRollNumber()+"'");
+                long[] batchInsertedRowIds = new long[insertedRowIds.size()];
+                for (int i = 0; i < batchInsertedRowIds.length; i++) {
+                    batchInsertedRowIds[i] = insertedRowIds.get(i);
+                }
+                if (batchInsertedRowIds.length > 0)
+                {
+                    invalidationTracker.onInserted(SQLiteDatabaseConstants.TABLE_1, batchInsertedRowIds);
+                }
+                if (!updatedRowIds.isEmpty())
+                {
+                    invalidationTracker.onUpdated(SQLiteDatabaseConstants.TABLE_1, updatedRowIds);
+                }
+            }
+        }
+        finally
+        {
+            onTableChanged();
+            this.close();
+        }
 
-        this.close();
+        result.setDurationMillis((System.nanoTime() - startTime) / 1000000L);
+        LogcatUtils.informationMessage(TAG, "upsertAll() : " + (nativeUpsert ? "ON CONFLICT " : "UPDATE ") + policy + " " + result);
+        return result;
     }
 
     /*
@@ -324,69 +1103,137 @@ public class SQLiteDatabaseOperation {
      */
     public boolean deleteFirstWay(String rollNumber) {
         this.open();
+        try
+        {
+            long affectedRow;
+            ArrayList<Long> rowIds;
+            sqLiteDatabase.beginTransactionNonExclusive();
+            try
+            {
+                rowIds = findRowIds(rollNumber);
+                affectedRow = sqLiteDatabase.delete(SQLiteDatabaseConstants.TABLE_1,
+                        SQLiteDatabaseConstants.TABLE_1_COLUMN_4 + " = ?",
+                        new String[]{String.valueOf(rollNumber)});
+                sqLiteDatabase.setTransactionSuccessful();
+            }
+            finally
+            {
+                sqLiteDatabase.endTransaction();
+            }
 
-        long affectedRow = sqLiteDatabase.delete(SQLiteDatabaseConstants.TABLE_1,
-                SQLiteDatabaseConstants.TABLE_1_COLUMN_4 + " = ?",
-                new String[]{String.valueOf(rollNumber)});
-
-        this.close();
+            invalidationTracker.onDeleted(SQLiteDatabaseConstants.TABLE_1, rowIds);
+            onTableChanged();
 
-        /* @return the number of rows affected */
-        if(affectedRow > 0)
-        {
-            return true;
+            /* @return the number of rows affected */
+            if(affectedRow > 0)
+            {
+                return true;
+            }
+            else
+            {
+                return false;
+            }
         }
-        else
+        finally
         {
-            return false;
+            this.close();
         }
     }
 
     public void deleteSecondWay(String rollNumber) {
         this.open();
+        try
+        {
+            ArrayList<Long> rowIds;
+            sqLiteDatabase.beginTransactionNonExclusive();
+            try
+            {
+                rowIds = findRowIds(rollNumber);
+                SQLiteStatement statement = statement(SQLiteDatabaseConstants.DELETE_TABLE_1_BY_ROLL_NUMBER);
+                synchronized (statement) {
+                    statement.clearBindings();
+                    bindStringOrNull(statement, 1, rollNumber);
+                    statement.executeUpdateDelete();
+                }
+                sqLiteDatabase.setTransactionSuccessful();
+            }
+            finally
+            {
+                sqLiteDatabase.endTransaction();
+            }
 
-        sqLiteDatabase.execSQL("DELETE FROM "+ SQLiteDatabaseConstants.TABLE_1
-                + " WHERE "
-                + SQLiteDatabaseConstants.TABLE_1_COLUMN_4 + "='" +rollNumber+"'");
-
-        this.close();
+            invalidationTracker.onDeleted(SQLiteDatabaseConstants.TABLE_1, rowIds);
+            onTableChanged();
+        }
+        finally
+        {
+            this.close();
+        }
     }
 
     public void deleteWithMatchTwoField(int id, String firstName){
         this.open();
+        try
+        {
+            int affectedRow;
+            SQLiteStatement statement = statement(SQLiteDatabaseConstants.DELETE_TABLE_1_BY_ID_AND_FIRST_NAME);
+            synchronized (statement) {
+                statement.clearBindings();
+                statement.bindLong(1, id);
+                bindStringOrNull(statement, 2, firstName);
+                affectedRow = statement.executeUpdateDelete();
+            }
 
-        String query = "DELETE FROM " + SQLiteDatabaseConstants.TABLE_1 + " WHERE "
-                + SQLiteDatabaseConstants.TABLE_1_COLUMN_1 + " = '" + id + "'" +
-                " AND " + SQLiteDatabaseConstants.TABLE_1_COLUMN_2 + " = '" + firstName + "'";
-        sqLiteDatabase.execSQL(query);
-
-        this.close();
+            if (affectedRow > 0)
+            {
+                invalidationTracker.onDeleted(SQLiteDatabaseConstants.TABLE_1, Collections.singletonList((long) id));
+            }
+            onTableChanged();
+        }
+        finally
+        {
+            this.close();
+        }
     }
 
     public boolean setTableEmptyFirstWay(String tableName) {
         this.open();
+        try
+        {
+            long affectedRow = sqLiteDatabase.delete(tableName,null,null);
 
-        long affectedRow = sqLiteDatabase.delete(tableName,null,null);
-
-        this.close();
+            invalidationTracker.onInvalidated(tableName);
+            onTableChanged();
 
-        /* @return the number of rows affected */
-        if(affectedRow > 0)
-        {
-            return true;
+            /* @return the number of rows affected */
+            if(affectedRow > 0)
+            {
+                return true;
+            }
+            else
+            {
+                return false;
+            }
         }
-        else
+        finally
         {
-            return false;
+            this.close();
         }
     }
 
     public void setTableEmptySecondWay(String tableName) {
         this.open();
+        try
+        {
+            sqLiteDatabase.execSQL("delete from " + tableName);
 
-        sqLiteDatabase.execSQL("delete from " + tableName);
-
-        this.close();
+            invalidationTracker.onInvalidated(tableName);
+            onTableChanged();
+        }
+        finally
+        {
+            this.close();
+        }
     }
 
     /*
@@ -394,70 +1241,264 @@ public class SQLiteDatabaseOperation {
      ****************************************** SEARCH OPERATION ***********************************
      ***********************************************************************************************
      */
+    /**
+     * Full text search of firstName, lastName and rollNumber, see {@link SQLiteFullTextSearch}.
+     *
+     * @param queryText tokens that must all match as a prefix, e.g. "jo sm"
+     * @return best matches first, at most {@link SQLiteDatabaseConstants#SEARCH_RESULT_LIMIT}
+     */
     public ArrayList<Student> search(String queryText) {
-        this.open();
-
-        ArrayList<Student> objectArrayList = new ArrayList<Student>();
-
-        String[] args = new String[1];
-        args[0] = "%"+queryText+"%";
-        String query ="select * from "+SQLiteDatabaseConstants.TABLE_1+" where "+SQLiteDatabaseConstants.TABLE_1_COLUMN_2+" Like ?";
-        Cursor cursor = sqLiteDatabase.rawQuery(query,args);
+        return search(queryText, null);
+    }
 
-        if (cursor != null && cursor.getCount() > 0)
+    /**
+     * Same as {@link #search(String)}, aborted with an {@link android.os.OperationCanceledException}
+     * as soon as cancellationSignal is cancelled.
+     */
+    public ArrayList<Student> search(String queryText, CancellationSignal cancellationSignal) {
+        /* "raje" only narrows what "raj" found, no need to ask SQLite again */
+        ArrayList<Student> cached = searchResultCache.get(queryText);
+        if (cached != null)
         {
-            cursor.moveToFirst();
-            do {
-                int idInt                 = cursor.getInt(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_1));
-                String firstNameString    = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_2));
-                String lastNameString     = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_3));
-                String rollNumberString   = cursor.getString(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_4));
-                byte[] pictureBlob        = cursor.getBlob(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_5));
+            return cached;
+        }
 
-                Student object = new Student(idInt, firstNameString, lastNameString, rollNumberString, pictureBlob);
-                objectArrayList.add(object);
-            }while (cursor.moveToNext());
+        int generation = searchResultCache.getGeneration();
+        ArrayList<Student> objectArrayList;
 
-            cursor.close();
+        this.open();
+        try
+        {
+            objectArrayList = SQLiteFullTextSearch.search(sqLiteDatabase, sqLiteConnectionManager.isFts5(), queryText, SQLiteDatabaseConstants.SEARCH_RESULT_LIMIT, cancellationSignal);
+        }
+        finally
+        {
+            this.close();
         }
 
-        this.close();
+        searchResultCache.put(generation, queryText, objectArrayList, objectArrayList.size() < SQLiteDatabaseConstants.SEARCH_RESULT_LIMIT);
         return objectArrayList;
     }
 
+    public SearchResultCache getSearchResultCache() {
+        return searchResultCache;
+    }
+
     public boolean isEmailExit(String email) {
         this.open();
-
-        boolean isExit = false;
         try
         {
-            String query = "SELECT * FROM " + SQLiteDatabaseConstants.TABLE_2 + " WHERE " + SQLiteDatabaseConstants.TABLE_2_COLUMN_3 + " = '" + email + "'";
-            Cursor cursor = sqLiteDatabase.rawQuery(query, null);
-            if(cursor != null && cursor.getCount() > 0) {
-                isExit = true;
+            boolean isExit = false;
+            try
+            {
+                SQLiteStatement statement = statement(SQLiteDatabaseConstants.EXISTS_TABLE_2_BY_EMAIL);
+                synchronized (statement) {
+                    statement.clearBindings();
+                    bindStringOrNull(statement, 1, email);
+                    isExit = statement.simpleQueryForLong() == 1;
+                }
             }
+            catch (SQLiteException sQLiteException) {
+                sQLiteException.printStackTrace();
+            }
+
+            return isExit;
+        }
+        finally
+        {
+            this.close();
         }
-        catch (SQLiteException sQLiteException) {
-            sQLiteException.printStackTrace();
+    }
+
+    /*
+     ***********************************************************************************************
+     ****************************************** THUMBNAIL BACKFILL *********************************
+     ***********************************************************************************************
+     */
+
+    /**
+     * Generate the thumbnail of every stored picture that has none, e.g., pictures stored before
+     * database version 4. Pictures are walked by hash in batches of batchSize, decoding happens
+     * outside of the transaction so that the connection is only held for the UPDATE statements.
+     * Must not be called on the main thread.
+     */
+    public ThumbnailBackfillResult backfillThumbnails(int batchSize) {
+        ThumbnailBackfillResult result = new ThumbnailBackfillResult();
+        long startTime = System.nanoTime();
+        String afterHash = "";
+
+        while (true)
+        {
+            ArrayList<String> hashes = new ArrayList<String>();
+            ArrayList<byte[]> pictures = new ArrayList<byte[]>();
+
+            this.open();
+            try
+            {
+                Cursor cursor = sqLiteDatabase.rawQuery(SQLiteDatabaseConstants.SELECT_TABLE_3_WITHOUT_THUMBNAIL, new String[]{afterHash, String.valueOf(batchSize)});
+                try
+                {
+                    while (cursor.moveToNext())
+                    {
+                        hashes.add(cursor.getString(0));
+                        pictures.add(cursor.getBlob(1));
+                    }
+                }
+                finally
+                {
+                    cursor.close();
+                }
+            }
+            finally
+            {
+                this.close();
+            }
+
+            if (hashes.isEmpty())
+            {
+                break;
+            }
+            afterHash = hashes.get(hashes.size() - 1);
+
+            byte[][] thumbnails = new byte[hashes.size()][];
+            for (int i = 0; i < pictures.size(); i++) {
+                thumbnails[i] = createThumbnail(pictures.get(i));
+            }
+
+            this.open();
+            try
+            {
+                sqLiteDatabase.beginTransactionNonExclusive();
+                try
+                {
+                    SQLiteStatement statement = statement(SQLiteDatabaseConstants.UPDATE_TABLE_3_THUMBNAIL_BY_HASH);
+                    synchronized (statement) {
+                        for (int i = 0; i < hashes.size(); i++) {
+                            if (thumbnails[i] == null) {
+                                result.addFailed();
+                                continue;
+                            }
+                            statement.clearBindings();
+                            statement.bindBlob(1, thumbnails[i]);
+                            statement.bindString(2, hashes.get(i));
+                            statement.executeUpdateDelete();
+                            result.addThumbnail(pictures.get(i).length, thumbnails[i].length);
+                        }
+                    }
+                    sqLiteDatabase.setTransactionSuccessful();
+                }
+                finally
+                {
+                    sqLiteDatabase.endTransaction();
+                }
+            }
+            finally
+            {
+                this.close();
+            }
+
+            if (hashes.size() < batchSize)
+            {
+                break;
+            }
         }
 
-        this.close();
-        return isExit;
+        result.setDurationMillis((System.nanoTime() - startTime) / 1000000L);
+        LogcatUtils.informationMessage(TAG, "backfillThumbnails() : " + result);
+        return result;
     }
 
+    /**
+     * @return id of the last student, 0 when there is none
+     */
     public int findLastId() {
+        return (int) getLastId(SQLiteDatabaseConstants.TABLE_1);
+    }
+
+    /**
+     * Largest id of the table without reading any row, see {@link SQLiteIds}.
+     *
+     * @return 0 when the table is empty
+     */
+    public long getLastId(String tableName) {
         this.open();
+        try
+        {
+            long lastId;
+            SQLiteStatement statement = statement(SQLiteIds.selectLastId(tableName));
+            synchronized (statement) {
+                lastId = statement.simpleQueryForLong();
+            }
 
-        int lastId = 0;
-        String query = "SELECT * FROM " + SQLiteDatabaseConstants.TABLE_1;
-        Cursor cursor = sqLiteDatabase.rawQuery(query, null);
-        if(cursor != null && cursor.getCount() > 0) {
-            cursor.moveToLast();
-            lastId = cursor.getInt(cursor.getColumnIndex(SQLiteDatabaseConstants.TABLE_1_COLUMN_1));
-            cursor.close();
+            return lastId;
+        }
+        finally
+        {
+            this.close();
         }
+    }
+
+    /**
+     * Reserve count consecutive ids of an AUTOINCREMENT table, no insert will be given one of
+     * them but an insert with the id set, e.g., {@link #insertAll(Iterator, IdRange)}. Ids left
+     * unused are skipped for good.
+     */
+    public IdRange reserveIds(String tableName, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be > 0");
+        }
+        this.open();
+        try
+        {
+            IdRange ids;
+            sqLiteDatabase.beginTransactionNonExclusive();
+            try
+            {
+                long sequence;
+                SQLiteStatement selectSequence = statement(SQLiteIds.SELECT_SEQUENCE);
+                synchronized (selectSequence) {
+                    selectSequence.clearBindings();
+                    selectSequence.bindString(1, tableName);
+                    sequence = selectSequence.simpleQueryForLong();
+                }
+
+                SQLiteStatement selectLastId = statement(SQLiteIds.selectLastId(tableName));
+                synchronized (selectLastId) {
+                    ids = new IdRange(Math.max(sequence, selectLastId.simpleQueryForLong()) + 1, count);
+                }
+
+                int updated;
+                SQLiteStatement updateSequence = statement(SQLiteIds.UPDATE_SEQUENCE);
+                synchronized (updateSequence) {
+                    updateSequence.clearBindings();
+                    updateSequence.bindLong(1, ids.getLast());
+                    updateSequence.bindString(2, tableName);
+                    updated = updateSequence.executeUpdateDelete();
+                }
+                if (updated == 0)
+                {
+                    /* No row was ever inserted in the table */
+                    SQLiteStatement insertSequence = statement(SQLiteIds.INSERT_SEQUENCE);
+                    synchronized (insertSequence) {
+                        insertSequence.clearBindings();
+                        insertSequence.bindString(1, tableName);
+                        insertSequence.bindLong(2, ids.getLast());
+                        insertSequence.executeInsert();
+                    }
+                }
+                sqLiteDatabase.setTransactionSuccessful();
+            }
+            finally
+            {
+                sqLiteDatabase.endTransaction();
+            }
 
-        this.close();
-        return lastId;
+            LogcatUtils.informationMessage(TAG, "reserveIds() : " + tableName + " " + ids);
+            return ids;
+        }
+        finally
+        {
+            this.close();
+        }
     }
 }
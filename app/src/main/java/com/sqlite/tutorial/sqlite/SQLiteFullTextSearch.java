@@ -0,0 +1,344 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.os.CancellationSignal;
+import com.sqlite.tutorial.sqlite.model.Student;
+import com.sqlite.tutorial.sqlite.model.StudentTable;
+import com.sqlite.tutorial.utilities.LogcatUtils;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Full text index of {@link SQLiteDatabaseConstants#TABLE_1} over firstName, lastName and rollNumber.
+ *
+ * The index is an external content FTS5 table, or FTS4 on devices whose SQLite is built without
+ * FTS5 (most Android versions). It only stores tokens, rows are read back from the student table,
+ * and triggers keep it in sync with every insert, update and delete.
+ *
+ * Both modules use the unicode61 tokenizer with diacritics removed, so that "emile" finds "&Eacute;mile"
+ * whatever the case, {@link #tokenize(String)} folds text the same way for in memory matching.
+ *
+ * Search text is split into tokens that all have to match as a prefix, e.g. "jo sm" finds
+ * "John Smith". Results are ranked with bm25() on FTS5 and with matchinfo() on FTS4, a hit in
+ * firstName weighs more than one in lastName, itself more than one in rollNumber.
+ */
+public class SQLiteFullTextSearch {
+
+    private static final String TAG = SQLiteFullTextSearch.class.getSimpleName();
+
+    /* Weight of firstName, lastName and rollNumber in the rank */
+    private static final double[] COLUMN_WEIGHTS = {3.0, 2.0, 1.0};
+
+    /* What remove_diacritics takes off the letters once they are decomposed */
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private static final String CREATE_FTS5 = "CREATE VIRTUAL TABLE IF NOT EXISTS student_fts USING fts5(firstName, lastName, rollNumber, content='student', content_rowid='_id', prefix='1 2 3', tokenize='unicode61 remove_diacritics 1')";
+    private static final String[] TRIGGERS_FTS5 = {
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_on_student_insert AFTER INSERT ON student BEGIN" +
+                    " INSERT INTO student_fts (rowid, firstName, lastName, rollNumber) VALUES (NEW._id, NEW.firstName, NEW.lastName, NEW.rollNumber); END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_on_student_delete AFTER DELETE ON student BEGIN" +
+                    " INSERT INTO student_fts (student_fts, rowid, firstName, lastName, rollNumber) VALUES ('delete', OLD._id, OLD.firstName, OLD.lastName, OLD.rollNumber); END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_on_student_update AFTER UPDATE OF firstName, lastName, rollNumber ON student BEGIN" +
+                    " INSERT INTO student_fts (student_fts, rowid, firstName, lastName, rollNumber) VALUES ('delete', OLD._id, OLD.firstName, OLD.lastName, OLD.rollNumber);" +
+                    " INSERT INTO student_fts (rowid, firstName, lastName, rollNumber) VALUES (NEW._id, NEW.firstName, NEW.lastName, NEW.rollNumber); END"
+    };
+
+    private static final String CREATE_FTS4 = "CREATE VIRTUAL TABLE IF NOT EXISTS student_fts USING fts4(firstName, lastName, rollNumber, content='student', prefix='1,2,3', tokenize=unicode61 \"remove_diacritics=1\")";
+    private static final String[] TRIGGERS_FTS4 = {
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_on_student_insert AFTER INSERT ON student BEGIN" +
+                    " INSERT INTO student_fts (docid, firstName, lastName, rollNumber) VALUES (NEW._id, NEW.firstName, NEW.lastName, NEW.rollNumber); END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_on_student_delete BEFORE DELETE ON student BEGIN" +
+                    " DELETE FROM student_fts WHERE docid = OLD._id; END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_before_student_update BEFORE UPDATE OF firstName, lastName, rollNumber ON student BEGIN" +
+                    " DELETE FROM student_fts WHERE docid = OLD._id; END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_after_student_update AFTER UPDATE OF firstName, lastName, rollNumber ON student BEGIN" +
+                    " INSERT INTO student_fts (docid, firstName, lastName, rollNumber) VALUES (NEW._id, NEW.firstName, NEW.lastName, NEW.rollNumber); END"
+    };
+
+    private static final String SELECT_MODULE = "SELECT sql FROM sqlite_master WHERE type = 'table' AND name = '" + SQLiteDatabaseConstants.TABLE_1_FTS + "'";
+
+    private static final String SEARCH_FTS5 = "SELECT s._id, s.firstName, s.lastName, s.rollNumber, s.pictureHash" +
+            " FROM student_fts JOIN student s ON s._id = student_fts.rowid" +
+            " WHERE student_fts MATCH ? ORDER BY bm25(student_fts, " + COLUMN_WEIGHTS[0] + ", " + COLUMN_WEIGHTS[1] + ", " + COLUMN_WEIGHTS[2] + "), s._id LIMIT ?";
+
+    /* Scores only, the student rows of the best matches are read after with SELECT_FTS4_ROWS */
+    private static final String SEARCH_FTS4 = "SELECT docid, matchinfo(student_fts, 'pcx') FROM student_fts WHERE student_fts MATCH ?";
+    private static final String SELECT_FTS4_ROWS = "SELECT _id, firstName, lastName, rollNumber, pictureHash FROM student WHERE _id IN ";
+
+    /* Worst match first, the head of the top-N heap is the one to drop */
+    private static final Comparator<ScoredId> WORST_FIRST = new Comparator<ScoredId>() {
+        @Override
+        public int compare(ScoredId first, ScoredId second) {
+            int byScore = Double.compare(first.score, second.score);
+            return byScore != 0 ? byScore : Long.compare(second.id, first.id);
+        }
+    };
+
+    private SQLiteFullTextSearch() {
+        throw new UnsupportedOperationException("You can't create instance of Util class. Please use as static..");
+    }
+
+    /**
+     * Create the index with FTS5, or FTS4 when FTS5 is not available, its triggers, and index
+     * the rows already in the student table.
+     */
+    static void create(SQLiteDatabase sqLiteDatabase) {
+        String[] triggers;
+        try
+        {
+            sqLiteDatabase.execSQL(CREATE_FTS5);
+            triggers = TRIGGERS_FTS5;
+        }
+        catch (SQLiteException sqLiteException)
+        {
+            LogcatUtils.informationMessage(TAG, "FTS5 not available, falling back to FTS4 : " + sqLiteException.getMessage());
+            sqLiteDatabase.execSQL(CREATE_FTS4);
+            triggers = TRIGGERS_FTS4;
+        }
+
+        for (String trigger : triggers)
+        {
+            sqLiteDatabase.execSQL(trigger);
+        }
+        sqLiteDatabase.execSQL("INSERT INTO student_fts (student_fts) VALUES ('rebuild')");
+    }
+
+    /**
+     * Reads sqlite_master, use {@link SQLiteConnectionManager#isFts5()} which asks once per connection.
+     */
+    static boolean isFts5(SQLiteDatabase sqLiteDatabase) {
+        Cursor cursor = sqLiteDatabase.rawQuery(SELECT_MODULE, null);
+        try
+        {
+            return cursor.moveToFirst() && cursor.getString(0).toLowerCase().contains("fts5");
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Turn what the user typed into a MATCH expression where every token must match as a prefix.
+     * Tokens are quoted so that FTS keywords (AND, OR, NEAR...) in the text are searched as words.
+     *
+     * @param fts5 FTS5 puts the prefix star after the quotes, FTS4 inside them
+     * @return the expression, null when the text has no token
+     */
+    public static String buildMatchQuery(String text, boolean fts5) {
+        StringBuilder matchQuery = new StringBuilder();
+        for (String token : tokenize(text))
+        {
+            if (matchQuery.length() > 0)
+            {
+                matchQuery.append(' ');
+            }
+            matchQuery.append('"').append(token).append(fts5 ? "\"*" : "*\"");
+        }
+        return matchQuery.length() > 0 ? matchQuery.toString() : null;
+    }
+
+    /**
+     * Split text the way the unicode61 tokenizer does : on every character that is not a letter or
+     * a digit, lower case and without diacritics.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<String>();
+        if (text == null)
+        {
+            return tokens;
+        }
+        /* Decomposed, the diacritics are combining marks of their own */
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        for (String token : folded.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+        {
+            if (!token.isEmpty())
+            {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * In memory equivalent of the MATCH expression of {@link #buildMatchQuery}, every query token
+     * is the prefix of a token of firstName, lastName or rollNumber.
+     */
+    public static boolean matches(Student student, List<String> queryTokens) {
+        List<String> tokens = new ArrayList<String>();
+        tokens.addAll(tokenize(student.getFirstName()));
+        tokens.addAll(tokenize(student.getLastName()));
+        tokens.addAll(tokenize(student.getRollNumber()));
+
+        for (String queryToken : queryTokens)
+        {
+            boolean found = false;
+            for (String token : tokens)
+            {
+                if (token.startsWith(queryToken))
+                {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param fts5 module of the index, see {@link SQLiteConnectionManager#isFts5()}
+     * @param cancellationSignal may be null, a cancelled search throws OperationCanceledException
+     * @return at most limit students matching every token of text, best match first
+     */
+    static ArrayList<Student> search(SQLiteDatabase sqLiteDatabase, boolean fts5, String text, int limit, CancellationSignal cancellationSignal) {
+        ArrayList<Student> students = new ArrayList<Student>();
+        String matchQuery = buildMatchQuery(text, fts5);
+        if (matchQuery == null || limit <= 0)
+        {
+            return students;
+        }
+
+        if (fts5)
+        {
+            Cursor cursor = sqLiteDatabase.rawQuery(SEARCH_FTS5, new String[]{matchQuery, String.valueOf(limit)}, cancellationSignal);
+            try
+            {
+                StudentTable.MAPPER.mapAll(cursor, students);
+            }
+            finally
+            {
+                cursor.close();
+            }
+            return students;
+        }
+
+        /*
+         * FTS4 has no rank function : score every match from matchinfo() without reading its
+         * student row, keep the limit best ones in a heap, then read only those rows.
+         */
+        PriorityQueue<ScoredId> best = new PriorityQueue<ScoredId>(limit + 1, WORST_FIRST);
+        Cursor cursor = sqLiteDatabase.rawQuery(SEARCH_FTS4, new String[]{matchQuery}, cancellationSignal);
+        try
+        {
+            while (cursor.moveToNext())
+            {
+                if (cancellationSignal != null)
+                {
+                    cancellationSignal.throwIfCanceled();
+                }
+                ScoredId match = new ScoredId(cursor.getLong(0), score(cursor.getBlob(1)));
+                if (best.size() < limit)
+                {
+                    best.add(match);
+                }
+                else if (WORST_FIRST.compare(match, best.peek()) > 0)
+                {
+                    best.poll();
+                    best.add(match);
+                }
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+        if (best.isEmpty())
+        {
+            return students;
+        }
+
+        List<ScoredId> ranked = new ArrayList<ScoredId>(best);
+        Collections.sort(ranked, Collections.reverseOrder(WORST_FIRST));
+
+        /* Ids are numbers, inlined instead of one bind argument each */
+        StringBuilder inClause = new StringBuilder("(");
+        for (ScoredId match : ranked)
+        {
+            if (inClause.length() > 1)
+            {
+                inClause.append(", ");
+            }
+            inClause.append(match.id);
+        }
+        inClause.append(')');
+
+        ArrayList<Student> rows = new ArrayList<Student>(ranked.size());
+        cursor = sqLiteDatabase.rawQuery(SELECT_FTS4_ROWS + inClause, null, cancellationSignal);
+        try
+        {
+            StudentTable.MAPPER.mapAll(cursor, rows);
+        }
+        finally
+        {
+            cursor.close();
+        }
+
+        HashMap<Long, Student> rowsById = new HashMap<Long, Student>();
+        for (Student row : rows)
+        {
+            rowsById.put((long) row.getId(), row);
+        }
+        for (ScoredId match : ranked)
+        {
+            /* Missing when deleted in between */
+            Student student = rowsById.get(match.id);
+            if (student != null)
+            {
+                students.add(student);
+            }
+        }
+        return students;
+    }
+
+    /**
+     * Sum over phrases and columns of the column weight times the share of the phrase hits of the
+     * whole table found in this row, from matchinfo() 'pcx' : phrase count, column count, then
+     * (hits in row, hits in all rows, rows with hits) per phrase and column.
+     */
+    private static double score(byte[] matchInfo) {
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phraseCount = buffer.getInt(0);
+        int columnCount = buffer.getInt(4);
+
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int offset          = 8 + (phrase * columnCount + column) * 12;
+                int hitsInRow       = buffer.getInt(offset);
+                int hitsInAllRows   = buffer.getInt(offset + 4);
+                if (hitsInRow > 0 && hitsInAllRows > 0)
+                {
+                    double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1.0;
+                    score += weight * hitsInRow / hitsInAllRows;
+                }
+            }
+        }
+        return score;
+    }
+
+    private static class ScoredId {
+
+        private final long id;
+        private final double score;
+
+        ScoredId(long id, double score) {
+            this.id     = id;
+            this.score  = score;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.sqlite.tutorial.sqlite;
+
+/**
+ * Row ids of the AUTOINCREMENT tables without reading their rows.
+ *
+ * The last id is MAX(_id), a single seek to the end of the rowid B-tree. SQLite gives the next
+ * insert the larger of MAX(_id) and the sqlite_sequence entry plus one, so moving the entry
+ * forward reserves the ids in between : later inserts skip them and the caller can insert rows
+ * with those ids, e.g., a bulk import that needs the ids before the rows are written.
+ */
+public class SQLiteIds {
+
+    /* Binds the table name, 0 when the table never had a row */
+    static final String SELECT_SEQUENCE = "SELECT IFNULL((SELECT seq FROM sqlite_sequence WHERE name = ?), 0)";
+
+    /* Binds the new sequence then the table name */
+    static final String UPDATE_SEQUENCE = "UPDATE sqlite_sequence SET seq = ? WHERE name = ?";
+
+    /* Binds the table name then the new sequence */
+    static final String INSERT_SEQUENCE = "INSERT INTO sqlite_sequence (name, seq) VALUES (?, ?)";
+
+    private SQLiteIds() {
+        throw new UnsupportedOperationException("You can't create instance of Util class. Please use as static..");
+    }
+
+    /**
+     * @return query of the largest id of the table, 0 when it is empty
+     */
+    static String selectLastId(String tableName) {
+        return "SELECT IFNULL(MAX(_id), 0) FROM " + tableName;
+    }
+}
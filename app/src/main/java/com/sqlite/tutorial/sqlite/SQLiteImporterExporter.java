@@ -2,23 +2,50 @@ package com.sqlite.tutorial.sqlite;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.ParcelFileDescriptor;
 import com.sqlite.tutorial.utilities.LogcatUtils;
 import java.io.File;
-import java.io.FileDescriptor;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SyncFailedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class SQLiteImporterExporter {
 
     private static final String TAG = SQLiteImporterExporter.class.getSimpleName();
 
+    /* Imports are copied with transferFrom calls of at most this size */
+    private static final long IMPORT_TRANSFER_SIZE = 8 * 1024 * 1024;
+
+    /* First 16 bytes of every SQLite 3 database file */
+    private static final byte[] SQLITE_HEADER = {'S', 'Q', 'L', 'i', 't', 'e', ' ', 'f', 'o', 'r', 'm', 'a', 't', ' ', '3', 0};
+
+    /* Exports are copied to the document provider in chunks of this size */
+    private static final int EXPORT_BUFFER_SIZE = 1024 * 1024;
+
+    /* Streams snapshots to document providers, off the writer thread */
+    private static final ExecutorService EXPORT_EXECUTOR = Executors.newSingleThreadExecutor();
+
     @SuppressLint("StaticFieldLeak")
     private static SQLiteImporterExporter instance;
 
@@ -34,6 +61,7 @@ public class SQLiteImporterExporter {
     }
 
     private Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     public SQLiteDatabaseHelper sqLiteDatabaseHelper;
     private SQLiteDatabase sqLiteDatabase;
@@ -73,152 +101,414 @@ public class SQLiteImporterExporter {
         return databaseFile.exists();
     }
 
+    /**
+     * Replace the database with assets/databases/{@link #DATABASE_NAME}, see {@link #importDataBase(Uri)}.
+     */
     public void importDataBaseFromAssets() {
-        InputStream inputStream = null;
-        OutputStream outputStream = null;
+        importDataBase(new SourceOpener() {
+            @Override
+            public ImportSource open() throws IOException {
+                String assetName = "databases/" + DATABASE_NAME;
+                try
+                {
+                    /* Stored uncompressed, the asset is a region of the APK : its channel starts at the region */
+                    AssetFileDescriptor assetFileDescriptor = context.getAssets().openFd(assetName);
+                    return new ImportSource(assetFileDescriptor.createInputStream().getChannel(), assetFileDescriptor.getLength());
+                }
+                catch (FileNotFoundException fileNotFoundException)
+                {
+                    /* Compressed in the APK, openFd() only works for stored entries */
+                    return new ImportSource(Channels.newChannel(context.getAssets().open(assetName)), -1);
+                }
+            }
+        });
+    }
 
+    /**
+     * Replace the database with the file at the Uri.
+     *
+     * The file is copied next to the database, checked to be a SQLite database that passes
+     * PRAGMA integrity_check and is not newer than {@link SQLiteDatabaseConstants#DATABASE_VERSION},
+     * and only then renamed over the database, so a bad or truncated file leaves the database
+     * untouched. Runs on the writer thread, {@link #importListener} is told on the main thread.
+     *
+     * @param sourceUri
+     *            - here currently SQLite file exist, Existing DB Path
+     *            - e.g., Environment.getExternalStorageDirectory().getAbsolutePath() + "/";
+     */
+    public void importDataBase(final Uri sourceUri) {
+        importDataBase(new SourceOpener() {
+            @Override
+            public ImportSource open() throws IOException {
+                ParcelFileDescriptor parcelFileDescriptor = context.getContentResolver().openFileDescriptor(sourceUri, "r");
+                if (parcelFileDescriptor == null)
+                {
+                    throw new IOException("Unable to open " + sourceUri);
+                }
+                /* Closes the descriptor with the channel */
+                return new ImportSource(new ParcelFileDescriptor.AutoCloseInputStream(parcelFileDescriptor).getChannel(),
+                        parcelFileDescriptor.getStatSize());
+            }
+        });
+    }
+
+    private void importDataBase(final SourceOpener sourceOpener) {
+        SQLiteDatabaseExecutor.getInstance().write(new Callable<String>() {
+            @Override
+            public String call() throws IOException, InterruptedException {
+                File databaseFile = new File(DATABASE_PATH + DATABASE_NAME);
+                /* Same directory, so that the rename cannot cross file systems */
+                File importFile = new File(DATABASE_PATH + DATABASE_NAME + ".import");
+                try
+                {
+                    long startTime = System.nanoTime();
+                    long bytes = copyToFile(sourceOpener, importFile);
+                    long copyMillis = Math.max(1, (System.nanoTime() - startTime) / 1000000L);
+                    validate(importFile);
+
+                    /* Writes are queued behind this task, wait for the readers before closing the connection they share */
+                    SQLiteConnectionManager connectionManager = SQLiteConnectionManager.getInstance(context);
+                    if (!connectionManager.quiesce(SQLiteDatabaseConstants.QUIESCE_TIMEOUT_MILLIS))
+                    {
+                        throw new IOException("Database still in use, not imported");
+                    }
+                    try
+                    {
+                        discardWalFiles();
+                        if (!importFile.renameTo(databaseFile))
+                        {
+                            throw new IOException("Unable to rename " + importFile + " to " + databaseFile);
+                        }
+                    }
+                    finally
+                    {
+                        connectionManager.resume();
+                    }
+                    SQLiteDatabaseOperation.getInstance(context).onDatabaseReplaced();
+
+                    double megabytes = bytes / (1024.0 * 1024.0);
+                    LogcatUtils.informationMessage(TAG, String.format(Locale.US, "importDataBase() : %.2f MB copied in %d ms (%.2f MB/s, %.2f ms/MB), imported in %d ms",
+                            megabytes, copyMillis, megabytes * 1000 / copyMillis, copyMillis / Math.max(megabytes, 0.001),
+                            (System.nanoTime() - startTime) / 1000000L));
+                    return "Successfully Imported";
+                }
+                finally
+                {
+                    SQLiteSnapshot.deleteWithSideFiles(importFile);
+                }
+            }
+        }, new SQLiteDatabaseExecutor.Callback<String>() {
+            @Override
+            public void onSuccess(String message) {
+                if (importListener != null)
+                    importListener.onSuccess(message);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                if (importListener != null)
+                    importListener.onFailure(exception);
+            }
+        });
+    }
+
+    /**
+     * @return bytes copied
+     */
+    private long copyToFile(SourceOpener sourceOpener, File destination) throws IOException {
+        ImportSource importSource       = sourceOpener.open();
+        FileChannel destinationChannel  = null;
         try
         {
-            this.open();
-
-            inputStream = context.getAssets().open("databases/"+DATABASE_NAME);
-            String outFileName = DATABASE_PATH + DATABASE_NAME;
-            outputStream = new FileOutputStream(outFileName);
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = inputStream.read(buffer)) > 0)
+            destinationChannel = new FileOutputStream(destination).getChannel();
+            long position = 0;
+            while (importSource.length < 0 || position < importSource.length)
             {
-                outputStream.write(buffer, 0, length);
+                long count = importSource.length < 0 ? IMPORT_TRANSFER_SIZE : Math.min(IMPORT_TRANSFER_SIZE, importSource.length - position);
+                /* Fewer bytes than asked only at the end of the source */
+                long transferred = destinationChannel.transferFrom(importSource.channel, position, count);
+                if (transferred <= 0)
+                {
+                    break;
+                }
+                position += transferred;
             }
-
-            if (importListener != null)
-                importListener.onSuccess("Successfully Imported");
-        }
-        catch (Exception e) {
-            if (importListener != null)
-                importListener.onFailure(e);
+            destinationChannel.force(true);
+            return position;
         }
         finally
         {
-            try
+            importSource.channel.close();
+            if (destinationChannel != null)
             {
-                outputStream.flush();
-                outputStream.close();
-                inputStream.close();
-                this.close();
-            }
-            catch (IOException iOException)
-            {
-                if (importListener != null)
-                    importListener.onFailure(iOException);
+                destinationChannel.close();
             }
         }
     }
 
     /**
-     * Import SQLite file on database folder
-     *
-     * @param sourceUri
-     *            - here currently SQLite file exist, Existing DB Path
-     *            - e.g., Environment.getExternalStorageDirectory().getAbsolutePath() + "/";
+     * @throws IOException when the file is not a SQLite database this version of the app can open
      */
-    public void importDataBase(Uri sourceUri) {
-        InputStream inputStream = null;
-        OutputStream outputStream = null;
-
-        ParcelFileDescriptor parcelFileDescriptor;
+    private static void validate(File file) throws IOException {
+        byte[] header = new byte[SQLITE_HEADER.length];
+        FileInputStream inputStream = new FileInputStream(file);
         try
         {
-            this.open();
-
-            parcelFileDescriptor = context.getContentResolver().openFileDescriptor(sourceUri, "r");
-            assert parcelFileDescriptor != null;
-            FileDescriptor fileDescriptor = parcelFileDescriptor.getFileDescriptor();
-            inputStream = new FileInputStream(fileDescriptor);
-            String outFileName = DATABASE_PATH + DATABASE_NAME;
-            outputStream = new FileOutputStream(outFileName);
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = inputStream.read(buffer)) > 0) {
-                outputStream.write(buffer, 0, length);
+            if (inputStream.read(header) != header.length || !Arrays.equals(header, SQLITE_HEADER))
+            {
+                throw new IOException("Not a SQLite database");
             }
+        }
+        finally
+        {
+            inputStream.close();
+        }
 
-            if (importListener != null)
-                importListener.onSuccess("Successfully Imported");
+        SQLiteDatabase database;
+        try
+        {
+            /* Read only and without android_metadata, checking the file must not write to it */
+            database = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
         }
-        catch (Exception e)
+        catch (SQLiteException sqLiteException)
         {
-            if (importListener != null)
-                importListener.onFailure(e);
+            throw new IOException("Unable to open the imported database", sqLiteException);
         }
-        finally {
+        try
+        {
+            if (database.getVersion() > SQLiteDatabaseConstants.DATABASE_VERSION)
+            {
+                throw new IOException("Database version " + database.getVersion() + " is newer than " + SQLiteDatabaseConstants.DATABASE_VERSION);
+            }
+
+            Cursor cursor = database.rawQuery("PRAGMA integrity_check", null);
             try
             {
-                outputStream.flush();
-                outputStream.close();
-                inputStream.close();
-                this.close();
+                /* A single "ok" row, or one row per problem */
+                if (!cursor.moveToFirst() || !"ok".equalsIgnoreCase(cursor.getString(0)))
+                {
+                    throw new IOException("Integrity check failed : " + (cursor.getCount() > 0 ? cursor.getString(0) : "no result"));
+                }
             }
-            catch (IOException iOException)
+            finally
             {
-                if (importListener != null)
-                    importListener.onFailure(iOException);
+                cursor.close();
             }
         }
+        catch (SQLiteException sqLiteException)
+        {
+            throw new IOException("Imported database is corrupt", sqLiteException);
+        }
+        finally
+        {
+            database.close();
+        }
     }
 
     /**
      * Export SQLite file on database folder
      *
-     * @param sourceUri
+     * @param destinationUri
      *            - where to export, Copy DB Path
      *            - e.g., Environment.getExternalStorageDirectory().getAbsolutePath() + "/";
      */
-    public void exportDataBase(Uri sourceUri) {
-        InputStream inputStream = null;
-        OutputStream outputStream = null;
+    public void exportDataBase(Uri destinationUri) {
+        exportDataBase(destinationUri, null);
+    }
 
-        ParcelFileDescriptor parcelFileDescriptor;
+    /**
+     * Export a consistent snapshot of the database, see {@link SQLiteSnapshot}. The snapshot is
+     * taken on the writer thread, then streamed to the destination on an export thread so that
+     * a slow document provider does not hold up writes. {@link #exportListener} is told on the
+     * main thread.
+     *
+     * @param destinationUri where to write the database
+     * @param checksumUri where to write the SHA-256 of the exported bytes, in sha256sum format, may be null
+     */
+    public void exportDataBase(final Uri destinationUri, final Uri checksumUri) {
+        /* A file of its own, exports started back to back must not share their snapshot */
+        final File snapshotFile;
         try
         {
-            parcelFileDescriptor = context.getContentResolver().openFileDescriptor(sourceUri, "w");
-            assert parcelFileDescriptor != null;
-            FileDescriptor fileDescriptor = parcelFileDescriptor.getFileDescriptor();
-
-            String inFileName = DATABASE_PATH + DATABASE_NAME;
-            inputStream = new FileInputStream(inFileName);
-            //String outFileName = destinationPath + "/"+ DATABASE_NAME;
-            outputStream = new FileOutputStream(fileDescriptor);
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = inputStream.read(buffer)) > 0) {
-                outputStream.write(buffer, 0, length);
+            snapshotFile = File.createTempFile(DATABASE_NAME + "-", ".export", context.getCacheDir());
+        }
+        catch (IOException exception)
+        {
+            postExportFailure(exception);
+            return;
+        }
+        final long startTime = System.nanoTime();
+
+        SQLiteDatabaseExecutor.getInstance().write(new Callable<SQLiteSnapshot.Method>() {
+            @Override
+            public SQLiteSnapshot.Method call() throws IOException {
+                return SQLiteSnapshot.take(SQLiteConnectionManager.getInstance(context), snapshotFile);
+            }
+        }, new SQLiteDatabaseExecutor.Callback<SQLiteSnapshot.Method>() {
+            @Override
+            public void onSuccess(final SQLiteSnapshot.Method method) {
+                EXPORT_EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try
+                        {
+                            String checksum = stream(snapshotFile, destinationUri);
+                            if (checksumUri != null)
+                            {
+                                writeChecksum(checksumUri, checksum);
+                            }
+                            LogcatUtils.informationMessage(TAG, "exportDataBase() : " + method + ", " + snapshotFile.length()
+                                    + " bytes in " + (System.nanoTime() - startTime) / 1000000L + " ms, sha256 " + checksum);
+                            postExportSuccess("Successfully Exported");
+                        }
+                        catch (Exception exception)
+                        {
+                            postExportFailure(exception);
+                        }
+                        finally
+                        {
+                            SQLiteSnapshot.deleteWithSideFiles(snapshotFile);
+                        }
+                    }
+                });
             }
 
-            if (exportListener != null)
-                exportListener.onSuccess("Successfully Exported");
+            @Override
+            public void onFailure(Exception exception) {
+                SQLiteSnapshot.deleteWithSideFiles(snapshotFile);
+                if (exportListener != null)
+                    exportListener.onFailure(exception);
+            }
+        });
+    }
+
+    /**
+     * Copy the file to the Uri through one direct buffer, which also feeds the digest.
+     *
+     * @return lower case hex SHA-256 of the written bytes
+     */
+    private String stream(File source, Uri destinationUri) throws IOException, NoSuchAlgorithmException {
+        ParcelFileDescriptor parcelFileDescriptor = context.getContentResolver().openFileDescriptor(destinationUri, "w");
+        if (parcelFileDescriptor == null)
+        {
+            throw new IOException("Unable to open " + destinationUri);
         }
-        catch (Exception e)
+
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(EXPORT_BUFFER_SIZE);
+        FileChannel sourceChannel       = new FileInputStream(source).getChannel();
+        FileOutputStream outputStream   = new FileOutputStream(parcelFileDescriptor.getFileDescriptor());
+        FileChannel destinationChannel  = outputStream.getChannel();
+        try
         {
-            if (exportListener != null)
-                exportListener.onFailure(e);
+            long totalBytes = sourceChannel.size();
+            long bytesWritten = 0;
+            while (sourceChannel.read(buffer) != -1)
+            {
+                buffer.flip();
+                messageDigest.update(buffer.duplicate());
+                while (buffer.hasRemaining())
+                {
+                    bytesWritten += destinationChannel.write(buffer);
+                }
+                buffer.clear();
+                postExportProgress(bytesWritten, totalBytes);
+            }
+            /* Not FileChannel.force(), a provider may hand out a pipe */
+            outputStream.getFD().sync();
+        }
+        catch (SyncFailedException syncFailedException)
+        {
+            LogcatUtils.warningMessage(TAG, "Unable to sync " + destinationUri);
         }
         finally
         {
-            try
-            {
-                outputStream.flush();
-                outputStream.close();
-                inputStream.close();
+            sourceChannel.close();
+            destinationChannel.close();
+            parcelFileDescriptor.close();
+        }
+        return SQLiteBlobStore.toHex(messageDigest.digest());
+    }
+
+    private void writeChecksum(Uri checksumUri, String checksum) throws IOException {
+        OutputStream outputStream = context.getContentResolver().openOutputStream(checksumUri, "w");
+        if (outputStream == null)
+        {
+            throw new IOException("Unable to open " + checksumUri);
+        }
+        try
+        {
+            outputStream.write((checksum + "  " + DATABASE_NAME + "\n").getBytes("UTF-8"));
+        }
+        finally
+        {
+            outputStream.close();
+        }
+    }
+
+    private void postExportProgress(final long bytesWritten, final long totalBytes) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (exportListener != null)
+                    exportListener.onProgress(bytesWritten, totalBytes);
             }
-            catch (Exception ex)
-            {
+        });
+    }
+
+    private void postExportSuccess(final String message) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (exportListener != null)
+                    exportListener.onSuccess(message);
+            }
+        });
+    }
+
+    private void postExportFailure(final Exception exception) {
+        LogcatUtils.errorMessage(TAG, "exportDataBase() failed", exception);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
                 if (exportListener != null)
-                    exportListener.onFailure(ex);
+                    exportListener.onFailure(exception);
+            }
+        });
+    }
+
+    /**
+     * The WAL of the database being replaced must not be replayed over the imported file : once
+     * the shared connection is closed, which checkpoints it, drop what is left of the WAL side files.
+     */
+    private void discardWalFiles() {
+        String databasePath = DATABASE_PATH + DATABASE_NAME;
+        for (String suffix : new String[]{"-wal", "-shm"})
+        {
+            File file = new File(databasePath + suffix);
+            if (file.exists() && !file.delete())
+            {
+                LogcatUtils.warningMessage(TAG, "Unable to delete " + file);
             }
         }
     }
 
+    private interface SourceOpener {
+        ImportSource open() throws IOException;
+    }
+
+    private static class ImportSource {
+
+        private final ReadableByteChannel channel;
+        /* -1 when unknown, read to the end of the channel */
+        private final long length;
+
+        ImportSource(ReadableByteChannel channel, long length) {
+            this.channel    = channel;
+            this.length     = length;
+        }
+    }
+
     public interface ImportListener {
         void onSuccess(String message);
         void onFailure(Exception exception);
@@ -227,6 +517,11 @@ public class SQLiteImporterExporter {
     public interface ExportListener {
         void onSuccess(String message);
         void onFailure(Exception exception);
+
+        /**
+         * Called on the main thread after every chunk written to the destination.
+         */
+        void onProgress(long bytesWritten, long totalBytes);
     }
 
     /**
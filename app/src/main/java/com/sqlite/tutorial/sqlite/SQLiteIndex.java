@@ -0,0 +1,63 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.text.TextUtils;
+
+/**
+ * Declarative definition of an index, see {@link SQLiteDatabaseConstants#INDEXES}.
+ */
+public class SQLiteIndex {
+
+    private final String name;
+    private final String tableName;
+    private final boolean unique;
+    private final String[] columns;
+
+    public SQLiteIndex(String name, String tableName, boolean unique, String... columns) {
+        this.name       = name;
+        this.tableName  = tableName;
+        this.unique     = unique;
+        this.columns    = columns;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    public String getCreateStatement() {
+        return getCreateStatement(unique);
+    }
+
+    /**
+     * @param unique false to build the plain index used when existing rows violate uniqueness
+     */
+    public String getCreateStatement(boolean unique) {
+        return "CREATE " + (unique ? "UNIQUE " : "") + "INDEX IF NOT EXISTS " + name +
+                " ON " + tableName + " (" + TextUtils.join(", ", columns) + ")";
+    }
+
+    public String getDropStatement() {
+        return "DROP INDEX IF EXISTS " + name;
+    }
+
+    @Override
+    public String toString() {
+        return "SQLiteIndex{" +
+                "name='" + name + '\'' +
+                ", tableName='" + tableName + '\'' +
+                ", unique=" + unique +
+                ", columns=" + TextUtils.join(",", columns) +
+                '}';
+    }
+}
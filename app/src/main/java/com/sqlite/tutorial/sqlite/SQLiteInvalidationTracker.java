@@ -0,0 +1,158 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.os.Handler;
+import android.os.Looper;
+import com.sqlite.tutorial.utilities.LogcatUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records the tables and row ids touched by every committed write of {@link SQLiteDatabaseOperation}
+ * and publishes them to {@link Observer}s, so that screens and caches can apply the changes
+ * instead of re-reading whole tables.
+ *
+ * Writes recorded within {@link #COALESCE_MILLIS} of each other are merged into one
+ * {@link SQLiteChangeEvent}, e.g., a bulk insert is delivered as a single event.
+ *
+ * Writes may be recorded on any thread. Observers are added, removed and called on the main thread.
+ */
+public class SQLiteInvalidationTracker {
+
+    private static final String TAG = SQLiteInvalidationTracker.class.getSimpleName();
+
+    /* Delay between the first recorded write and the event, later writes join the same event */
+    public static final long COALESCE_MILLIS = 50;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /* Observer -> tables it listens to, empty for every table, main thread only */
+    private final Map<Observer, Set<String>> observers = new LinkedHashMap<Observer, Set<String>>();
+
+    /* Guarded by this */
+    private SQLiteChangeEvent pendingEvent;
+
+    private final Runnable dispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+
+    /**
+     * @param tables tables the observer is told about, none for every table
+     */
+    public void addObserver(Observer observer, String... tables) {
+        observers.put(observer, new HashSet<String>(Arrays.asList(tables)));
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    void onInserted(String table, long rowId) {
+        if (rowId == -1)
+        {
+            return;
+        }
+        synchronized (this) {
+            getPendingEvent().recordInsert(table, rowId);
+        }
+    }
+
+    void onInserted(String table, long[] rowIds) {
+        synchronized (this) {
+            for (long rowId : rowIds)
+            {
+                if (rowId != -1)
+                {
+                    getPendingEvent().recordInsert(table, rowId);
+                }
+            }
+        }
+    }
+
+    void onUpdated(String table, Iterable<Long> rowIds) {
+        synchronized (this) {
+            for (Long rowId : rowIds)
+            {
+                getPendingEvent().recordUpdate(table, rowId);
+            }
+        }
+    }
+
+    void onDeleted(String table, Iterable<Long> rowIds) {
+        synchronized (this) {
+            for (Long rowId : rowIds)
+            {
+                getPendingEvent().recordDelete(table, rowId);
+            }
+        }
+    }
+
+    /**
+     * Rows of the table changed in a way that is not tracked row by row.
+     */
+    void onInvalidated(String table) {
+        synchronized (this) {
+            getPendingEvent().recordInvalidate(table);
+        }
+    }
+
+    /* Caller holds the lock */
+    private SQLiteChangeEvent getPendingEvent() {
+        if (pendingEvent == null)
+        {
+            pendingEvent = new SQLiteChangeEvent();
+            mainHandler.postDelayed(dispatchRunnable, COALESCE_MILLIS);
+        }
+        return pendingEvent;
+    }
+
+    private void dispatch() {
+        SQLiteChangeEvent event;
+        synchronized (this) {
+            event = pendingEvent;
+            pendingEvent = null;
+        }
+        if (event == null || event.isEmpty())
+        {
+            return;
+        }
+
+        LogcatUtils.debuggingMessage(TAG, "dispatch() : " + event);
+        /* Copy, an observer may remove itself */
+        for (Map.Entry<Observer, Set<String>> entry : new ArrayList<Map.Entry<Observer, Set<String>>>(observers.entrySet()))
+        {
+            if (isObserved(event, entry.getValue()))
+            {
+                entry.getKey().onChanged(event);
+            }
+        }
+    }
+
+    private static boolean isObserved(SQLiteChangeEvent event, Set<String> tables) {
+        if (tables.isEmpty())
+        {
+            return true;
+        }
+        for (String table : tables)
+        {
+            if (event.contains(table))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public interface Observer {
+        /**
+         * Called on the main thread once writes are committed.
+         */
+        void onChanged(SQLiteChangeEvent event);
+    }
+}
@@ -0,0 +1,36 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * One schema step from {@link #getStartVersion()} to {@link #getEndVersion()}, registered in
+ * {@link SQLiteMigrations#ALL}. A step must keep existing rows, it is run inside its own transaction.
+ */
+public abstract class SQLiteMigration {
+
+    private final int startVersion;
+    private final int endVersion;
+
+    public SQLiteMigration(int startVersion, int endVersion) {
+        if (endVersion <= startVersion) {
+            throw new IllegalArgumentException("endVersion must be greater than startVersion");
+        }
+        this.startVersion   = startVersion;
+        this.endVersion     = endVersion;
+    }
+
+    public int getStartVersion() {
+        return startVersion;
+    }
+
+    public int getEndVersion() {
+        return endVersion;
+    }
+
+    public abstract void migrate(SQLiteDatabase sqLiteDatabase);
+
+    @Override
+    public String toString() {
+        return "SQLiteMigration{" + startVersion + " -> " + endVersion + '}';
+    }
+}
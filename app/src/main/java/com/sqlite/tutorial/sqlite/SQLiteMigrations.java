@@ -0,0 +1,340 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import com.sqlite.tutorial.utilities.LogcatUtils;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registry of every {@link SQLiteMigration}, used by {@link SQLiteDatabaseHelper#onUpgrade}.
+ *
+ * When the schema changes : raise {@link SQLiteDatabaseConstants#DATABASE_VERSION}, update the
+ * CREATE statements used by onCreate and add the step that brings the previous version to
+ * the new one here. Never edit a step that has been released.
+ */
+public class SQLiteMigrations {
+
+    private static final String TAG = SQLiteMigrations.class.getSimpleName();
+
+    private SQLiteMigrations() {
+        throw new UnsupportedOperationException("You can't create instance of Util class. Please use as static..");
+    }
+
+    /*
+     * Schema of the released steps, frozen : the live CREATE statements of SQLiteFullTextSearch
+     * and RowCounts describe the latest version and may change, a step must keep creating the
+     * schema of its own version.
+     */
+    private static final String V5_CREATE_FTS5 = "CREATE VIRTUAL TABLE IF NOT EXISTS student_fts USING fts5(firstName, lastName, rollNumber, content='student', content_rowid='_id', prefix='1 2 3')";
+    private static final String[] V5_TRIGGERS_FTS5 = {
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_on_student_insert AFTER INSERT ON student BEGIN" +
+                    " INSERT INTO student_fts (rowid, firstName, lastName, rollNumber) VALUES (NEW._id, NEW.firstName, NEW.lastName, NEW.rollNumber); END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_on_student_delete AFTER DELETE ON student BEGIN" +
+                    " INSERT INTO student_fts (student_fts, rowid, firstName, lastName, rollNumber) VALUES ('delete', OLD._id, OLD.firstName, OLD.lastName, OLD.rollNumber); END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_on_student_update AFTER UPDATE OF firstName, lastName, rollNumber ON student BEGIN" +
+                    " INSERT INTO student_fts (student_fts, rowid, firstName, lastName, rollNumber) VALUES ('delete', OLD._id, OLD.firstName, OLD.lastName, OLD.rollNumber);" +
+                    " INSERT INTO student_fts (rowid, firstName, lastName, rollNumber) VALUES (NEW._id, NEW.firstName, NEW.lastName, NEW.rollNumber); END"
+    };
+    private static final String V5_CREATE_FTS4 = "CREATE VIRTUAL TABLE IF NOT EXISTS student_fts USING fts4(firstName, lastName, rollNumber, content='student', prefix='1,2,3')";
+    private static final String[] V5_TRIGGERS_FTS4 = {
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_on_student_insert AFTER INSERT ON student BEGIN" +
+                    " INSERT INTO student_fts (docid, firstName, lastName, rollNumber) VALUES (NEW._id, NEW.firstName, NEW.lastName, NEW.rollNumber); END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_on_student_delete BEFORE DELETE ON student BEGIN" +
+                    " DELETE FROM student_fts WHERE docid = OLD._id; END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_before_student_update BEFORE UPDATE OF firstName, lastName, rollNumber ON student BEGIN" +
+                    " DELETE FROM student_fts WHERE docid = OLD._id; END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_student_fts_after_student_update AFTER UPDATE OF firstName, lastName, rollNumber ON student BEGIN" +
+                    " INSERT INTO student_fts (docid, firstName, lastName, rollNumber) VALUES (NEW._id, NEW.firstName, NEW.lastName, NEW.rollNumber); END"
+    };
+
+    private static final String V6_CREATE_ROW_COUNT = "CREATE TABLE IF NOT EXISTS row_count (table_name TEXT NOT NULL, prefix TEXT NOT NULL, count INTEGER NOT NULL," +
+            " PRIMARY KEY (table_name, prefix)) WITHOUT ROWID";
+    private static final String[] V6_TRIGGERS_ROW_COUNT = {
+            "CREATE TRIGGER IF NOT EXISTS trigger_row_count_on_student_insert AFTER INSERT ON student BEGIN" +
+                    " INSERT OR IGNORE INTO row_count (table_name, prefix, count) VALUES ('student', '', 0);" +
+                    " UPDATE row_count SET count = count + 1 WHERE table_name = 'student' AND prefix = '';" +
+                    " INSERT OR IGNORE INTO row_count (table_name, prefix, count) VALUES ('student', CASE WHEN NEW.firstName IS NULL OR NEW.firstName = '' THEN '#' ELSE UPPER(SUBSTR(NEW.firstName, 1, 1)) END, 0);" +
+                    " UPDATE row_count SET count = count + 1 WHERE table_name = 'student' AND prefix = CASE WHEN NEW.firstName IS NULL OR NEW.firstName = '' THEN '#' ELSE UPPER(SUBSTR(NEW.firstName, 1, 1)) END; END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_row_count_on_student_delete AFTER DELETE ON student BEGIN" +
+                    " UPDATE row_count SET count = count - 1 WHERE table_name = 'student' AND prefix = '';" +
+                    " UPDATE row_count SET count = count - 1 WHERE table_name = 'student' AND prefix = CASE WHEN OLD.firstName IS NULL OR OLD.firstName = '' THEN '#' ELSE UPPER(SUBSTR(OLD.firstName, 1, 1)) END; END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_row_count_on_student_update AFTER UPDATE OF firstName ON student" +
+                    " WHEN CASE WHEN OLD.firstName IS NULL OR OLD.firstName = '' THEN '#' ELSE UPPER(SUBSTR(OLD.firstName, 1, 1)) END" +
+                    " IS NOT CASE WHEN NEW.firstName IS NULL OR NEW.firstName = '' THEN '#' ELSE UPPER(SUBSTR(NEW.firstName, 1, 1)) END BEGIN" +
+                    " UPDATE row_count SET count = count - 1 WHERE table_name = 'student' AND prefix = CASE WHEN OLD.firstName IS NULL OR OLD.firstName = '' THEN '#' ELSE UPPER(SUBSTR(OLD.firstName, 1, 1)) END;" +
+                    " INSERT OR IGNORE INTO row_count (table_name, prefix, count) VALUES ('student', CASE WHEN NEW.firstName IS NULL OR NEW.firstName = '' THEN '#' ELSE UPPER(SUBSTR(NEW.firstName, 1, 1)) END, 0);" +
+                    " UPDATE row_count SET count = count + 1 WHERE table_name = 'student' AND prefix = CASE WHEN NEW.firstName IS NULL OR NEW.firstName = '' THEN '#' ELSE UPPER(SUBSTR(NEW.firstName, 1, 1)) END; END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_row_count_on_user_insert AFTER INSERT ON user BEGIN" +
+                    " INSERT OR IGNORE INTO row_count (table_name, prefix, count) VALUES ('user', '', 0);" +
+                    " UPDATE row_count SET count = count + 1 WHERE table_name = 'user' AND prefix = ''; END",
+            "CREATE TRIGGER IF NOT EXISTS trigger_row_count_on_user_delete AFTER DELETE ON user BEGIN" +
+                    " UPDATE row_count SET count = count - 1 WHERE table_name = 'user' AND prefix = ''; END"
+    };
+    private static final String[] V6_COUNT_ROWS = {
+            "DELETE FROM row_count",
+            "INSERT INTO row_count (table_name, prefix, count)" +
+                    " SELECT 'student', '', COUNT(*) FROM student",
+            "INSERT INTO row_count (table_name, prefix, count)" +
+                    " SELECT 'student', CASE WHEN student.firstName IS NULL OR student.firstName = '' THEN '#' ELSE UPPER(SUBSTR(student.firstName, 1, 1)) END, COUNT(*) FROM student GROUP BY 2",
+            "INSERT INTO row_count (table_name, prefix, count)" +
+                    " SELECT 'user', '', COUNT(*) FROM user"
+    };
+
+    /* Triggers of both modules, either may have been created by version 5 */
+    private static final String[] V7_DROP_FTS = {
+            "DROP TRIGGER IF EXISTS trigger_student_fts_on_student_insert",
+            "DROP TRIGGER IF EXISTS trigger_student_fts_on_student_delete",
+            "DROP TRIGGER IF EXISTS trigger_student_fts_on_student_update",
+            "DROP TRIGGER IF EXISTS trigger_student_fts_before_student_update",
+            "DROP TRIGGER IF EXISTS trigger_student_fts_after_student_update",
+            "DROP TABLE IF EXISTS student_fts"
+    };
+    private static final String V7_CREATE_FTS5 = "CREATE VIRTUAL TABLE IF NOT EXISTS student_fts USING fts5(firstName, lastName, rollNumber, content='student', content_rowid='_id', prefix='1 2 3', tokenize='unicode61 remove_diacritics 1')";
+    private static final String V7_CREATE_FTS4 = "CREATE VIRTUAL TABLE IF NOT EXISTS student_fts USING fts4(firstName, lastName, rollNumber, content='student', prefix='1,2,3', tokenize=unicode61 \"remove_diacritics=1\")";
+
+    /* Version 2 : unique indexes on student.rollNumber and user.email */
+    public static final SQLiteMigration MIGRATION_1_2 = new SQLiteMigration(1, 2) {
+        @Override
+        public void migrate(SQLiteDatabase sqLiteDatabase) {
+            SQLiteDatabaseHelper.createIndex(sqLiteDatabase, SQLiteDatabaseConstants.INDEX_TABLE_1_ROLL_NUMBER);
+            SQLiteDatabaseHelper.createIndex(sqLiteDatabase, SQLiteDatabaseConstants.INDEX_TABLE_2_EMAIL);
+        }
+    };
+
+    /* Version 3 : pictures move from student.picture to the content addressed picture table, student keeps pictureHash */
+    public static final SQLiteMigration MIGRATION_2_3 = new SQLiteMigration(2, 3) {
+        @Override
+        public void migrate(SQLiteDatabase sqLiteDatabase) {
+            sqLiteDatabase.execSQL("CREATE TABLE IF NOT EXISTS picture (hash TEXT PRIMARY KEY NOT NULL, data BLOB NOT NULL)");
+            sqLiteDatabase.execSQL("CREATE TABLE student_v3 (_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, firstName TEXT, lastName TEXT, rollNumber TEXT, pictureHash TEXT)");
+
+            SQLiteStatement insertPicture = sqLiteDatabase.compileStatement("INSERT OR IGNORE INTO picture (hash, data) VALUES (?, ?)");
+            SQLiteStatement insertStudent = sqLiteDatabase.compileStatement("INSERT INTO student_v3 (_id, firstName, lastName, rollNumber, pictureHash) VALUES (?, ?, ?, ?, ?)");
+            Cursor cursor = sqLiteDatabase.rawQuery("SELECT _id, firstName, lastName, rollNumber, picture FROM student", null);
+            try
+            {
+                while (cursor.moveToNext())
+                {
+                    /* insertSecondWay() used to store byte[].toString() as TEXT, that is not a picture */
+                    String hash = null;
+                    if (cursor.getType(4) == Cursor.FIELD_TYPE_BLOB)
+                    {
+                        hash = SQLiteBlobStore.put(insertPicture, cursor.getBlob(4));
+                    }
+
+                    insertStudent.clearBindings();
+                    insertStudent.bindLong(1, cursor.getLong(0));
+                    DatabaseUtils.bindObjectToProgram(insertStudent, 2, cursor.getString(1));
+                    DatabaseUtils.bindObjectToProgram(insertStudent, 3, cursor.getString(2));
+                    DatabaseUtils.bindObjectToProgram(insertStudent, 4, cursor.getString(3));
+                    DatabaseUtils.bindObjectToProgram(insertStudent, 5, hash);
+                    insertStudent.executeInsert();
+                }
+            }
+            finally
+            {
+                cursor.close();
+                insertPicture.close();
+                insertStudent.close();
+            }
+
+            /* Keep AUTOINCREMENT from handing out ids of rows deleted before the migration */
+            long sequence = DatabaseUtils.longForQuery(sqLiteDatabase,
+                    "SELECT MAX(IFNULL((SELECT seq FROM sqlite_sequence WHERE name = 'student'), 0), IFNULL((SELECT MAX(_id) FROM student), 0))", null);
+
+            sqLiteDatabase.execSQL("DROP TABLE student");
+            sqLiteDatabase.execSQL("ALTER TABLE student_v3 RENAME TO student");
+            sqLiteDatabase.execSQL("DELETE FROM sqlite_sequence WHERE name = 'student'");
+            if (sequence > 0)
+            {
+                sqLiteDatabase.execSQL("INSERT INTO sqlite_sequence (name, seq) VALUES ('student', ?)", new Object[]{sequence});
+            }
+
+            SQLiteDatabaseHelper.createIndex(sqLiteDatabase, SQLiteDatabaseConstants.INDEX_TABLE_1_ROLL_NUMBER);
+            SQLiteDatabaseHelper.createIndex(sqLiteDatabase, SQLiteDatabaseConstants.INDEX_TABLE_1_PICTURE_HASH);
+            sqLiteDatabase.execSQL(SQLiteDatabaseConstants.CREATE_TRIGGER_TABLE_3_DELETE_UNREFERENCED_ON_DELETE);
+            sqLiteDatabase.execSQL(SQLiteDatabaseConstants.CREATE_TRIGGER_TABLE_3_DELETE_UNREFERENCED_ON_UPDATE);
+        }
+    };
+
+    /* Version 4 : picture.thumbnail, filled for existing pictures by SQLiteDatabaseOperation.backfillThumbnails() */
+    public static final SQLiteMigration MIGRATION_3_4 = new SQLiteMigration(3, 4) {
+        @Override
+        public void migrate(SQLiteDatabase sqLiteDatabase) {
+            sqLiteDatabase.execSQL("ALTER TABLE picture ADD COLUMN thumbnail BLOB");
+        }
+    };
+
+    /* Version 5 : student_fts full text index of student, kept in sync by triggers */
+    public static final SQLiteMigration MIGRATION_4_5 = new SQLiteMigration(4, 5) {
+        @Override
+        public void migrate(SQLiteDatabase sqLiteDatabase) {
+            String[] triggers;
+            try
+            {
+                sqLiteDatabase.execSQL(V5_CREATE_FTS5);
+                triggers = V5_TRIGGERS_FTS5;
+            }
+            catch (SQLiteException sqLiteException)
+            {
+                /* No FTS5 in this SQLite build */
+                sqLiteDatabase.execSQL(V5_CREATE_FTS4);
+                triggers = V5_TRIGGERS_FTS4;
+            }
+            execSQL(sqLiteDatabase, triggers);
+            sqLiteDatabase.execSQL("INSERT INTO student_fts (student_fts) VALUES ('rebuild')");
+        }
+    };
+
+    /* Version 6 : row_count, counts of student and user kept by triggers, see RowCounts */
+    public static final SQLiteMigration MIGRATION_5_6 = new SQLiteMigration(5, 6) {
+        @Override
+        public void migrate(SQLiteDatabase sqLiteDatabase) {
+            sqLiteDatabase.execSQL(V6_CREATE_ROW_COUNT);
+            execSQL(sqLiteDatabase, V6_TRIGGERS_ROW_COUNT);
+            execSQL(sqLiteDatabase, V6_COUNT_ROWS);
+        }
+    };
+
+    /* Version 7 : student_fts tokenized with unicode61 without diacritics, rebuilt from student */
+    public static final SQLiteMigration MIGRATION_6_7 = new SQLiteMigration(6, 7) {
+        @Override
+        public void migrate(SQLiteDatabase sqLiteDatabase) {
+            /* The tokenizer of a virtual table can not be altered, the index is created again */
+            execSQL(sqLiteDatabase, V7_DROP_FTS);
+            String[] triggers;
+            try
+            {
+                sqLiteDatabase.execSQL(V7_CREATE_FTS5);
+                triggers = V5_TRIGGERS_FTS5;
+            }
+            catch (SQLiteException sqLiteException)
+            {
+                /* No FTS5 in this SQLite build */
+                sqLiteDatabase.execSQL(V7_CREATE_FTS4);
+                triggers = V5_TRIGGERS_FTS4;
+            }
+            execSQL(sqLiteDatabase, triggers);
+            sqLiteDatabase.execSQL("INSERT INTO student_fts (student_fts) VALUES ('rebuild')");
+        }
+    };
+
+    public static final SQLiteMigration[] ALL = {
+            MIGRATION_1_2,
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7
+    };
+
+    private static void execSQL(SQLiteDatabase sqLiteDatabase, String[] statements) {
+        for (String statement : statements)
+        {
+            sqLiteDatabase.execSQL(statement);
+        }
+    }
+
+    /**
+     * Find the steps leading from startVersion to endVersion, preferring the longest jump
+     * available at each version.
+     *
+     * @return ordered steps, or null when there is no path
+     */
+    public static List<SQLiteMigration> findPath(int startVersion, int endVersion) {
+        List<SQLiteMigration> path = new ArrayList<SQLiteMigration>();
+        int currentVersion = startVersion;
+
+        while (currentVersion < endVersion)
+        {
+            SQLiteMigration next = null;
+            for (SQLiteMigration migration : ALL)
+            {
+                if (migration.getStartVersion() == currentVersion
+                        && migration.getEndVersion() <= endVersion
+                        && (next == null || migration.getEndVersion() > next.getEndVersion()))
+                {
+                    next = migration;
+                }
+            }
+
+            if (next == null)
+            {
+                return null;
+            }
+            path.add(next);
+            currentVersion = next.getEndVersion();
+        }
+        return path;
+    }
+
+    /**
+     * Run every step from startVersion to endVersion, each one in its own transaction.
+     *
+     * @return timing of every step
+     * @throws IllegalStateException when no path exists
+     */
+    public static List<StepTiming> migrate(SQLiteDatabase sqLiteDatabase, int startVersion, int endVersion) {
+        List<SQLiteMigration> path = findPath(startVersion, endVersion);
+        if (path == null)
+        {
+            throw new IllegalStateException("No migration path from version " + startVersion + " to " + endVersion);
+        }
+
+        List<StepTiming> timings = new ArrayList<StepTiming>();
+        for (SQLiteMigration migration : path)
+        {
+            long startTime = System.nanoTime();
+
+            sqLiteDatabase.beginTransaction();
+            try
+            {
+                migration.migrate(sqLiteDatabase);
+                sqLiteDatabase.setTransactionSuccessful();
+            }
+            finally
+            {
+                sqLiteDatabase.endTransaction();
+            }
+
+            StepTiming timing = new StepTiming(migration.getStartVersion(), migration.getEndVersion(), (System.nanoTime() - startTime) / 1000000L);
+            timings.add(timing);
+            LogcatUtils.informationMessage(TAG, "migrate() : " + timing);
+        }
+        return timings;
+    }
+
+    public static class StepTiming {
+
+        private final int startVersion;
+        private final int endVersion;
+        private final long durationMillis;
+
+        StepTiming(int startVersion, int endVersion, long durationMillis) {
+            this.startVersion   = startVersion;
+            this.endVersion     = endVersion;
+            this.durationMillis = durationMillis;
+        }
+
+        public int getStartVersion() {
+            return startVersion;
+        }
+
+        public int getEndVersion() {
+            return endVersion;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "StepTiming{" + startVersion + " -> " + endVersion + ", durationMillis=" + durationMillis + '}';
+        }
+    }
+}
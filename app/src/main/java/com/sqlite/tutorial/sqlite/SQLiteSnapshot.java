@@ -0,0 +1,153 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import com.sqlite.tutorial.utilities.LogcatUtils;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Consistent copy of the live database into a single stand alone file, taken while other threads
+ * keep reading and writing.
+ *
+ * Copying the database file alone is not enough : committed pages may only be in the WAL file,
+ * and a write landing halfway through the copy tears it. VACUUM INTO (SQLite 3.27, Android 11)
+ * writes a compacted copy from a single read transaction. Older versions hold the write lock
+ * while the database and WAL files are copied, then fold the copied WAL into the copy.
+ */
+public class SQLiteSnapshot {
+
+    private static final String TAG = SQLiteSnapshot.class.getSimpleName();
+
+    public enum Method {
+        /* Compacted copy written by SQLite itself */
+        VACUUM_INTO,
+        /* Database and WAL files copied under the write lock */
+        FILE_COPY
+    }
+
+    private SQLiteSnapshot() {
+        throw new UnsupportedOperationException("You can't create instance of Util class. Please use as static..");
+    }
+
+    /**
+     * Write a snapshot of the database to the destination, replacing it. Blocks on the disk and,
+     * on the fallback, on the write lock : run it on the writer thread.
+     */
+    public static Method take(SQLiteConnectionManager connectionManager, File destination) throws IOException {
+        deleteWithSideFiles(destination);
+
+        SQLiteDatabase database = connectionManager.acquireDatabase();
+        try
+        {
+            try
+            {
+                database.execSQL("VACUUM INTO ?", new Object[]{destination.getPath()});
+                return Method.VACUUM_INTO;
+            }
+            catch (SQLiteException sqLiteException)
+            {
+                /* Syntax error before SQLite 3.27 */
+                LogcatUtils.informationMessage(TAG, "VACUUM INTO unavailable, copying files : " + sqLiteException.getMessage());
+                deleteWithSideFiles(destination);
+            }
+
+            copyFiles(database, connectionManager.getDatabaseFile(), destination);
+            return Method.FILE_COPY;
+        }
+        finally
+        {
+            connectionManager.releaseDatabase();
+        }
+    }
+
+    private static void copyFiles(SQLiteDatabase database, File source, File destination) throws IOException {
+        File sourceWal      = new File(source.getPath() + "-wal");
+        File destinationWal = new File(destination.getPath() + "-wal");
+
+        /* BEGIN IMMEDIATE, no write can commit while the files are copied */
+        database.beginTransactionNonExclusive();
+        try
+        {
+            copyFile(source, destination);
+            if (sourceWal.exists())
+            {
+                copyFile(sourceWal, destinationWal);
+            }
+        }
+        finally
+        {
+            database.endTransaction();
+        }
+
+        /* Opening the copy replays its WAL, leaving WAL mode checkpoints it into the copy */
+        SQLiteDatabase copy = SQLiteDatabase.openDatabase(destination.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        try
+        {
+            Cursor cursor = copy.rawQuery("PRAGMA journal_mode=DELETE", null);
+            try
+            {
+                cursor.moveToFirst();
+            }
+            finally
+            {
+                cursor.close();
+            }
+        }
+        finally
+        {
+            copy.close();
+        }
+        deleteSideFiles(destination);
+    }
+
+    private static void copyFile(File source, File destination) throws IOException {
+        FileChannel sourceChannel       = new FileInputStream(source).getChannel();
+        FileChannel destinationChannel  = null;
+        try
+        {
+            destinationChannel = new FileOutputStream(destination).getChannel();
+            long size = sourceChannel.size();
+            long position = 0;
+            /* transferTo may copy less than asked */
+            while (position < size)
+            {
+                position += sourceChannel.transferTo(position, size - position, destinationChannel);
+            }
+        }
+        finally
+        {
+            sourceChannel.close();
+            if (destinationChannel != null)
+            {
+                destinationChannel.close();
+            }
+        }
+    }
+
+    /**
+     * Delete the file and the journal files SQLite may have left next to it.
+     */
+    public static void deleteWithSideFiles(File file) {
+        delete(file);
+        deleteSideFiles(file);
+    }
+
+    private static void deleteSideFiles(File file) {
+        for (String suffix : new String[]{"-wal", "-shm", "-journal"})
+        {
+            delete(new File(file.getPath() + suffix));
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete())
+        {
+            LogcatUtils.warningMessage(TAG, "Unable to delete " + file);
+        }
+    }
+}
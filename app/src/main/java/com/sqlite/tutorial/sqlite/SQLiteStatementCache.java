@@ -0,0 +1,178 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import com.sqlite.tutorial.utilities.LogcatUtils;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of compiled {@link SQLiteStatement}s keyed by their SQL, bound to one connection.
+ *
+ * Every {@link #acquire(String)} must be balanced with a {@link #release(SQLiteStatement)}. A
+ * statement evicted while someone holds it is only closed by its last release, so neither
+ * acquire() nor eviction ever waits for another caller.
+ *
+ * A statement carries its own bindings, so callers must hold the statement monitor
+ * (synchronized (statement) { ... }) from the first bind until the execute returns, and must
+ * acquire every statement they need before taking any statement monitor.
+ */
+public class SQLiteStatementCache {
+
+    private static final String TAG = SQLiteStatementCache.class.getSimpleName();
+
+    private static final class Entry {
+
+        final SQLiteStatement statement;
+        int references;
+        /* No longer in the cache, closed by the last release */
+        boolean evicted;
+
+        Entry(SQLiteStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    private final SQLiteDatabase sqLiteDatabase;
+    private final LinkedHashMap<String, Entry> statements;
+    /* Entries with references, evicted ones included */
+    private final IdentityHashMap<SQLiteStatement, Entry> heldStatements = new IdentityHashMap<SQLiteStatement, Entry>();
+
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+
+    public SQLiteStatementCache(SQLiteDatabase sqLiteDatabase, final int maxSize) {
+        this.sqLiteDatabase = sqLiteDatabase;
+        this.statements     = new LinkedHashMap<String, Entry>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxSize)
+                {
+                    evict(eldest.getValue());
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the compiled statement for the sql, compiling it only on a miss. The statement
+     * stays open until it is given back with {@link #release(SQLiteStatement)}, do not close it.
+     */
+    public SQLiteStatement acquire(String sql) {
+        synchronized (this) {
+            Entry entry = statements.get(sql);
+            if (entry != null)
+            {
+                hitCount++;
+                return hold(entry);
+            }
+            missCount++;
+        }
+
+        /* Outside of the lock, compiling may wait for a connection */
+        SQLiteStatement statement = sqLiteDatabase.compileStatement(sql);
+        synchronized (this) {
+            Entry entry = statements.get(sql);
+            if (entry == null)
+            {
+                entry = new Entry(statement);
+                statements.put(sql, entry);
+            }
+            else
+            {
+                /* Compiled by another caller meanwhile, nobody else has seen ours */
+                statement.close();
+            }
+            return hold(entry);
+        }
+    }
+
+    /**
+     * Give back a statement returned by {@link #acquire(String)}.
+     */
+    public synchronized void release(SQLiteStatement statement) {
+        Entry entry = heldStatements.get(statement);
+        if (entry == null)
+        {
+            LogcatUtils.warningMessage(TAG, "release() called without matching acquire()");
+            return;
+        }
+
+        entry.references--;
+        if (entry.references == 0)
+        {
+            heldStatements.remove(statement);
+            if (entry.evicted)
+            {
+                statement.close();
+            }
+        }
+    }
+
+    /**
+     * Close every cached statement, called when the owning connection is closed. Statements
+     * still held are closed by their last release.
+     */
+    public synchronized void clear() {
+        for (Entry entry : statements.values()) {
+            evict(entry);
+        }
+        statements.clear();
+        if (!heldStatements.isEmpty())
+        {
+            LogcatUtils.warningMessage(TAG, "clear() : " + heldStatements.size() + " statements still held");
+        }
+        LogcatUtils.informationMessage(TAG, "clear() : " + this);
+    }
+
+    /* Caller holds the lock */
+    private SQLiteStatement hold(Entry entry) {
+        if (entry.references == 0)
+        {
+            heldStatements.put(entry.statement, entry);
+        }
+        entry.references++;
+        return entry.statement;
+    }
+
+    /* Caller holds the lock */
+    private void evict(Entry entry) {
+        entry.evicted = true;
+        if (entry.references == 0)
+        {
+            entry.statement.close();
+        }
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SQLiteStatementCache{" +
+                "size=" + statements.size() +
+                ", held=" + heldStatements.size() +
+                ", hits=" + hitCount +
+                ", misses=" + missCount +
+                ", evictions=" + evictionCount +
+                '}';
+    }
+}
@@ -0,0 +1,134 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.text.TextUtils;
+import com.sqlite.tutorial.sqlite.model.Student;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of recent {@link SQLiteDatabaseOperation#search(String)} calls, keyed by query.
+ *
+ * Adding characters to a query can only remove matches (every token must match as a prefix), so
+ * when "raje" follows "raj" the result of "raj" is narrowed in memory with
+ * {@link SQLiteFullTextSearch#matches} instead of querying SQLite again. A result cut at
+ * {@link SQLiteDatabaseConstants#SEARCH_RESULT_LIMIT} is incomplete and is never narrowed.
+ * Narrowed results keep the rank order of the query they come from.
+ *
+ * Every write to the student table must call {@link #invalidate()}. Thread safe.
+ */
+public class SearchResultCache {
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    private int generation;
+
+    private int hitCount;
+    private int narrowCount;
+    private int missCount;
+
+    public SearchResultCache(final int maxSize) {
+        this.entries = new LinkedHashMap<String, Entry>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return a copy of the cached or narrowed result, null when SQLite has to be queried
+     */
+    public synchronized ArrayList<Student> get(String queryText) {
+        List<String> tokens = SQLiteFullTextSearch.tokenize(queryText);
+        String key = TextUtils.join(" ", tokens);
+
+        Entry entry = entries.get(key);
+        if (entry != null)
+        {
+            hitCount++;
+            return new ArrayList<Student>(entry.students);
+        }
+
+        /* Longest complete cached query that the new one extends */
+        String narrowestKey = null;
+        for (Map.Entry<String, Entry> candidate : entries.entrySet())
+        {
+            String candidateKey = candidate.getKey();
+            if (candidate.getValue().complete && !candidateKey.isEmpty() && key.startsWith(candidateKey)
+                    && (narrowestKey == null || candidateKey.length() > narrowestKey.length()))
+            {
+                narrowestKey = candidateKey;
+            }
+        }
+        if (narrowestKey == null)
+        {
+            missCount++;
+            return null;
+        }
+
+        ArrayList<Student> students = new ArrayList<Student>();
+        for (Student student : entries.get(narrowestKey).students)
+        {
+            if (SQLiteFullTextSearch.matches(student, tokens))
+            {
+                students.add(student);
+            }
+        }
+        entries.put(key, new Entry(students, true));
+        narrowCount++;
+        return new ArrayList<Student>(students);
+    }
+
+    /**
+     * Remember the result of a query read from SQLite.
+     *
+     * @param generation {@link #getGeneration()} taken before the query, a result read before the
+     *                   last {@link #invalidate()} may be stale and is dropped
+     * @param complete false when the result was cut at the limit
+     */
+    public synchronized void put(int generation, String queryText, List<Student> students, boolean complete) {
+        if (generation != this.generation)
+        {
+            return;
+        }
+        String key = TextUtils.join(" ", SQLiteFullTextSearch.tokenize(queryText));
+        entries.put(key, new Entry(new ArrayList<Student>(students), complete));
+    }
+
+    public synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Forget every result, the student table changed.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getNarrowCount() {
+        return narrowCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    private static class Entry {
+
+        private final List<Student> students;
+        private final boolean complete;
+
+        Entry(List<Student> students, boolean complete) {
+            this.students   = students;
+            this.complete   = complete;
+        }
+    }
+}
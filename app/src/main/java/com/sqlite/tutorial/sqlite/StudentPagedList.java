@@ -0,0 +1,539 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.os.Handler;
+import android.os.Looper;
+import com.sqlite.tutorial.sqlite.model.Student;
+import com.sqlite.tutorial.utilities.LogcatUtils;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Keyset paginated view of the student table backed by {@link SQLiteDatabaseOperation#loadPage(int, int, int)}.
+ *
+ * Pages are loaded off the main thread as {@link #get(int)} is called for positions near the end
+ * of what is known so far. Only {@link #getMaxCachedPages()} pages are kept in memory, an evicted
+ * page is loaded again from its key (the id of the last row of the page before it) when it is needed.
+ * A page that fails to load is reported to the {@link LoadStateListener} and is not requested again
+ * until {@link #retry()} is called.
+ *
+ * Once discovered, a page covers the ids up to the key of the next one, so that writes reported by
+ * {@link #applyChange(SQLiteChangeEvent.TableChange)} are patched into the pages they belong to
+ * without moving the rows of any other page. A page shrinks as its rows are deleted.
+ *
+ * Not thread safe, every method must be called on the main thread.
+ */
+public class StudentPagedList {
+
+    private static final String TAG = StudentPagedList.class.getSimpleName();
+
+    public static final int DEFAULT_PAGE_SIZE           = 30;
+    public static final int DEFAULT_PREFETCH_DISTANCE   = 15;
+    public static final int DEFAULT_MAX_CACHED_PAGES    = 6;
+
+    private final SQLiteDatabaseOperation sqLiteDatabaseOperation;
+    private final Executor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final int pageSize;
+    private final int prefetchDistance;
+    private final int maxCachedPages;
+
+    /* pageKeys.get(i) is the afterId of page i, known once page i - 1 has been loaded */
+    private final ArrayList<Integer> pageKeys = new ArrayList<Integer>();
+    private final LinkedHashMap<Integer, List<Student>> pages;
+    private final Set<Integer> loadingPages = new HashSet<Integer>();
+    private final Set<Integer> failedPages  = new HashSet<Integer>();
+    /* Written while loading, loaded again once the load in flight is done */
+    private final Set<Integer> stalePages   = new HashSet<Integer>();
+    /* pageCounts.get(i) is the number of rows of page i, known once page i has been loaded */
+    private final ArrayList<Integer> pageCounts = new ArrayList<Integer>();
+    /* Id -> latest read of the row after an update, older reads finishing late are dropped */
+    private final Map<Long, Integer> pendingUpdates = new HashMap<Long, Integer>();
+    private int updateSequence;
+
+    private int size;
+    private boolean endReached;
+    private int generation;
+
+    private Callback callback;
+    private LoadStateListener loadStateListener;
+
+    public StudentPagedList(SQLiteDatabaseOperation sqLiteDatabaseOperation) {
+        this(sqLiteDatabaseOperation, SQLiteDatabaseExecutor.getInstance().getReadExecutor(), DEFAULT_PAGE_SIZE, DEFAULT_PREFETCH_DISTANCE, DEFAULT_MAX_CACHED_PAGES);
+    }
+
+    public StudentPagedList(SQLiteDatabaseOperation sqLiteDatabaseOperation, Executor executor, int pageSize, int prefetchDistance, final int maxCachedPages) {
+        if (pageSize <= 0 || prefetchDistance < 0 || maxCachedPages < 2) {
+            throw new IllegalArgumentException("pageSize > 0, prefetchDistance >= 0 and maxCachedPages >= 2 required");
+        }
+        this.sqLiteDatabaseOperation    = sqLiteDatabaseOperation;
+        this.executor                   = executor;
+        this.pageSize                   = pageSize;
+        this.prefetchDistance           = prefetchDistance;
+        this.maxCachedPages             = maxCachedPages;
+        this.pages                      = new LinkedHashMap<Integer, List<Student>>(maxCachedPages, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Student>> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+        this.pageKeys.add(0);
+    }
+
+    public void setCallback(Callback callback) {
+        this.callback = callback;
+    }
+
+    public void setLoadStateListener(LoadStateListener loadStateListener) {
+        this.loadStateListener = loadStateListener;
+    }
+
+    /**
+     * Load the first page, results are delivered through the {@link Callback}.
+     */
+    public void loadInitial() {
+        loadPage(0);
+    }
+
+    /**
+     * Number of rows known so far, it grows as pages are discovered.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getPrefetchDistance() {
+        return prefetchDistance;
+    }
+
+    public int getMaxCachedPages() {
+        return maxCachedPages;
+    }
+
+    /**
+     * @return the row at position, or null while its page is being (re)loaded
+     */
+    public Student get(int position) {
+        /* Pages shrink with deletes, walk them to the one holding position */
+        int pageIndex = 0;
+        int pageStart = 0;
+        while (pageIndex < pageCounts.size() - 1 && pageStart + pageCounts.get(pageIndex) <= position)
+        {
+            pageStart += pageCounts.get(pageIndex);
+            pageIndex++;
+        }
+        List<Student> page = pages.get(pageIndex);
+        if (page == null)
+        {
+            loadPage(pageIndex);
+        }
+
+        /* Prefetch the next unknown page before the user reaches the end */
+        if (!endReached && position + prefetchDistance >= size)
+        {
+            loadPage(pageKeys.size() - 1);
+        }
+
+        if (page == null)
+        {
+            return null;
+        }
+        int offset = position - pageStart;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    /**
+     * Load again the pages whose last load failed.
+     */
+    public void retry() {
+        List<Integer> retryPages = new ArrayList<Integer>(failedPages);
+        failedPages.clear();
+        for (int pageIndex : retryPages) {
+            loadPage(pageIndex);
+        }
+    }
+
+    /**
+     * Forget everything and load again from the first page, e.g., after a write.
+     */
+    public void invalidate() {
+        generation++;
+        pages.clear();
+        loadingPages.clear();
+        failedPages.clear();
+        stalePages.clear();
+        pageCounts.clear();
+        pendingUpdates.clear();
+        pageKeys.clear();
+        pageKeys.add(0);
+        size = 0;
+        endReached = false;
+
+        if (callback != null)
+        {
+            callback.onInvalidated();
+        }
+        loadInitial();
+    }
+
+    /**
+     * Patch the cached pages with the committed writes of the student table : deleted rows are
+     * removed, updated rows are read again and replaced in place, rows inserted after the last
+     * page grow it. Only a table invalidated as a whole, or rows inserted between pages already
+     * discovered, load everything again with {@link #invalidate()}.
+     */
+    public void applyChange(SQLiteChangeEvent.TableChange change) {
+        if (change.isInvalidated())
+        {
+            invalidate();
+            return;
+        }
+        int lastPageKey = pageKeys.get(pageKeys.size() - 1);
+        for (Long id : change.getInsertedRowIds())
+        {
+            if (id <= lastPageKey)
+            {
+                /* Every row after it would move to the next page */
+                invalidate();
+                return;
+            }
+        }
+
+        for (Long id : change.getDeletedRowIds())
+        {
+            removeRow(id);
+        }
+        if (!change.getInsertedRowIds().isEmpty())
+        {
+            reloadPage(pageKeys.size() - 1);
+        }
+
+        ArrayList<Long> updatedIds = new ArrayList<Long>();
+        for (Long id : change.getUpdatedRowIds())
+        {
+            int pageIndex = pageIndexOfId(id);
+            if (loadingPages.contains(pageIndex))
+            {
+                stalePages.add(pageIndex);
+            }
+            else if (pages.containsKey(pageIndex))
+            {
+                updatedIds.add(id);
+            }
+        }
+        if (!updatedIds.isEmpty())
+        {
+            readUpdatedRows(updatedIds);
+        }
+    }
+
+    private void removeRow(long id) {
+        int pageIndex = pageIndexOfId(id);
+        if (pageIndex >= pageCounts.size())
+        {
+            /* Not discovered yet */
+            return;
+        }
+        if (loadingPages.contains(pageIndex))
+        {
+            stalePages.add(pageIndex);
+        }
+
+        List<Student> page = pages.get(pageIndex);
+        if (page != null)
+        {
+            for (int i = 0; i < page.size(); i++)
+            {
+                if (page.get(i).getId() == id)
+                {
+                    page.remove(i);
+                    onRowsRemoved(pageIndex, i, 1);
+                    return;
+                }
+            }
+        }
+        else if (pageIndex < pageKeys.size() - 1)
+        {
+            /* Evicted page, every id up to the next key was counted when it was loaded */
+            if (pageCounts.get(pageIndex) > 0)
+            {
+                onRowsRemoved(pageIndex, 0, 1);
+            }
+        }
+        else
+        {
+            /* Evicted last page, the row may have been inserted after it was loaded */
+            reloadPage(pageIndex);
+        }
+    }
+
+    private void onRowsRemoved(int pageIndex, int offset, int itemCount) {
+        pageCounts.set(pageIndex, pageCounts.get(pageIndex) - itemCount);
+        size -= itemCount;
+        if (callback != null)
+        {
+            callback.onItemRangeRemoved(pageStart(pageIndex) + offset, itemCount);
+        }
+    }
+
+    private void reloadPage(int pageIndex) {
+        if (loadingPages.contains(pageIndex))
+        {
+            stalePages.add(pageIndex);
+        }
+        else if (pageIndex < pageCounts.size())
+        {
+            loadPage(pageIndex);
+        }
+    }
+
+    private void readUpdatedRows(final List<Long> ids) {
+        final int requestGeneration = generation;
+        final int requestSequence   = ++updateSequence;
+        for (Long id : ids)
+        {
+            pendingUpdates.put(id, requestSequence);
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final List<Student> rows = sqLiteDatabaseOperation.getRowsById(ids);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onRowsUpdated(requestGeneration, requestSequence, ids, rows);
+                        }
+                    });
+                } catch (final Exception exception) {
+                    LogcatUtils.errorMessage(TAG, "Updated rows failed to load", exception);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (requestGeneration == generation)
+                            {
+                                invalidate();
+                            }
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private void onRowsUpdated(int requestGeneration, int requestSequence, List<Long> ids, List<Student> rows) {
+        if (requestGeneration != generation)
+        {
+            return;
+        }
+
+        HashSet<Long> latestIds = new HashSet<Long>();
+        for (Long id : ids)
+        {
+            Integer sequence = pendingUpdates.get(id);
+            if (sequence != null && sequence == requestSequence)
+            {
+                pendingUpdates.remove(id);
+                latestIds.add(id);
+            }
+        }
+
+        for (Student row : rows)
+        {
+            if (!latestIds.contains((long) row.getId()))
+            {
+                /* Read again by a later update */
+                continue;
+            }
+            int pageIndex = pageIndexOfId(row.getId());
+            List<Student> page = pages.get(pageIndex);
+            if (page == null)
+            {
+                /* Evicted meanwhile, loaded fresh when needed */
+                continue;
+            }
+            for (int i = 0; i < page.size(); i++)
+            {
+                if (page.get(i).getId() == row.getId())
+                {
+                    page.set(i, row);
+                    if (callback != null)
+                    {
+                        callback.onItemRangeChanged(pageStart(pageIndex) + i, 1);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return index of the page whose id range holds id, pageKeys.size() - 1 for ids past the last key
+     */
+    private int pageIndexOfId(long id) {
+        int low = 0;
+        int high = pageKeys.size() - 1;
+        while (low < high)
+        {
+            int middle = (low + high + 1) >>> 1;
+            if (pageKeys.get(middle) < id)
+            {
+                low = middle;
+            }
+            else
+            {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private int pageStart(int pageIndex) {
+        int pageStart = 0;
+        for (int i = 0; i < pageIndex; i++)
+        {
+            pageStart += pageCounts.get(i);
+        }
+        return pageStart;
+    }
+
+    private void loadPage(final int pageIndex) {
+        if (pageIndex >= pageKeys.size() || loadingPages.contains(pageIndex) || failedPages.contains(pageIndex))
+        {
+            return;
+        }
+        loadingPages.add(pageIndex);
+
+        final int afterId           = pageKeys.get(pageIndex);
+        /* The last page is open ended, the others end where the next one starts */
+        final int untilId           = pageIndex < pageKeys.size() - 1 ? pageKeys.get(pageIndex + 1) : Integer.MAX_VALUE;
+        final int requestGeneration = generation;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final List<Student> rows = sqLiteDatabaseOperation.loadPage(afterId, untilId, pageSize);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onPageLoaded(requestGeneration, pageIndex, rows);
+                        }
+                    });
+                } catch (final Exception exception) {
+                    LogcatUtils.errorMessage(TAG, "Page " + pageIndex + " failed to load", exception);
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onPageLoadFailed(requestGeneration, pageIndex, exception);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private void onPageLoaded(int requestGeneration, int pageIndex, List<Student> rows) {
+        if (requestGeneration != generation)
+        {
+            /* Loaded before invalidate(), stale */
+            return;
+        }
+        loadingPages.remove(pageIndex);
+        if (stalePages.remove(pageIndex))
+        {
+            /* Written while loading, these rows may miss the write */
+            loadPage(pageIndex);
+            return;
+        }
+        pages.put(pageIndex, new ArrayList<Student>(rows));
+
+        boolean isNewPage = pageIndex == pageCounts.size();
+        if (isNewPage)
+        {
+            pageCounts.add(0);
+        }
+        int positionStart = pageStart(pageIndex);
+        int oldCount = pageCounts.get(pageIndex);
+        pageCounts.set(pageIndex, rows.size());
+        size += rows.size() - oldCount;
+
+        if (pageIndex == pageKeys.size() - 1)
+        {
+            if (rows.size() == pageSize)
+            {
+                pageKeys.add(rows.get(rows.size() - 1).getId());
+                endReached = false;
+            }
+            else
+            {
+                endReached = true;
+            }
+        }
+
+        if (callback != null)
+        {
+            int changedCount = Math.min(oldCount, rows.size());
+            if (changedCount > 0)
+            {
+                callback.onItemRangeChanged(positionStart, changedCount);
+            }
+            if (rows.size() > oldCount)
+            {
+                callback.onItemRangeInserted(positionStart + oldCount, rows.size() - oldCount);
+            }
+            else if (rows.size() < oldCount)
+            {
+                callback.onItemRangeRemoved(positionStart + rows.size(), oldCount - rows.size());
+            }
+        }
+        if (isNewPage && pageIndex == 0 && loadStateListener != null)
+        {
+            loadStateListener.onFirstPageLoaded(rows.size());
+        }
+
+        LogcatUtils.debuggingMessage(TAG, "Page " + pageIndex + " loaded : " + rows.size() + " rows, size " + size + ", cached pages " + pages.size());
+    }
+
+    private void onPageLoadFailed(int requestGeneration, int pageIndex, Exception exception) {
+        if (requestGeneration != generation)
+        {
+            /* Failed before invalidate(), stale */
+            return;
+        }
+        loadingPages.remove(pageIndex);
+        failedPages.add(pageIndex);
+
+        if (loadStateListener != null)
+        {
+            loadStateListener.onPageLoadFailed(pageIndex, exception);
+        }
+    }
+
+    public interface Callback {
+        void onItemRangeInserted(int positionStart, int itemCount);
+        void onItemRangeChanged(int positionStart, int itemCount);
+        void onItemRangeRemoved(int positionStart, int itemCount);
+        void onInvalidated();
+    }
+
+    public interface LoadStateListener {
+        void onFirstPageLoaded(int itemCount);
+        void onPageLoadFailed(int pageIndex, Exception exception);
+    }
+}
@@ -0,0 +1,220 @@
+package com.sqlite.tutorial.sqlite;
+
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import com.sqlite.tutorial.sqlite.model.Student;
+import com.sqlite.tutorial.utilities.LogcatUtils;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Debounced search pipeline on top of {@link SQLiteDatabaseOperation#search(String, CancellationSignal)}.
+ *
+ * Text submitted with {@link #submit(String)} is only searched once the user has stopped typing
+ * for {@link #getDebounceMillis()}. Queries run off the main thread, a query superseded by newer
+ * text is cancelled through its {@link CancellationSignal} and only the result of the latest
+ * query is delivered to the {@link Listener}. A query that fails is reported to
+ * {@link Listener#onSearchFailed(String, Exception)} instead.
+ *
+ * Not thread safe, every method must be called on the main thread.
+ */
+public class StudentSearch {
+
+    private static final String TAG = StudentSearch.class.getSimpleName();
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 250;
+
+    /* One query at a time, a new one cancels the running one anyway */
+    private static final Executor DEFAULT_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final SQLiteDatabaseOperation sqLiteDatabaseOperation;
+    private final Executor executor;
+    private final long debounceMillis;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private Listener listener;
+
+    private Runnable pendingSearch;
+    private CancellationSignal runningSignal;
+    private int generation;
+
+    private int completedCount;
+    private int cancelledCount;
+    private int failedCount;
+    private long lastLatencyMillis;
+    private long totalLatencyMillis;
+
+    public StudentSearch(SQLiteDatabaseOperation sqLiteDatabaseOperation) {
+        this(sqLiteDatabaseOperation, DEFAULT_EXECUTOR, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    public StudentSearch(SQLiteDatabaseOperation sqLiteDatabaseOperation, Executor executor, long debounceMillis) {
+        this.sqLiteDatabaseOperation    = sqLiteDatabaseOperation;
+        this.executor                   = executor;
+        this.debounceMillis             = debounceMillis;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public long getDebounceMillis() {
+        return debounceMillis;
+    }
+
+    /**
+     * Search queryText once the user has stopped typing, superseding every earlier query.
+     */
+    public void submit(String queryText) {
+        schedule(queryText, debounceMillis);
+    }
+
+    /**
+     * Search queryText right away, e.g., when the user submits the search.
+     */
+    public void submitNow(String queryText) {
+        schedule(queryText, 0);
+    }
+
+    /**
+     * Drop the pending and the running query, nothing is delivered until the next submit.
+     */
+    public void cancel() {
+        generation++;
+        if (pendingSearch != null)
+        {
+            mainHandler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+        if (runningSignal != null)
+        {
+            runningSignal.cancel();
+            runningSignal = null;
+        }
+    }
+
+    private void schedule(final String queryText, long delayMillis) {
+        cancel();
+
+        final int requestGeneration = generation;
+        pendingSearch = new Runnable() {
+            @Override
+            public void run() {
+                pendingSearch = null;
+                execute(requestGeneration, queryText);
+            }
+        };
+        mainHandler.postDelayed(pendingSearch, delayMillis);
+    }
+
+    private void execute(final int requestGeneration, final String queryText) {
+        final CancellationSignal cancellationSignal = new CancellationSignal();
+        runningSignal = cancellationSignal;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long startTime = System.nanoTime();
+                List<Student> result = null;
+                Exception failure    = null;
+                try
+                {
+                    cancellationSignal.throwIfCanceled();
+                    result = sqLiteDatabaseOperation.search(queryText, cancellationSignal);
+                }
+                catch (OperationCanceledException operationCanceledException)
+                {
+                    /* Superseded by newer text */
+                }
+                catch (Exception exception)
+                {
+                    LogcatUtils.errorMessage(TAG, "Search \"" + queryText + "\" failed", exception);
+                    failure = exception;
+                }
+
+                final List<Student> students = result;
+                final Exception exception    = failure;
+                final long latencyMillis = (System.nanoTime() - startTime) / 1000000L;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (exception != null)
+                        {
+                            onSearchFailed(requestGeneration, queryText, exception);
+                        }
+                        else
+                        {
+                            onSearchFinished(requestGeneration, queryText, students, latencyMillis);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onSearchFinished(int requestGeneration, String queryText, List<Student> students, long latencyMillis) {
+        if (students == null || requestGeneration != generation)
+        {
+            cancelledCount++;
+            LogcatUtils.debuggingMessage(TAG, "Search \"" + queryText + "\" cancelled after " + latencyMillis + " ms");
+            return;
+        }
+        runningSignal = null;
+
+        completedCount++;
+        lastLatencyMillis   = latencyMillis;
+        totalLatencyMillis  += latencyMillis;
+        LogcatUtils.debuggingMessage(TAG, "Search \"" + queryText + "\" : " + students.size() + " rows in " + latencyMillis + " ms");
+
+        if (listener != null)
+        {
+            listener.onSearchResult(queryText, students, latencyMillis);
+        }
+    }
+
+    private void onSearchFailed(int requestGeneration, String queryText, Exception exception) {
+        if (requestGeneration != generation)
+        {
+            /* Superseded, a newer query will deliver */
+            return;
+        }
+        runningSignal = null;
+        failedCount++;
+
+        if (listener != null)
+        {
+            listener.onSearchFailed(queryText, exception);
+        }
+    }
+
+    public int getCompletedCount() {
+        return completedCount;
+    }
+
+    public int getCancelledCount() {
+        return cancelledCount;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * @return latency of the last delivered query, from the start of the query to its result
+     */
+    public long getLastLatencyMillis() {
+        return lastLatencyMillis;
+    }
+
+    public long getAverageLatencyMillis() {
+        return completedCount == 0 ? 0 : totalLatencyMillis / completedCount;
+    }
+
+    public interface Listener {
+        void onSearchResult(String queryText, List<Student> students, long latencyMillis);
+        void onSearchFailed(String queryText, Exception exception);
+    }
+}
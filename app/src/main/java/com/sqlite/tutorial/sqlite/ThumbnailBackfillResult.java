@@ -0,0 +1,59 @@
+package com.sqlite.tutorial.sqlite;
+
+/**
+ * Outcome of {@link SQLiteDatabaseOperation#backfillThumbnails(int)}.
+ */
+public class ThumbnailBackfillResult {
+
+    private int thumbnailCount;
+    private int failedCount;
+    private long pictureBytes;
+    private long thumbnailBytes;
+    private long durationMillis;
+
+    void addThumbnail(long pictureLength, long thumbnailLength) {
+        thumbnailCount++;
+        pictureBytes    += pictureLength;
+        thumbnailBytes  += thumbnailLength;
+    }
+
+    void addFailed() {
+        failedCount++;
+    }
+
+    void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public int getThumbnailCount() {
+        return thumbnailCount;
+    }
+
+    /**
+     * @return pictures that could not be decoded, list rows keep showing their full picture
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * @return bytes no longer read by list rows, full pictures minus their thumbnails
+     */
+    public long getBytesSaved() {
+        return pictureBytes - thumbnailBytes;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ThumbnailBackfillResult{" +
+                "thumbnails=" + thumbnailCount +
+                ", failed=" + failedCount +
+                ", bytesSaved=" + getBytesSaved() +
+                ", durationMillis=" + durationMillis +
+                '}';
+    }
+}
@@ -0,0 +1,146 @@
+package com.sqlite.tutorial.sqlite;
+
+import com.sqlite.tutorial.sqlite.model.StudentTable;
+import java.util.LinkedHashMap;
+
+/**
+ * What {@link SQLiteDatabaseOperation#upsertAll(java.util.Iterator, UpsertPolicy)} does with each
+ * column of a student whose rollNumber is already in the table. Every column is replaced unless
+ * told otherwise, rollNumber is the key and is never written.
+ */
+public class UpsertPolicy {
+
+    public enum Conflict {
+        /* The row keeps its value */
+        KEEP,
+        /* The row takes the new value, null included */
+        REPLACE,
+        /* The row keeps its value unless it is null */
+        KEEP_NON_NULL
+    }
+
+    private static final String[] UPDATABLE_COLUMNS = {
+            SQLiteDatabaseConstants.TABLE_1_COLUMN_2,
+            SQLiteDatabaseConstants.TABLE_1_COLUMN_3,
+            SQLiteDatabaseConstants.TABLE_1_COLUMN_5
+    };
+
+    private final LinkedHashMap<String, Conflict> conflicts = new LinkedHashMap<String, Conflict>();
+
+    public UpsertPolicy() {
+        for (String column : UPDATABLE_COLUMNS)
+        {
+            conflicts.put(column, Conflict.REPLACE);
+        }
+    }
+
+    /**
+     * @param column one of firstName, lastName or pictureHash
+     */
+    public UpsertPolicy set(String column, Conflict conflict) {
+        if (!conflicts.containsKey(column)) {
+            throw new IllegalArgumentException("Not an updatable column : " + column);
+        }
+        if (conflict == null) {
+            throw new IllegalArgumentException("conflict must not be null");
+        }
+        conflicts.put(column, conflict);
+        return this;
+    }
+
+    public Conflict get(String column) {
+        return conflicts.get(column);
+    }
+
+    /**
+     * @return true when an existing row is never written
+     */
+    boolean isKeepAll() {
+        for (Conflict conflict : conflicts.values())
+        {
+            if (conflict != Conflict.KEEP)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * INSERT ... ON CONFLICT DO UPDATE, SQLite 3.24 and a unique rollNumber index needed. Bound
+     * like {@link StudentTable#INSERT}, the row is only written when a value changes.
+     */
+    String getUpsertStatement() {
+        String insert = StudentTable.INSERT + " ON CONFLICT (" + SQLiteDatabaseConstants.TABLE_1_COLUMN_4 + ")";
+        if (isKeepAll())
+        {
+            return insert + " DO NOTHING";
+        }
+        String incoming = "excluded.";
+        String existing = SQLiteDatabaseConstants.TABLE_1 + ".";
+        return insert + " DO UPDATE SET " + set(incoming, existing) + " WHERE " + changed(incoming, existing);
+    }
+
+    /**
+     * UPDATE by _id for older SQLite, bound with {@link StudentTable#bindUpdateByKey}, the row is
+     * only written when a value changes. Null when {@link #isKeepAll()}.
+     */
+    String getUpdateStatement() {
+        if (isKeepAll())
+        {
+            return null;
+        }
+        /* Numbered parameters, each new value is read by SET and WHERE */
+        String incoming = "?";
+        String existing = "";
+        return "UPDATE " + SQLiteDatabaseConstants.TABLE_1 + " SET " + set(incoming, existing) +
+                " WHERE " + SQLiteDatabaseConstants.TABLE_1_COLUMN_1 + " = ?" + StudentTable.updateParameterOf(SQLiteDatabaseConstants.TABLE_1_COLUMN_1) +
+                " AND (" + changed(incoming, existing) + ")";
+    }
+
+    private String set(String incoming, String existing) {
+        StringBuilder set = new StringBuilder();
+        for (String column : conflicts.keySet())
+        {
+            if (conflicts.get(column) != Conflict.KEEP)
+            {
+                set.append(set.length() == 0 ? "" : ", ").append(column).append(" = ").append(value(column, incoming, existing));
+            }
+        }
+        return set.toString();
+    }
+
+    /* True when at least one column takes a new value */
+    private String changed(String incoming, String existing) {
+        StringBuilder changed = new StringBuilder();
+        for (String column : conflicts.keySet())
+        {
+            if (conflicts.get(column) != Conflict.KEEP)
+            {
+                changed.append(changed.length() == 0 ? "" : " OR ").append(existing).append(column)
+                        .append(" IS NOT ").append(value(column, incoming, existing));
+            }
+        }
+        return changed.toString();
+    }
+
+    /**
+     * @param incoming prefix of the new value, "excluded." or "?" for the parameter bindUpdateByKey() binds the column to
+     * @param existing prefix of the current value
+     */
+    private String value(String column, String incoming, String existing) {
+        String incomingValue = incoming.equals("?")
+                ? "?" + StudentTable.updateParameterOf(column)
+                : incoming + column;
+        if (conflicts.get(column) == Conflict.KEEP_NON_NULL)
+        {
+            return "IFNULL(" + existing + column + ", " + incomingValue + ")";
+        }
+        return incomingValue;
+    }
+
+    @Override
+    public String toString() {
+        return "UpsertPolicy" + conflicts;
+    }
+}
@@ -0,0 +1,72 @@
+package com.sqlite.tutorial.sqlite;
+
+/**
+ * Outcome of {@link SQLiteDatabaseOperation#upsertAll(java.util.Iterator, UpsertPolicy)}.
+ */
+public class UpsertResult {
+
+    private int insertedCount;
+    private int updatedCount;
+    private int unchangedCount;
+    private int failedCount;
+    private long durationMillis;
+
+    void addInserted() {
+        insertedCount++;
+    }
+
+    void addUpdated() {
+        updatedCount++;
+    }
+
+    void addUnchanged() {
+        unchangedCount++;
+    }
+
+    void addFailed() {
+        failedCount++;
+    }
+
+    void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public int getInsertedCount() {
+        return insertedCount;
+    }
+
+    public int getUpdatedCount() {
+        return updatedCount;
+    }
+
+    /**
+     * @return students already in the table with the values the policy would have written
+     */
+    public int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    /**
+     * @return students whose write threw a SQLException, the rest of the batch is still written.
+     * The student table has no constraint a row can break (a null rollNumber is inserted, NULLs
+     * never conflict), so this counts failing writes such as a full disk (SQLiteFullException)
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "UpsertResult{" +
+                "inserted=" + insertedCount +
+                ", updated=" + updatedCount +
+                ", unchanged=" + unchangedCount +
+                ", failed=" + failedCount +
+                ", durationMillis=" + durationMillis +
+                '}';
+    }
+}
@@ -0,0 +1,72 @@
+package com.sqlite.tutorial.sqlite;
+
+/**
+ * Outcome of {@link SQLiteConnectionManager#checkpoint(SQLiteConnectionManager.CheckpointMode)},
+ * the row returned by PRAGMA wal_checkpoint.
+ */
+public class WalCheckpointResult {
+
+    private final SQLiteConnectionManager.CheckpointMode mode;
+    private final boolean busy;
+    private final int logFrameCount;
+    private final int checkpointedFrameCount;
+    private final long walFileSize;
+    private final long durationMillis;
+
+    WalCheckpointResult(SQLiteConnectionManager.CheckpointMode mode, boolean busy, int logFrameCount, int checkpointedFrameCount, long walFileSize, long durationMillis) {
+        this.mode                   = mode;
+        this.busy                   = busy;
+        this.logFrameCount          = logFrameCount;
+        this.checkpointedFrameCount = checkpointedFrameCount;
+        this.walFileSize            = walFileSize;
+        this.durationMillis         = durationMillis;
+    }
+
+    public SQLiteConnectionManager.CheckpointMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return true when a reader or writer kept the checkpoint from completing
+     */
+    public boolean isBusy() {
+        return busy;
+    }
+
+    /**
+     * @return frames in the WAL file, -1 when the database is not in WAL mode
+     */
+    public int getLogFrameCount() {
+        return logFrameCount;
+    }
+
+    /**
+     * @return frames copied back into the database file, -1 when the database is not in WAL mode
+     */
+    public int getCheckpointedFrameCount() {
+        return checkpointedFrameCount;
+    }
+
+    /**
+     * @return size of the WAL file in bytes after the checkpoint
+     */
+    public long getWalFileSize() {
+        return walFileSize;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "WalCheckpointResult{" +
+                "mode=" + mode +
+                ", busy=" + busy +
+                ", logFrames=" + logFrameCount +
+                ", checkpointedFrames=" + checkpointedFrameCount +
+                ", walFileSize=" + walFileSize +
+                ", durationMillis=" + durationMillis +
+                '}';
+    }
+}
@@ -1,14 +1,29 @@
 package com.sqlite.tutorial.sqlite.model;
 
+import com.sqlite.tutorial.schema.Column;
+import com.sqlite.tutorial.schema.Table;
 import java.util.Arrays;
 
+/**
+ * Row of the student table, its schema is generated into {@link StudentTable}.
+ */
+@Table(name = "student")
 public class Student {
 
+    @Column(name = "_id", primaryKey = true, autoIncrement = true, notNull = true)
     private int id;
+    @Column
     private String firstName;
+    @Column
     private String lastName;
+    @Column
     private String rollNumber;
+    /* Stored in the picture table, see pictureHash */
     private byte[] picture;
+    /* SHA-256 of the picture */
+    @Column
+    private String pictureHash;
+    private byte[] thumbnail;
 
     public Student() {
     }
@@ -28,6 +43,14 @@ public class Student {
         this.picture = picture;
     }
 
+    public Student(int id, String firstName, String lastName, String rollNumber, String pictureHash) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.rollNumber = rollNumber;
+        this.pictureHash = pictureHash;
+    }
+
     public int getId() {
         return id;
     }
@@ -68,6 +91,28 @@ public class Student {
         this.picture = picture;
     }
 
+    /**
+     * Key of the picture in the blob store. List queries only fill this, not {@link #getPicture()}.
+     */
+    public String getPictureHash() {
+        return pictureHash;
+    }
+
+    public void setPictureHash(String pictureHash) {
+        this.pictureHash = pictureHash;
+    }
+
+    /**
+     * Small encoded copy of {@link #getPicture()} shown in list rows, generated when null.
+     */
+    public byte[] getThumbnail() {
+        return thumbnail;
+    }
+
+    public void setThumbnail(byte[] thumbnail) {
+        this.thumbnail = thumbnail;
+    }
+
     @Override
     public String toString() {
         return "Student{" +
@@ -76,6 +121,7 @@ public class Student {
                 ", lastName='" + lastName + '\'' +
                 ", rollNumber='" + rollNumber + '\'' +
                 ", picture=" + Arrays.toString(picture) +
+                ", pictureHash='" + pictureHash + '\'' +
                 '}';
     }
 }
@@ -1,10 +1,21 @@
 package com.sqlite.tutorial.sqlite.model;
 
+import com.sqlite.tutorial.schema.Column;
+import com.sqlite.tutorial.schema.Table;
+
+/**
+ * Row of the user table, its schema is generated into {@link UserTable}.
+ */
+@Table(name = "user")
 public class User {
 
+    @Column(name = "_id", type = "INTEGER", primaryKey = true, autoIncrement = true, notNull = true)
     private String id;
+    @Column
     private String username;
+    @Column
     private String email;
+    @Column
     private String password;
 
     public User() {
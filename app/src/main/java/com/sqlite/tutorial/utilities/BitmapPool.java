@@ -0,0 +1,284 @@
+package com.sqlite.tutorial.utilities;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pool of mutable bitmaps bucketed by allocation size, reused through
+ * {@link android.graphics.BitmapFactory.Options#inBitmap} and {@link Bitmap#reconfigure} instead of
+ * allocating a new bitmap for every decode.
+ *
+ * A bitmap given to {@link #put(Bitmap)} belongs to the pool and must not be used anymore. Bitmaps
+ * shared by several owners (memory cache, views) are tracked with {@link #acquire(Bitmap)} and
+ * {@link #release(Bitmap)} and only go back to the pool when the last owner releases them.
+ *
+ * Thread safe.
+ */
+public class BitmapPool {
+
+    /* Share of the heap retained by idle bitmaps */
+    private static final int MAX_SIZE_DIVIDER       = 16;
+    /* A bucket is only used for a request when it is at most this many times too large */
+    private static final int MAX_SIZE_MULTIPLE      = 4;
+
+    private static BitmapPool instance;
+
+    public static BitmapPool getInstance() {
+        if (instance == null) {
+            synchronized (BitmapPool.class) {
+                if (instance == null) {
+                    instance = new BitmapPool(Runtime.getRuntime().maxMemory() / MAX_SIZE_DIVIDER);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /* Allocation byte count -> idle bitmaps of that size */
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> buckets = new TreeMap<Integer, ArrayDeque<Bitmap>>();
+    /* Every idle bitmap, oldest first, to evict when over maxSize */
+    private final LinkedHashSet<Bitmap> idleBitmaps = new LinkedHashSet<Bitmap>();
+    /* Owners of bitmaps in use, see acquire() */
+    private final Map<Bitmap, Integer> referenceCounts = new IdentityHashMap<Bitmap, Integer>();
+
+    private long maxSize;
+    private long currentSize;
+
+    private long hitCount;
+    private long missCount;
+    private long putCount;
+    private long evictionCount;
+
+    public BitmapPool(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return a bitmap of exactly width x height cleared to transparent, null when none is idle
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = getDirty(width, height, config);
+        if (bitmap != null)
+        {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Same as {@link #get} without clearing the pixels, for decodes that overwrite all of them.
+     */
+    public synchronized Bitmap getDirty(int width, int height, Bitmap.Config config) {
+        int requiredSize = width * height * bytesPerPixel(config);
+        Integer bucketSize = buckets.ceilingKey(requiredSize);
+
+        if (bucketSize == null || bucketSize > requiredSize * MAX_SIZE_MULTIPLE)
+        {
+            missCount++;
+            return null;
+        }
+
+        Bitmap bitmap = removeFromBucket(bucketSize);
+        idleBitmaps.remove(bitmap);
+        currentSize -= bucketSize;
+        hitCount++;
+
+        bitmap.reconfigure(width, height, config);
+        return bitmap;
+    }
+
+    /**
+     * Give the bitmap to the pool. Immutable or recycled bitmaps are ignored.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() || idleBitmaps.contains(bitmap))
+        {
+            return;
+        }
+
+        int size = BitmapUtils.byteSizeOfBitmap(bitmap);
+        if (size > maxSize)
+        {
+            bitmap.recycle();
+            return;
+        }
+
+        ArrayDeque<Bitmap> bucket = buckets.get(size);
+        if (bucket == null)
+        {
+            bucket = new ArrayDeque<Bitmap>();
+            buckets.put(size, bucket);
+        }
+        bucket.addLast(bitmap);
+        idleBitmaps.add(bitmap);
+        currentSize += size;
+        putCount++;
+
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Register one more owner of a bitmap in use.
+     */
+    public synchronized void acquire(Bitmap bitmap) {
+        if (bitmap == null)
+        {
+            return;
+        }
+        Integer count = referenceCounts.get(bitmap);
+        referenceCounts.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Remove one owner of the bitmap, the last one gives it back to the pool.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        Integer count = bitmap != null ? referenceCounts.get(bitmap) : null;
+        if (count == null)
+        {
+            return;
+        }
+
+        if (count > 1)
+        {
+            referenceCounts.put(bitmap, count - 1);
+        }
+        else
+        {
+            referenceCounts.remove(bitmap);
+            put(bitmap);
+        }
+    }
+
+    /**
+     * Register one more owner of a bitmap it released earlier, as long as the bitmap still holds
+     * the pixels it had then : once released it may have gone back to the pool and been reused.
+     *
+     * @param generationId {@link Bitmap#getGenerationId()} read when the bitmap was released
+     * @return false when the bitmap was recycled or its pixels changed, it must not be drawn anymore
+     */
+    public synchronized boolean reacquire(Bitmap bitmap, int generationId) {
+        if (bitmap == null || bitmap.isRecycled() || bitmap.getGenerationId() != generationId)
+        {
+            return false;
+        }
+
+        if (idleBitmaps.remove(bitmap))
+        {
+            int bucketSize = BitmapUtils.byteSizeOfBitmap(bitmap);
+            ArrayDeque<Bitmap> bucket = buckets.get(bucketSize);
+            bucket.remove(bitmap);
+            if (bucket.isEmpty())
+            {
+                buckets.remove(bucketSize);
+            }
+            currentSize -= bucketSize;
+        }
+        acquire(bitmap);
+        return true;
+    }
+
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    /**
+     * @return cap on the bytes retained by idle bitmaps
+     */
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return bytes retained by idle bitmaps
+     */
+    public synchronized long getCurrentSize() {
+        return currentSize;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getPutCount() {
+        return putCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return share of requests served from the pool, 0 before the first request
+     */
+    public synchronized float getHitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 0f : (float) hitCount / requestCount;
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    public synchronized void trimToSize(long size) {
+        Iterator<Bitmap> iterator = idleBitmaps.iterator();
+        while (currentSize > size && iterator.hasNext())
+        {
+            Bitmap bitmap = iterator.next();
+            iterator.remove();
+
+            int bucketSize = BitmapUtils.byteSizeOfBitmap(bitmap);
+            ArrayDeque<Bitmap> bucket = buckets.get(bucketSize);
+            bucket.remove(bitmap);
+            if (bucket.isEmpty())
+            {
+                buckets.remove(bucketSize);
+            }
+
+            currentSize -= bucketSize;
+            evictionCount++;
+            bitmap.recycle();
+        }
+    }
+
+    private Bitmap removeFromBucket(int bucketSize) {
+        ArrayDeque<Bitmap> bucket = buckets.get(bucketSize);
+        Bitmap bitmap = bucket.removeLast();
+        if (bucket.isEmpty())
+        {
+            buckets.remove(bucketSize);
+        }
+        return bitmap;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else {
+            return 4;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool{" +
+                "currentSize=" + currentSize +
+                ", maxSize=" + maxSize +
+                ", hitRate=" + getHitRate() +
+                ", evictions=" + evictionCount +
+                '}';
+    }
+}
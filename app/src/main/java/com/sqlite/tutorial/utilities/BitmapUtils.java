@@ -3,7 +3,10 @@ package com.sqlite.tutorial.utilities;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
 import android.net.Uri;
 import android.os.Build;
 import java.io.ByteArrayOutputStream;
@@ -11,6 +14,10 @@ import java.io.IOException;
 
 public class BitmapUtils {
 
+    /* Longest side in pixels of list row thumbnails, a 40dp circle is 160px at xxxhdpi */
+    public static final int THUMBNAIL_SIZE      = 160;
+    public static final int THUMBNAIL_QUALITY   = 80;
+
     private BitmapUtils() {
         throw new UnsupportedOperationException("You can't create instance of Util class. Please use as static..");
     }
@@ -30,6 +37,64 @@ public class BitmapUtils {
         return photoByteArray;
     }
 
+    /**
+     * Convert bitmap to a small lossy WebP thumbnail, for list rows
+     *
+     * @param bitmap source Bitmap
+     * @param size longest side of the thumbnail, e.g., {@link #THUMBNAIL_SIZE}
+     * @return Byte array
+     */
+    public static byte[] getThumbnailByteArrayFromBitmap(Bitmap bitmap, int size) throws IOException {
+        int width   = bitmap.getWidth();
+        int height  = bitmap.getHeight();
+        float scale = Math.min(1f, (float) size / Math.max(width, height));
+
+        Bitmap thumbnail = bitmap;
+        if (scale < 1f) {
+            Matrix matrix = new Matrix();
+            matrix.setScale(scale, scale);
+            thumbnail = transformIntoPooledBitmap(bitmap, matrix, Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)));
+        }
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        thumbnail.compress(Bitmap.CompressFormat.WEBP, THUMBNAIL_QUALITY, byteArrayOutputStream);
+        byte[] thumbnailByteArray = byteArrayOutputStream.toByteArray();
+        byteArrayOutputStream.close();
+
+        if (thumbnail != bitmap) {
+            BitmapPool.getInstance().put(thumbnail);
+        }
+        return thumbnailByteArray;
+    }
+
+    /**
+     * Decode the encoded image subsampled close to size and convert it to a thumbnail
+     *
+     * @param bytes encoded image
+     * @param size longest side of the thumbnail
+     * @return Byte array, null if the bytes can not be decoded
+     */
+    public static byte[] getThumbnailByteArrayFromByteArray(byte[] bytes, int size) throws IOException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+
+        options.inSampleSize        = calculateInSampleSize(options, size, size);
+        options.inJustDecodeBounds  = false;
+        Bitmap bitmap = decodeByteArrayIntoPooledBitmap(bytes, options);
+        if (bitmap == null) {
+            return null;
+        }
+
+        byte[] thumbnailByteArray = getThumbnailByteArrayFromBitmap(bitmap, size);
+        BitmapPool.getInstance().put(bitmap);
+        return thumbnailByteArray;
+    }
+
     /**
      * Get a bitmap of a specified size
      *
@@ -37,20 +102,70 @@ public class BitmapUtils {
      * @return Bitmap
      */
     public static Bitmap getBitmapFromByteArray(byte[] bytes) {
-        if (bytes.length != 0) {
-            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+        if (bytes != null && bytes.length != 0) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+            options.inJustDecodeBounds = false;
+            return decodeByteArrayIntoPooledBitmap(bytes, options);
         } else {
             return null;
         }
     }
 
+    /**
+     * Decode into a bitmap of the {@link BitmapPool} when one is large enough, the result is mutable
+     * so that it can go back to the pool once it is no longer used.
+     *
+     * @param options with outWidth / outHeight filled by an inJustDecodeBounds pass
+     */
+    private static Bitmap decodeByteArrayIntoPooledBitmap(byte[] bytes, BitmapFactory.Options options) {
+        options.inMutable = true;
+        options.inBitmap  = getPooledBitmapForDecode(options);
+        try {
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        } catch (IllegalArgumentException illegalArgumentException) {
+            /* The pooled bitmap can not hold this image, decode into a new one */
+            BitmapPool.getInstance().put(options.inBitmap);
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        }
+    }
+
+    private static Bitmap getPooledBitmapForDecode(BitmapFactory.Options options) {
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize  = Math.max(1, options.inSampleSize);
+        int width       = (options.outWidth + sampleSize - 1) / sampleSize;
+        int height      = (options.outHeight + sampleSize - 1) / sampleSize;
+        return BitmapPool.getInstance().getDirty(width, height, options.inPreferredConfig != null ? options.inPreferredConfig : Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Draw source through matrix into a width x height bitmap taken from the {@link BitmapPool}
+     * when possible, instead of the new bitmap allocated by Bitmap.createBitmap().
+     */
+    private static Bitmap transformIntoPooledBitmap(Bitmap source, Matrix matrix, int width, int height) {
+        Bitmap.Config config = source.getConfig() != null ? source.getConfig() : Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = BitmapPool.getInstance().get(width, height, config);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG | Paint.ANTI_ALIAS_FLAG));
+        canvas.setBitmap(null);
+        return bitmap;
+    }
+
     /**
      * Get the number of bytes of the bitmap.
      *
      * @param bitmap
      * @return The number of bytes of the bitmap.
      */
-    private static int byteSizeOfBitmap(Bitmap bitmap) {
+    public static int byteSizeOfBitmap(Bitmap bitmap) {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB_MR1) {
             return bitmap.getRowBytes() * bitmap.getHeight();
         } else if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
@@ -128,10 +243,26 @@ public class BitmapUtils {
 
         BitmapFactory.Options optionsTwo = new BitmapFactory.Options();
         optionsTwo.inSampleSize = calculateInSampleSize(optionsOne, MAX_WIDTH, MAX_HEIGHT);
+        optionsTwo.outWidth     = optionsOne.outWidth;
+        optionsTwo.outHeight    = optionsOne.outHeight;
+        optionsTwo.inMutable    = true;
+        optionsTwo.inBitmap     = getPooledBitmapForDecode(optionsTwo);
 
-        return rotateImage(BitmapFactory.decodeStream(context.getContentResolver().openInputStream(selectedImageUri), null, optionsTwo), 90);
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeStream(context.getContentResolver().openInputStream(selectedImageUri), null, optionsTwo);
+        } catch (IllegalArgumentException illegalArgumentException) {
+            BitmapPool.getInstance().put(optionsTwo.inBitmap);
+            optionsTwo.inBitmap = null;
+            bitmap = BitmapFactory.decodeStream(context.getContentResolver().openInputStream(selectedImageUri), null, optionsTwo);
+        }
+        return rotateImage(bitmap, 90);
     }
 
+    /**
+     * Rotate landscape bitmaps by degree. When a rotated copy is returned, bitmap is given to the
+     * {@link BitmapPool} and must not be used anymore.
+     */
     public static Bitmap rotateImage(Bitmap bitmap, int degree) {
         Bitmap rotatedBitmap = bitmap;
 
@@ -143,7 +274,14 @@ public class BitmapUtils {
             Matrix matrix = new Matrix();
             /* Setting post rotate to 90 */
             matrix.postRotate(degree);
-            rotatedBitmap = Bitmap.createBitmap(bitmap , 0, 0, w, h, matrix, true);
+
+            /* Move the rotated image back to the origin */
+            RectF bounds = new RectF(0, 0, w, h);
+            matrix.mapRect(bounds);
+            matrix.postTranslate(-bounds.left, -bounds.top);
+
+            rotatedBitmap = transformIntoPooledBitmap(bitmap, matrix, Math.round(bounds.width()), Math.round(bounds.height()));
+            BitmapPool.getInstance().put(bitmap);
         }
         return rotatedBitmap;
     }
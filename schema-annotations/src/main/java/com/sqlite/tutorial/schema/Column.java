@@ -0,0 +1,34 @@
+package com.sqlite.tutorial.schema;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Field of a {@link Table} class stored in a column. Columns are declared in field order.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface Column {
+
+    /**
+     * Name of the column, the field name when empty.
+     */
+    String name() default "";
+
+    /**
+     * SQL type of the column, derived from the field type when empty : INTEGER for int, long
+     * and boolean, REAL for float and double, TEXT for String, BLOB for byte[].
+     */
+    String type() default "";
+
+    boolean primaryKey() default false;
+
+    /**
+     * Key assigned by SQLite, left out of the INSERT statement and the ContentValues.
+     */
+    boolean autoIncrement() default false;
+
+    boolean notNull() default false;
+}
@@ -0,0 +1,23 @@
+package com.sqlite.tutorial.schema;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Model class stored in a table. The schema processor generates {@code <ClassName>Table} next to
+ * it : table and column names, CREATE and INSERT statements, a cursor mapper and binders for
+ * ContentValues and compiled statements, built from the {@link Column} fields.
+ *
+ * The class needs a no argument constructor, and a getter and setter for every column field.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Table {
+
+    /**
+     * Name of the table.
+     */
+    String name();
+}
@@ -0,0 +1,73 @@
+package com.sqlite.tutorial.schema.processor;
+
+/**
+ * A {@link com.sqlite.tutorial.schema.Column} field as read by {@link TableProcessor}.
+ */
+final class ColumnModel {
+
+    final String fieldName;
+    final String columnName;
+    final String sqlType;
+    final ColumnType columnType;
+    final String getter;
+    final String setter;
+    final boolean primaryKey;
+    final boolean autoIncrement;
+    final boolean notNull;
+
+    ColumnModel(String fieldName, String columnName, String sqlType, ColumnType columnType, String getter, String setter,
+                boolean primaryKey, boolean autoIncrement, boolean notNull) {
+        this.fieldName      = fieldName;
+        this.columnName     = columnName;
+        this.sqlType        = sqlType;
+        this.columnType     = columnType;
+        this.getter         = getter;
+        this.setter         = setter;
+        this.primaryKey     = primaryKey;
+        this.autoIncrement  = autoIncrement;
+        this.notNull        = notNull;
+    }
+
+    /**
+     * @return name of the generated column constant, e.g., COLUMN_FIRST_NAME for firstName
+     */
+    String getConstantName() {
+        StringBuilder constantName = new StringBuilder("COLUMN_");
+        for (int i = 0; i < fieldName.length(); i++) {
+            char character = fieldName.charAt(i);
+            if (Character.isUpperCase(character) && i > 0 && !Character.isUpperCase(fieldName.charAt(i - 1)))
+            {
+                constantName.append('_');
+            }
+            constantName.append(Character.toUpperCase(character));
+        }
+        return constantName.toString();
+    }
+
+    /**
+     * @return column definition of the CREATE statement, e.g., "_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL"
+     */
+    String getDefinition() {
+        StringBuilder definition = new StringBuilder(columnName).append(' ').append(sqlType);
+        if (primaryKey)
+        {
+            definition.append(" PRIMARY KEY");
+        }
+        if (autoIncrement)
+        {
+            definition.append(" AUTOINCREMENT");
+        }
+        if (notNull)
+        {
+            definition.append(" NOT NULL");
+        }
+        return definition.toString();
+    }
+
+    /**
+     * @return true when the value is assigned by SQLite rather than inserted
+     */
+    boolean isGenerated() {
+        return primaryKey && autoIncrement;
+    }
+}
@@ -0,0 +1,70 @@
+package com.sqlite.tutorial.schema.processor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How a Java field type is declared, read from a Cursor and bound to a SQLiteStatement.
+ */
+final class ColumnType {
+
+    private static final Map<String, ColumnType> TYPES = new HashMap<String, ColumnType>();
+
+    static {
+        add(new ColumnType("int",               "INTEGER", "cursor.getInt(%s)",         "bindLong",     "%s",               false));
+        add(new ColumnType("java.lang.Integer", "INTEGER", "cursor.getInt(%s)",         "bindLong",     "%s",               true));
+        add(new ColumnType("long",              "INTEGER", "cursor.getLong(%s)",        "bindLong",     "%s",               false));
+        add(new ColumnType("java.lang.Long",    "INTEGER", "cursor.getLong(%s)",        "bindLong",     "%s",               true));
+        add(new ColumnType("boolean",           "INTEGER", "cursor.getInt(%s) != 0",    "bindLong",     "%s ? 1 : 0",       false));
+        add(new ColumnType("java.lang.Boolean", "INTEGER", "cursor.getInt(%s) != 0",    "bindLong",     "%s ? 1 : 0",       true));
+        add(new ColumnType("float",             "REAL",    "cursor.getFloat(%s)",       "bindDouble",   "%s",               false));
+        add(new ColumnType("java.lang.Float",   "REAL",    "cursor.getFloat(%s)",       "bindDouble",   "%s",               true));
+        add(new ColumnType("double",            "REAL",    "cursor.getDouble(%s)",      "bindDouble",   "%s",               false));
+        add(new ColumnType("java.lang.Double",  "REAL",    "cursor.getDouble(%s)",      "bindDouble",   "%s",               true));
+        add(new ColumnType("java.lang.String",  "TEXT",    "cursor.getString(%s)",      "bindString",   "%s",               true));
+        add(new ColumnType("byte[]",            "BLOB",    "cursor.getBlob(%s)",        "bindBlob",     "%s",               true));
+    }
+
+    final String javaType;
+    final String sqlType;
+    /* Expression reading the column, %s is the column index */
+    final String readFormat;
+    final String bindMethod;
+    /* Expression of the bound value, %s is the field value */
+    final String bindFormat;
+    final boolean nullable;
+
+    private ColumnType(String javaType, String sqlType, String readFormat, String bindMethod, String bindFormat, boolean nullable) {
+        this.javaType   = javaType;
+        this.sqlType    = sqlType;
+        this.readFormat = readFormat;
+        this.bindMethod = bindMethod;
+        this.bindFormat = bindFormat;
+        this.nullable   = nullable;
+    }
+
+    private static void add(ColumnType columnType) {
+        TYPES.put(columnType.javaType, columnType);
+    }
+
+    /**
+     * @param javaType type of the field as written by TypeMirror.toString()
+     * @return null when the type can not be stored in a column
+     */
+    static ColumnType of(String javaType) {
+        return TYPES.get(javaType);
+    }
+
+    /**
+     * @return expression reading the column, null for a SQL NULL when the field type allows it
+     */
+    String read(String indexExpression) {
+        String read = String.format(readFormat, indexExpression);
+        /* getString() and getBlob() already return null, boxed numbers would read 0 */
+        if (nullable && !javaType.equals("java.lang.String") && !javaType.equals("byte[]"))
+        {
+            return "cursor.isNull(" + indexExpression + ") ? null : " + read;
+        }
+        return read;
+    }
+}
@@ -0,0 +1,25 @@
+package com.sqlite.tutorial.schema.processor;
+
+import java.util.List;
+
+/**
+ * A {@link com.sqlite.tutorial.schema.Table} class as read by {@link TableProcessor}.
+ */
+final class TableModel {
+
+    final String packageName;
+    final String className;
+    final String tableName;
+    final List<ColumnModel> columns;
+
+    TableModel(String packageName, String className, String tableName, List<ColumnModel> columns) {
+        this.packageName    = packageName;
+        this.className      = className;
+        this.tableName      = tableName;
+        this.columns        = columns;
+    }
+
+    String getGeneratedName() {
+        return className + "Table";
+    }
+}
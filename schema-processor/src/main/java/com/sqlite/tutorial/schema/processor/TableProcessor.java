@@ -0,0 +1,197 @@
+package com.sqlite.tutorial.schema.processor;
+
+import com.sqlite.tutorial.schema.Column;
+import com.sqlite.tutorial.schema.Table;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates {@code <ClassName>Table} for every {@link Table} class, see {@link TableWriter}.
+ *
+ * Option schema.rowMapper : fully qualified name of the app RowMapper class, which must have a
+ * constructor taking the column names and an abstract {@code T mapRow(Cursor, int[])}. When set,
+ * the generated class also holds a MAPPER instance of it.
+ */
+public class TableProcessor extends AbstractProcessor {
+
+    static final String OPTION_ROW_MAPPER = "schema.rowMapper";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(Table.class.getCanonicalName());
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_ROW_MAPPER);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+        for (Element element : roundEnvironment.getElementsAnnotatedWith(Table.class))
+        {
+            if (element.getKind() != ElementKind.CLASS || ((TypeElement) element).getNestingKind() != NestingKind.TOP_LEVEL)
+            {
+                error(element, "@Table must be on a top level class");
+                continue;
+            }
+
+            TableModel tableModel = readTable((TypeElement) element);
+            if (tableModel != null)
+            {
+                write(tableModel);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return null after reporting an error
+     */
+    private TableModel readTable(TypeElement typeElement) {
+        List<ExecutableElement> methods = ElementFilter.methodsIn(typeElement.getEnclosedElements());
+        boolean valid = hasNoArgumentConstructor(typeElement);
+        if (!valid)
+        {
+            error(typeElement, "@Table class needs a public no argument constructor");
+        }
+
+        List<ColumnModel> columns = new ArrayList<ColumnModel>();
+        Set<String> columnNames = new HashSet<String>();
+        for (VariableElement field : ElementFilter.fieldsIn(typeElement.getEnclosedElements()))
+        {
+            Column column = field.getAnnotation(Column.class);
+            if (column == null)
+            {
+                continue;
+            }
+
+            String fieldName = field.getSimpleName().toString();
+            ColumnType columnType = ColumnType.of(field.asType().toString());
+            if (columnType == null)
+            {
+                error(field, "Unsupported @Column type " + field.asType());
+                valid = false;
+                continue;
+            }
+
+            String capitalized = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+            String getter = findMethod(methods, columnType.javaType.equals("boolean") ? "is" + capitalized : "get" + capitalized, 0);
+            if (getter == null)
+            {
+                getter = findMethod(methods, "get" + capitalized, 0);
+            }
+            String setter = findMethod(methods, "set" + capitalized, 1);
+            if (getter == null || setter == null)
+            {
+                error(field, "@Column field needs a public getter and setter");
+                valid = false;
+                continue;
+            }
+
+            String columnName = column.name().isEmpty() ? fieldName : column.name();
+            if (!columnNames.add(columnName))
+            {
+                error(field, "Duplicate column " + columnName);
+                valid = false;
+                continue;
+            }
+            String sqlType = column.type().isEmpty() ? columnType.sqlType : column.type();
+            columns.add(new ColumnModel(fieldName, columnName, sqlType, columnType, getter, setter,
+                    column.primaryKey(), column.autoIncrement(), column.notNull()));
+        }
+
+        if (columns.isEmpty())
+        {
+            error(typeElement, "@Table class has no @Column field");
+            valid = false;
+        }
+        if (!valid)
+        {
+            return null;
+        }
+
+        Table table = typeElement.getAnnotation(Table.class);
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(typeElement);
+        return new TableModel(packageElement.getQualifiedName().toString(), typeElement.getSimpleName().toString(), table.name(), columns);
+    }
+
+    private static boolean hasNoArgumentConstructor(TypeElement typeElement) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(typeElement.getEnclosedElements()))
+        {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String findMethod(List<ExecutableElement> methods, String name, int parameterCount) {
+        for (ExecutableElement method : methods)
+        {
+            if (method.getSimpleName().contentEquals(name)
+                    && method.getParameters().size() == parameterCount
+                    && method.getModifiers().contains(Modifier.PUBLIC)
+                    && !method.getModifiers().contains(Modifier.STATIC))
+            {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private void write(TableModel tableModel) {
+        String qualifiedName = tableModel.packageName.isEmpty()
+                ? tableModel.getGeneratedName()
+                : tableModel.packageName + "." + tableModel.getGeneratedName();
+        try
+        {
+            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(qualifiedName,
+                    processingEnv.getElementUtils().getTypeElement(tableModel.packageName.isEmpty()
+                            ? tableModel.className
+                            : tableModel.packageName + "." + tableModel.className));
+            Writer writer = sourceFile.openWriter();
+            try
+            {
+                writer.write(new TableWriter(tableModel, processingEnv.getOptions().get(OPTION_ROW_MAPPER)).write());
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+        catch (IOException ioException)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + qualifiedName + " : " + ioException.getMessage());
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
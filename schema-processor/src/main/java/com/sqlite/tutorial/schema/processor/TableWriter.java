@@ -0,0 +1,274 @@
+package com.sqlite.tutorial.schema.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Source of the class generated for a {@link TableModel} : plain getter and setter calls, so
+ * rows are mapped and bound without reflection.
+ */
+final class TableWriter {
+
+    private static final String INDENT = "    ";
+
+    private final TableModel tableModel;
+    /* Null when no MAPPER is generated */
+    private final String rowMapperClass;
+    private final StringBuilder source = new StringBuilder();
+
+    TableWriter(TableModel tableModel, String rowMapperClass) {
+        this.tableModel     = tableModel;
+        this.rowMapperClass = rowMapperClass == null || rowMapperClass.isEmpty() ? null : rowMapperClass;
+    }
+
+    String write() {
+        String className = tableModel.className;
+        String generatedName = tableModel.getGeneratedName();
+
+        if (!tableModel.packageName.isEmpty())
+        {
+            line(0, "package " + tableModel.packageName + ";");
+            line(0, "");
+        }
+        line(0, "import android.content.ContentValues;");
+        line(0, "import android.database.Cursor;");
+        line(0, "import android.database.sqlite.SQLiteStatement;");
+        line(0, "");
+        line(0, "/**");
+        line(0, " * Schema of {@link " + className + "}, generated from its annotations by the schema processor. Do not edit.");
+        line(0, " */");
+        line(0, "public final class " + generatedName + " {");
+        line(0, "");
+        line(1, "public static final String TABLE_NAME = " + quote(tableModel.tableName) + ";");
+        line(0, "");
+        for (ColumnModel column : tableModel.columns)
+        {
+            line(1, "public static final String " + column.getConstantName() + " = " + quote(column.columnName) + ";");
+        }
+        line(0, "");
+        line(1, "public static final String[] COLUMNS = {" + join(constantNames(tableModel.columns)) + "};");
+        line(0, "");
+        line(1, "public static final String CREATE_TABLE = " + quote(createTable()) + ";");
+        line(0, "");
+        line(1, "/* Every column but the auto increment key, bound by bindInsert() */");
+        line(1, "public static final String INSERT = " + quote(insert(insertedColumns())) + ";");
+        line(0, "");
+        if (hasGeneratedKey())
+        {
+            line(1, "/* Every column, the key included, bound by bindInsertWithKey() */");
+            line(1, "public static final String INSERT_WITH_KEY = " + quote(insert(tableModel.columns)) + ";");
+            line(0, "");
+            line(1, "/* Every column but the key, then the key, numbered as updateParameterOf() says and bound by bindUpdateByKey() */");
+            line(1, "public static final String UPDATE_BY_KEY = " + quote(updateByKey()) + ";");
+            line(0, "");
+        }
+        if (rowMapperClass != null)
+        {
+            line(1, "public static final " + rowMapperClass + "<" + className + "> MAPPER = new " + rowMapperClass + "<" + className + ">(COLUMNS) {");
+            line(2, "@Override");
+            line(2, "public " + className + " mapRow(Cursor cursor, int[] columnIndexes) {");
+            line(3, "return " + generatedName + ".mapRow(cursor, columnIndexes);");
+            line(2, "}");
+            line(1, "};");
+            line(0, "");
+        }
+        line(1, "private " + generatedName + "() {");
+        line(2, "throw new UnsupportedOperationException(\"You can't create instance of Util class. Please use as static..\");");
+        line(1, "}");
+        line(0, "");
+        writeMapRow(className);
+        line(0, "");
+        writeToContentValues(className);
+        line(0, "");
+        writeBindInsert(className, "bindInsert", "INSERT", insertedColumns());
+        if (hasGeneratedKey())
+        {
+            line(0, "");
+            writeBindInsert(className, "bindInsertWithKey", "INSERT_WITH_KEY", tableModel.columns);
+            line(0, "");
+            writeBindInsert(className, "bindUpdateByKey", "UPDATE_BY_KEY", updatedColumns());
+            line(0, "");
+            writeUpdateParameterOf();
+        }
+        line(0, "}");
+        return source.toString();
+    }
+
+    private void writeMapRow(String className) {
+        line(1, "/**");
+        line(1, " * @param columnIndexes index in the cursor of every column of {@link #COLUMNS}, in that order");
+        line(1, " */");
+        line(1, "public static " + className + " mapRow(Cursor cursor, int[] columnIndexes) {");
+        line(2, className + " object = new " + className + "();");
+        for (int i = 0; i < tableModel.columns.size(); i++) {
+            ColumnModel column = tableModel.columns.get(i);
+            line(2, "object." + column.setter + "(" + column.columnType.read("columnIndexes[" + i + "]") + ");");
+        }
+        line(2, "return object;");
+        line(1, "}");
+    }
+
+    private void writeToContentValues(String className) {
+        List<ColumnModel> insertedColumns = insertedColumns();
+        line(1, "/**");
+        line(1, " * @return values of every column but the auto increment key");
+        line(1, " */");
+        line(1, "public static ContentValues toContentValues(" + className + " object) {");
+        line(2, "ContentValues values = new ContentValues(" + insertedColumns.size() + ");");
+        for (ColumnModel column : insertedColumns)
+        {
+            line(2, "values.put(" + column.getConstantName() + ", object." + column.getter + "());");
+        }
+        line(2, "return values;");
+        line(1, "}");
+    }
+
+    private void writeBindInsert(String className, String methodName, String insertName, List<ColumnModel> insertedColumns) {
+        line(1, "/**");
+        line(1, " * Bind the object to a statement compiled from {@link #" + insertName + "}.");
+        line(1, " */");
+        line(1, "public static void " + methodName + "(SQLiteStatement statement, " + className + " object) {");
+        line(2, "statement.clearBindings();");
+        for (int i = 0; i < insertedColumns.size(); i++) {
+            ColumnModel column = insertedColumns.get(i);
+            int index = i + 1;
+            String value = "object." + column.getter + "()";
+            String bind = "statement." + column.columnType.bindMethod + "(" + index + ", " + String.format(column.columnType.bindFormat, value) + ");";
+            if (column.columnType.nullable)
+            {
+                line(2, "if (" + value + " == null) {");
+                line(3, "statement.bindNull(" + index + ");");
+                line(2, "} else {");
+                line(3, bind);
+                line(2, "}");
+            }
+            else
+            {
+                line(2, bind);
+            }
+        }
+        line(1, "}");
+    }
+
+    private void writeUpdateParameterOf() {
+        List<ColumnModel> updatedColumns = updatedColumns();
+        line(1, "/**");
+        line(1, " * @return number of the parameter bound to column by {@link #bindUpdateByKey}, for statements");
+        line(1, " * that write their own UPDATE by key against the same binding");
+        line(1, " */");
+        line(1, "public static int updateParameterOf(String column) {");
+        for (int i = 0; i < updatedColumns.size(); i++) {
+            line(2, "if (" + updatedColumns.get(i).getConstantName() + ".equals(column)) {");
+            line(3, "return " + (i + 1) + ";");
+            line(2, "}");
+        }
+        line(2, "throw new IllegalArgumentException(\"Not a column of \" + TABLE_NAME + \" : \" + column);");
+        line(1, "}");
+    }
+
+    private String createTable() {
+        List<String> definitions = new ArrayList<String>();
+        for (ColumnModel column : tableModel.columns)
+        {
+            definitions.add(column.getDefinition());
+        }
+        return "CREATE TABLE IF NOT EXISTS " + tableModel.tableName + " (" + join(definitions) + ")";
+    }
+
+    private String insert(List<ColumnModel> insertedColumns) {
+        List<String> names = new ArrayList<String>();
+        List<String> placeholders = new ArrayList<String>();
+        for (ColumnModel column : insertedColumns)
+        {
+            names.add(column.columnName);
+            placeholders.add("?");
+        }
+        return "INSERT INTO " + tableModel.tableName + " (" + join(names) + ") VALUES (" + join(placeholders) + ")";
+    }
+
+    private String updateByKey() {
+        List<ColumnModel> updatedColumns = updatedColumns();
+        List<String> assignments = new ArrayList<String>();
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < updatedColumns.size(); i++) {
+            ColumnModel column = updatedColumns.get(i);
+            String assignment = column.columnName + " = ?" + (i + 1);
+            if (column.isGenerated())
+            {
+                keys.add(assignment);
+            }
+            else
+            {
+                assignments.add(assignment);
+            }
+        }
+        return "UPDATE " + tableModel.tableName + " SET " + join(assignments) + " WHERE " + keys.get(0);
+    }
+
+    /**
+     * @return every column but the auto increment key, then the key, the binding order of UPDATE_BY_KEY
+     */
+    private List<ColumnModel> updatedColumns() {
+        List<ColumnModel> updatedColumns = insertedColumns();
+        for (ColumnModel column : tableModel.columns)
+        {
+            if (column.isGenerated())
+            {
+                updatedColumns.add(column);
+            }
+        }
+        return updatedColumns;
+    }
+
+    private List<ColumnModel> insertedColumns() {
+        List<ColumnModel> insertedColumns = new ArrayList<ColumnModel>();
+        for (ColumnModel column : tableModel.columns)
+        {
+            if (!column.isGenerated())
+            {
+                insertedColumns.add(column);
+            }
+        }
+        return insertedColumns;
+    }
+
+    /**
+     * @return true when a column is assigned by SQLite, e.g., an auto increment key
+     */
+    private boolean hasGeneratedKey() {
+        return insertedColumns().size() < tableModel.columns.size();
+    }
+
+    private static List<String> constantNames(List<ColumnModel> columns) {
+        List<String> constantNames = new ArrayList<String>();
+        for (ColumnModel column : columns)
+        {
+            constantNames.add(column.getConstantName());
+        }
+        return constantNames;
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values)
+        {
+            if (joined.length() > 0)
+            {
+                joined.append(", ");
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private void line(int indent, String text) {
+        for (int i = 0; i < indent && !text.isEmpty(); i++) {
+            source.append(INDENT);
+        }
+        source.append(text).append('\n');
+    }
+}